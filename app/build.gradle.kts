@@ -49,6 +49,12 @@ android {
             excludes += "/META-INF/{AL2.0,LGPL2.1}"
         }
     }
+    testOptions {
+        unitTests.all {
+            // The benchmarks of the unit tests only run with -Dbenchmark=true
+            it.systemProperty("benchmark", System.getProperty("benchmark") ?: "false")
+        }
+    }
 
     externalNativeBuild {
         ndkBuild {
@@ -66,4 +72,8 @@ dependencies {
     implementation("androidx.preference:preference:1.1.0")
     implementation("androidx.appcompat:appcompat:1.1.0")
     implementation(files("./libs/WLClientSDK.aar"))
+
+    testImplementation("junit:junit:4.13.2")
+    androidTestImplementation("androidx.test.ext:junit:1.1.1")
+    androidTestImplementation("androidx.test:runner:1.2.0")
 }
\ No newline at end of file
@@ -27,6 +27,10 @@ LOCAL_SRC_FILES := \
     libyuv/source/scale_mips.cc        \
     libyuv/source/video_common.cc      \
 
+# The NEON rows of this libyuv release are ARMv7 assembly. arm64-v8a builds the C rows, left
+# to the vectoriser of the compiler, and the decoders convert with their own NEON rows there
+# (YuvToRgba.cpp). On x86 the SSE2/SSSE3 rows of row_posix.cc and scale.cc are always built.
+# On every ABI cpu_id selects the SIMD rows at runtime.
 ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
     LOCAL_CFLAGS += -DLIBYUV_NEON -D__ARM_NEON__
     LOCAL_CFLAGS += -mfpu=neon
@@ -37,6 +41,9 @@ ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
         libyuv/source/scale_neon.cc \
         libyuv/source/scale_argb_neon.cc
 endif
+ifeq ($(TARGET_ARCH_ABI),arm64-v8a)
+    LOCAL_CFLAGS += -O3
+endif
 
 LOCAL_C_INCLUDES += $(LOCAL_PATH)/libyuv/include
 
@@ -59,11 +66,12 @@ LOCAL_CFLAGS += -D__STDC_CONSTANT_MACROS -D__STDC_LIMIT_MACROS
 # the i420 decoder
 include $(CLEAR_VARS)
 LOCAL_MODULE    := i420decoder
-LOCAL_SRC_FILES := FrameDecoder_I420.cpp
+LOCAL_SRC_FILES := FrameDecoder_I420.cpp DecoderContext.cpp StripeWorkerPool.cpp YuvToRgba.cpp
 LOCAL_STATIC_LIBRARIES := libyuv liblz4
 LOCAL_ALLOW_UNDEFINED_SYMBOLS=false
-LOCAL_LDLIBS    += -llog -lz -lm -ljnigraphics
+LOCAL_LDLIBS    += -llog -lz -lm -ljnigraphics -landroid
 ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
+    LOCAL_ARM_NEON := true
     LOCAL_LDLIBS += -Wl,--no-warn-shared-textrel
 endif
 LOCAL_LDLIBS += -Wl
@@ -74,11 +82,12 @@ include $(BUILD_SHARED_LIBRARY)
 # the i422 decoder
 include $(CLEAR_VARS)
 LOCAL_MODULE    := yuvdecoder
-LOCAL_SRC_FILES := FrameDecoder_YUV.cpp
+LOCAL_SRC_FILES := FrameDecoder_YUV.cpp DecoderContext.cpp StripeWorkerPool.cpp YuvToRgba.cpp
 LOCAL_STATIC_LIBRARIES := libyuv liblz4
 LOCAL_ALLOW_UNDEFINED_SYMBOLS=false
-LOCAL_LDLIBS    += -llog -lz -lm -ljnigraphics
+LOCAL_LDLIBS    += -llog -lz -lm -ljnigraphics -landroid
 ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
+    LOCAL_ARM_NEON := true
     LOCAL_LDLIBS += -Wl,--no-warn-shared-textrel
 endif
 LOCAL_LDLIBS += -Wl
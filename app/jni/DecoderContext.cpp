@@ -0,0 +1,564 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file DecoderContext.cpp
+/// @brief
+///
+/// Contains implementation of the CScratchBuffer and CDecoderContext classes.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include "DecoderContext.h"
+#include <lz4.h>
+#include <zlib.h>
+#include <malloc.h>
+#include <stdlib.h>
+#include <string.h>
+#include <algorithm>
+#if defined(__ARM_NEON__) || defined(__ARM_NEON)
+#include <arm_neon.h>
+#elif defined(__SSE2__)
+#include <emmintrin.h>
+#endif
+
+
+//--------------------------------------------------------------------------------------------
+//  Constants
+//--------------------------------------------------------------------------------------------
+
+// Alignment of the scratch buffers, enough for any NEON/SSE/AVX load and a cache line
+static const size_t SCRATCH_ALIGNMENT = 64;
+
+// Allocation granularity, so that small frame size changes do not cause reallocations
+static const size_t SCRATCH_GRANULARITY = 64 * 1024;
+
+// Source pixels added around the dirty rectangle of a scaled frame, covering the filter taps
+static const int    SCALING_MARGIN = 2;
+
+
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// XORs a block onto another one. Both blocks are expected to be SCRATCH_ALIGNMENT aligned.
+///
+/// @param[in,out] dst  - the block to update
+/// @param[in]     src  - the block to XOR onto dst
+/// @param[in]     size - the size of the blocks
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void xorBlock(uint8_t* dst, const uint8_t* src, size_t size)
+{
+  size_t i = 0;
+
+#if defined(__ARM_NEON__) || defined(__ARM_NEON)
+  for (; i + 64 <= size; i += 64)
+  {
+    uint8x16_t d0 = vld1q_u8(dst + i);
+    uint8x16_t d1 = vld1q_u8(dst + i + 16);
+    uint8x16_t d2 = vld1q_u8(dst + i + 32);
+    uint8x16_t d3 = vld1q_u8(dst + i + 48);
+    vst1q_u8(dst + i,      veorq_u8(d0, vld1q_u8(src + i)));
+    vst1q_u8(dst + i + 16, veorq_u8(d1, vld1q_u8(src + i + 16)));
+    vst1q_u8(dst + i + 32, veorq_u8(d2, vld1q_u8(src + i + 32)));
+    vst1q_u8(dst + i + 48, veorq_u8(d3, vld1q_u8(src + i + 48)));
+  }
+#elif defined(__SSE2__)
+  for (; i + 64 <= size; i += 64)
+  {
+    __m128i* d = reinterpret_cast<__m128i*>(dst + i);
+    const __m128i* s = reinterpret_cast<const __m128i*>(src + i);
+    _mm_store_si128(d,     _mm_xor_si128(_mm_load_si128(d),     _mm_load_si128(s)));
+    _mm_store_si128(d + 1, _mm_xor_si128(_mm_load_si128(d + 1), _mm_load_si128(s + 1)));
+    _mm_store_si128(d + 2, _mm_xor_si128(_mm_load_si128(d + 2), _mm_load_si128(s + 2)));
+    _mm_store_si128(d + 3, _mm_xor_si128(_mm_load_si128(d + 3), _mm_load_si128(s + 3)));
+  }
+#endif
+  for (; i < size; ++i)
+  {
+    dst[i] ^= src[i];
+  }
+}
+
+static inline uint64_t load64(const uint8_t* data)
+{
+  uint64_t result;
+  memcpy(&result, data, sizeof(result));
+  return result;
+}
+
+static inline uint64_t load64(const uint8_t* data, int offset)
+{
+  return data ? load64(data + offset) : 0;
+}
+
+static inline uint8_t load8(const uint8_t* data, int offset)
+{
+  return data ? data[offset] : 0;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Finds the first and the last byte in which two rows differ
+///
+/// @param[in]  row       - the row
+/// @param[in]  reference - the row to compare with, NULL to compare with zero
+/// @param[in]  size      - the row size
+/// @param[out] first     - the first differing byte
+/// @param[out] last      - the last differing byte
+/// @retval bool - true if the rows differ
+//////////////////////////////////////////////////////////////////////////////////////////////
+static bool findRowChanges(const uint8_t* row, const uint8_t* reference, int size, int& first, int& last)
+{
+  int i = 0;
+  int j = size;
+
+  while (i + 8 <= size && load64(row + i) == load64(reference, i))
+  {
+    i += 8;
+  }
+  while (i < size && row[i] == load8(reference, i))
+  {
+    ++i;
+  }
+  if (i == size)
+  {
+    return false;
+  }
+  while (j - 8 > i && load64(row + j - 8) == load64(reference, j - 8))
+  {
+    j -= 8;
+  }
+  while (row[j - 1] == load8(reference, j - 1))
+  {
+    --j;
+  }
+  first = i;
+  last  = j - 1;
+  return true;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Extends a rectangle, in luma pixels, by the changed samples of a plane
+///
+/// @param[in]     plane     - the plane
+/// @param[in]     reference - the plane to compare with, NULL to compare with zero
+/// @param[in]     width     - the plane width, which is also its stride
+/// @param[in]     height    - the plane height
+/// @param[in]     shiftX    - horizontal subsampling of the plane, as a shift
+/// @param[in]     shiftY    - vertical subsampling of the plane, as a shift
+/// @param[in,out] bounds    - the rectangle to extend
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void addPlaneChanges(const uint8_t* plane, const uint8_t* reference, int width, int height,
+                            int shiftX, int shiftY, ARect& bounds)
+{
+  for (int y = 0; y < height; ++y)
+  {
+    int first;
+    int last;
+
+    if (findRowChanges(plane + y * width, reference ? reference + y * width : NULL, width, first, last))
+    {
+      bounds.left   = std::min(bounds.left, first << shiftX);
+      bounds.right  = std::max(bounds.right, (last + 1) << shiftX);
+      bounds.top    = std::min(bounds.top, y << shiftY);
+      bounds.bottom = std::max(bounds.bottom, (y + 1) << shiftY);
+    }
+  }
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Maps a frame coordinate to the output size, rounding down or up
+///
+/// @param[in] value - the coordinate in the frame
+/// @param[in] to    - the output size
+/// @param[in] from  - the frame size
+/// @retval int - the coordinate in the output
+//////////////////////////////////////////////////////////////////////////////////////////////
+static inline int scaleFloor(int value, int to, int from)
+{
+  return static_cast<int>(static_cast<int64_t>(std::max(0, value)) * to / from);
+}
+
+static inline int scaleCeil(int value, int to, int from)
+{
+  return static_cast<int>((static_cast<int64_t>(value) * to + from - 1) / from);
+}
+
+
+
+CScratchBuffer::CScratchBuffer()
+: m_data(NULL)
+, m_capacity(0)
+{
+}
+
+CScratchBuffer::~CScratchBuffer()
+{
+  Release();
+}
+
+uint8_t* CScratchBuffer::Reserve(size_t size)
+{
+  if (size > m_capacity)
+  {
+    size_t capacity = (size + SCRATCH_GRANULARITY - 1) / SCRATCH_GRANULARITY * SCRATCH_GRANULARITY;
+    Release();
+    m_data = static_cast<uint8_t*>(memalign(SCRATCH_ALIGNMENT, capacity));
+    if (m_data)
+    {
+      m_capacity = capacity;
+    }
+  }
+  return m_data;
+}
+
+void CScratchBuffer::Swap(CScratchBuffer& other)
+{
+  uint8_t* data     = m_data;
+  size_t   capacity = m_capacity;
+
+  m_data           = other.m_data;
+  m_capacity       = other.m_capacity;
+  other.m_data     = data;
+  other.m_capacity = capacity;
+}
+
+void CScratchBuffer::Release()
+{
+  if (m_data)
+  {
+    free(m_data);
+  }
+  m_data     = NULL;
+  m_capacity = 0;
+}
+
+
+CDecoderContext::CDecoderContext(int minStripedPixels, int chromaShiftX, int chromaShiftY)
+: m_frameWidth(0)
+, m_frameHeight(0)
+, m_frameFormat(0)
+, m_frameSize(0)
+, m_pendingWidth(0)
+, m_pendingHeight(0)
+, m_pendingFormat(0)
+, m_pendingSize(0)
+, m_isPendingDelta(false)
+, m_isReferenceValid(false)
+, m_maxWidth(0)
+, m_maxHeight(0)
+, m_verifyChecksum(true)
+, m_chromaShiftX(chromaShiftX)
+, m_chromaShiftY(chromaShiftY)
+, m_isWindowComplete(false)
+, m_window(NULL)
+, m_windowWidth(0)
+, m_windowHeight(0)
+, m_surfaceWidth(0)
+, m_surfaceHeight(0)
+, m_scalingFilter(-1)
+, m_minStripedPixels(minStripedPixels)
+, m_isWorkerPoolStarted(false)
+{
+  m_dirty.left   = 0;
+  m_dirty.top    = 0;
+  m_dirty.right  = 0;
+  m_dirty.bottom = 0;
+}
+
+CDecoderContext::~CDecoderContext()
+{
+  SetWindow(NULL);
+}
+
+void CDecoderContext::SetFrameLimits(int maxWidth, int maxHeight, bool verifyChecksum)
+{
+  m_maxWidth       = maxWidth;
+  m_maxHeight      = maxHeight;
+  m_verifyChecksum = verifyChecksum;
+}
+
+int CDecoderContext::DecodeFrame(const uint8_t* frame, int size, int format, PlanesSizeFunc planesSize)
+{
+  int16_t  width;
+  int16_t  height;
+  uint32_t sizeField;
+  size_t   bufferSize;
+  bool     isDelta;
+  int      payloadSize;
+  uint8_t* planes;
+
+  if (size < FRAME_HEADER_SIZE)
+  {
+    return DropFrame();
+  }
+  memcpy(&width, frame, sizeof(width));
+  memcpy(&height, frame + 2, sizeof(height));
+  memcpy(&sizeField, frame + 4, sizeof(sizeField));
+  isDelta     = (sizeField & FRAME_FLAG_DELTA) != 0;
+  bufferSize  = sizeField & ~(FRAME_FLAG_DELTA | FRAME_FLAG_CHECKSUM);
+  payloadSize = size - FRAME_HEADER_SIZE;
+  if (sizeField & FRAME_FLAG_CHECKSUM)
+  {
+    payloadSize -= sizeof(uint32_t);
+  }
+  if (width <= 0 || height <= 0 || payloadSize <= 0 ||
+      (m_maxWidth > 0 && width > m_maxWidth) || (m_maxHeight > 0 && height > m_maxHeight) ||
+      bufferSize != planesSize(width, height))
+  {
+    return DropFrame();
+  }
+  if ((sizeField & FRAME_FLAG_CHECKSUM) && m_verifyChecksum)
+  {
+    uint32_t checksum;
+
+    memcpy(&checksum, frame + FRAME_HEADER_SIZE + payloadSize, sizeof(checksum));
+    if (adler32(1, frame + FRAME_HEADER_SIZE, payloadSize) != checksum)
+    {
+      return DropFrame();
+    }
+  }
+
+  planes = BeginFrame(width, height, format, bufferSize, isDelta);
+  if (!planes)
+  {
+    if (isDelta)
+    {
+      m_isReferenceValid = false;
+      return FRAME_NO_REFERENCE;
+    }
+    DropFrame();
+    return FRAME_FAILED;
+  }
+  if (LZ4_decompress_safe((const char*)frame + FRAME_HEADER_SIZE, (char*)planes, payloadSize, (int)bufferSize) != (int)bufferSize)
+  {
+    return DropFrame();
+  }
+  EndFrame();
+  return FRAME_DECODED;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Drops the pending frame. The deltas that follow were computed from the dropped frame, so
+/// they are dropped as well until the next key frame.
+///
+/// @retval int - FRAME_CORRUPT
+//////////////////////////////////////////////////////////////////////////////////////////////
+int CDecoderContext::DropFrame()
+{
+  m_isReferenceValid = false;
+  return FRAME_CORRUPT;
+}
+
+uint8_t* CDecoderContext::BeginFrame(int width, int height, int format, size_t size, bool isDelta)
+{
+  uint8_t* result = NULL;
+
+  // A delta can only be applied to the frame it was computed from
+  if (!isDelta || (m_isReferenceValid && IsSameLayout(width, height, format, size)))
+  {
+    result = m_staging.Reserve(size);
+  }
+  m_pendingWidth   = width;
+  m_pendingHeight  = height;
+  m_pendingFormat  = format;
+  m_pendingSize    = size;
+  m_isPendingDelta = isDelta;
+  return result;
+}
+
+uint8_t* CDecoderContext::EndFrame()
+{
+  m_dirty.left   = 0;
+  m_dirty.top    = 0;
+  m_dirty.right  = m_pendingWidth;
+  m_dirty.bottom = m_pendingHeight;
+  if (m_isPendingDelta)
+  {
+    // The delta is non-zero exactly where the frame changed
+    FindChanges(m_staging.GetData(), NULL);
+    xorBlock(m_frame.GetData(), m_staging.GetData(), m_pendingSize);
+  }
+  else
+  {
+    if (IsSameLayout(m_pendingWidth, m_pendingHeight, m_pendingFormat, m_pendingSize))
+    {
+      FindChanges(m_staging.GetData(), m_frame.GetData());
+    }
+    m_frame.Swap(m_staging);
+    m_isReferenceValid = true;
+  }
+  m_frameWidth  = m_pendingWidth;
+  m_frameHeight = m_pendingHeight;
+  m_frameFormat = m_pendingFormat;
+  m_frameSize   = m_pendingSize;
+  return m_frame.GetData();
+}
+
+bool CDecoderContext::IsSameLayout(int width, int height, int format, size_t size) const
+{
+  return HasFrame() && width == m_frameWidth && height == m_frameHeight && format == m_frameFormat && size == m_frameSize;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Sets the dirty rectangle of the pending frame to the bounding box of its changes
+///
+/// @param[in] planes    - the planes of the pending frame, or its delta
+/// @param[in] reference - the planes of the previous frame, or NULL if planes is a delta
+//////////////////////////////////////////////////////////////////////////////////////////////
+void CDecoderContext::FindChanges(const uint8_t* planes, const uint8_t* reference)
+{
+  int    width        = m_pendingWidth;
+  int    height       = m_pendingHeight;
+  size_t lumaSize     = (size_t)width * height;
+  int    chromaWidth  = (width + (1 << m_chromaShiftX) - 1) >> m_chromaShiftX;
+  int    chromaHeight = height >> m_chromaShiftY;
+  size_t chromaSize   = (m_pendingSize - lumaSize) / 2;
+  ARect  bounds;
+
+  if (chromaWidth > 0 && (size_t)chromaWidth * chromaHeight > chromaSize)
+  {
+    chromaHeight = (int)(chromaSize / chromaWidth);
+  }
+  bounds.left   = width;
+  bounds.top    = height;
+  bounds.right  = 0;
+  bounds.bottom = 0;
+  addPlaneChanges(planes, reference, width, height, 0, 0, bounds);
+  for (int i = 0; i < 2; ++i)
+  {
+    size_t planeOffset = lumaSize + i * chromaSize;
+    addPlaneChanges(planes + planeOffset, reference ? reference + planeOffset : NULL,
+                    chromaWidth, chromaHeight, m_chromaShiftX, m_chromaShiftY, bounds);
+  }
+
+  if (bounds.right <= bounds.left || bounds.bottom <= bounds.top)
+  {
+    bounds.left   = 0;
+    bounds.top    = 0;
+    bounds.right  = 0;
+    bounds.bottom = 0;
+  }
+  else
+  {
+    // Keep the chroma samples of the rectangle complete
+    bounds.left   &= ~((1 << m_chromaShiftX) - 1);
+    bounds.top    &= ~((1 << m_chromaShiftY) - 1);
+    bounds.right  = std::min(bounds.right, width);
+    bounds.bottom = std::min(bounds.bottom, height);
+  }
+  m_dirty = bounds;
+}
+
+void CDecoderContext::RunStriped(CStripeWorkerPool::StripeFunc func, void* job, int width, int height, int rowAlignment)
+{
+  if (m_minStripedPixels <= 0 || width * height < m_minStripedPixels)
+  {
+    func(job, 0, height);
+    return;
+  }
+  if (!m_isWorkerPoolStarted)
+  {
+    // The thread calling RunStriped() processes stripes as well
+    m_workerPool.Start(CStripeWorkerPool::GetBigCoreCount() - 1);
+    m_isWorkerPoolStarted = true;
+  }
+  m_workerPool.Run(func, job, height, rowAlignment);
+}
+
+void CDecoderContext::SetWindow(ANativeWindow* window)
+{
+  if (m_window)
+  {
+    ANativeWindow_release(m_window);
+  }
+  m_window           = window;
+  m_windowWidth      = 0;
+  m_windowHeight     = 0;
+  m_isWindowComplete = false;
+  // The size of the surface, before the buffers geometry overrides it
+  m_surfaceWidth     = window ? ANativeWindow_getWidth(window) : 0;
+  m_surfaceHeight    = window ? ANativeWindow_getHeight(window) : 0;
+}
+
+void CDecoderContext::SetScaling(int filterMode)
+{
+  m_scalingFilter    = filterMode;
+  m_isWindowComplete = false;
+}
+
+bool CDecoderContext::LockWindow(ANativeWindow_Buffer& buffer, ARect& dirty)
+{
+  if (!m_window || !HasFrame())
+  {
+    return false;
+  }
+  int outputWidth  = GetOutputWidth();
+  int outputHeight = GetOutputHeight();
+
+  if (outputWidth != m_windowWidth || outputHeight != m_windowHeight)
+  {
+    if (ANativeWindow_setBuffersGeometry(m_window, outputWidth, outputHeight, WINDOW_FORMAT_RGBA_8888) < 0)
+    {
+      return false;
+    }
+    m_windowWidth      = outputWidth;
+    m_windowHeight     = outputHeight;
+    m_isWindowComplete = false;
+  }
+  if (m_isWindowComplete)
+  {
+    if (m_dirty.right <= m_dirty.left || m_dirty.bottom <= m_dirty.top)
+    {
+      // Nothing changed, the window already shows the frame
+      return false;
+    }
+    dirty = m_dirty;
+    if (IsScaling())
+    {
+      // The filters read a few pixels around each output pixel, the margin covers their taps
+      dirty.left   = scaleFloor(dirty.left - SCALING_MARGIN, outputWidth, m_frameWidth) - 1;
+      dirty.top    = scaleFloor(dirty.top - SCALING_MARGIN, outputHeight, m_frameHeight) - 1;
+      dirty.right  = scaleCeil(dirty.right + SCALING_MARGIN, outputWidth, m_frameWidth) + 1;
+      dirty.bottom = scaleCeil(dirty.bottom + SCALING_MARGIN, outputHeight, m_frameHeight) + 1;
+    }
+  }
+  else
+  {
+    dirty.left   = 0;
+    dirty.top    = 0;
+    dirty.right  = outputWidth;
+    dirty.bottom = outputHeight;
+  }
+  if (ANativeWindow_lock(m_window, &buffer, &dirty) < 0)
+  {
+    // The changes of this frame never reach the window
+    m_isWindowComplete = false;
+    return false;
+  }
+  // The window reports the region it needs, which may be larger than the requested one
+  dirty.left   = std::max(0, dirty.left) & ~((1 << m_chromaShiftX) - 1);
+  dirty.top    = std::max(0, dirty.top) & ~((1 << m_chromaShiftY) - 1);
+  dirty.right  = std::min(dirty.right, std::min(outputWidth, buffer.width));
+  dirty.bottom = std::min(dirty.bottom, std::min(outputHeight, buffer.height));
+  return true;
+}
+
+void CDecoderContext::UnlockWindow()
+{
+  ANativeWindow_unlockAndPost(m_window);
+  m_isWindowComplete = true;
+}
@@ -0,0 +1,398 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file DecoderContext.h
+/// @brief
+///
+/// Contains declaration of the CScratchBuffer and CDecoderContext classes.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+#ifndef __DecoderContext_H__
+#define __DecoderContext_H__
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <stddef.h>
+#include <stdint.h>
+#include <android/native_window.h>
+//---
+#include "StripeWorkerPool.h"
+
+//--------------------------------------------------------------------------------------------
+//  Constants
+//--------------------------------------------------------------------------------------------
+
+// Size of the frame header: width (int16), height (int16) and size field (uint32)
+static const int      FRAME_HEADER_SIZE   = 8;
+
+// Set in the size field of the frame header when the planes are an XOR delta to the previous
+// frame
+static const uint32_t FRAME_FLAG_DELTA    = 0x80000000u;
+
+// Set in the size field of the frame header when the LZ4 data is followed by its Adler-32
+// checksum (uint32)
+static const uint32_t FRAME_FLAG_CHECKSUM = 0x40000000u;
+
+// Results of CDecoderContext::DecodeFrame(), mirrored by the Java decoders
+static const int      FRAME_DECODED       = 0;
+static const int      FRAME_CORRUPT       = 1;
+static const int      FRAME_NO_REFERENCE  = 2;
+static const int      FRAME_FAILED        = 3;
+
+//--------------------------------------------------------------------------------------------
+//  Type definitions
+//--------------------------------------------------------------------------------------------
+
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// \class CScratchBuffer
+/// \brief Grow-only memory block aligned for SIMD access. Once the buffer has reached the size
+/// of the largest frame, it is reused without any further allocation.
+//////////////////////////////////////////////////////////////////////////////////////////////
+class CScratchBuffer
+{
+public:
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Default constructor
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  CScratchBuffer();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Destructor
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  ~CScratchBuffer();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Makes sure the buffer can hold the specified number of bytes. The buffer never shrinks.
+  /// When it has to grow, its previous content is lost.
+  ///
+  /// @param[in] size - the required size
+  /// @retval uint8_t* - the buffer data, or NULL if the allocation failed
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  uint8_t*    Reserve(size_t size);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns the buffer data
+  ///
+  /// @retval uint8_t* - the buffer data, NULL if nothing was reserved yet
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  uint8_t*    GetData() const;
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns the buffer capacity
+  /// @retval size_t - the buffer capacity
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  size_t      GetCapacity() const;
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Frees the buffer memory
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        Release();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Exchanges the memory of two buffers
+  ///
+  /// @param[in,out] other - the other buffer
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        Swap(CScratchBuffer& other);
+
+private:
+  CScratchBuffer(const CScratchBuffer&);
+  CScratchBuffer& operator=(const CScratchBuffer&);
+
+private:
+  uint8_t* m_data;
+  size_t   m_capacity;
+};
+
+inline uint8_t* CScratchBuffer::GetData() const
+{
+  return m_data;
+}
+
+inline size_t CScratchBuffer::GetCapacity() const
+{
+  return m_capacity;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// \class CDecoderContext
+/// \brief Native state of a software frame decoder. Created when the Java decoder starts
+/// decoding and released when it stops, so that the per-frame buffers are allocated once per
+/// session instead of once per frame.
+///
+/// The context also owns the native window of the video surface. The decoded frames are
+/// converted straight into the window buffers, and the last decompressed frame is kept so that
+/// a screenshot can be produced on demand. The same frame is the reference of the XOR delta
+/// frames, which only carry the difference to the previous frame.
+///
+/// Each frame records the bounding box of the pixels that differ from the previous frame.
+/// Only that region of the window is locked and converted, the window keeps the rest of the
+/// previous content. Key frames are decompressed into a staging buffer, compared with the
+/// previous frame and swapped in, deltas are non-zero exactly where the frame changed.
+///
+/// Frames are validated before they touch the frame buffer: the header has to match the
+/// decoder limits, the optional checksum has to match and the LZ4 data has to decompress to
+/// exactly the announced size. After a dropped frame the following deltas are dropped as
+/// well, until the next key frame resynchronises the decoder.
+///
+/// Large frames are converted in stripes by a worker pool sized to the big cores. The pool is
+/// started with the first frame that reaches the striping threshold.
+//////////////////////////////////////////////////////////////////////////////////////////////
+class CDecoderContext
+{
+public:
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Constructor
+  ///
+  /// @param[in] minStripedPixels - frames with at least this number of pixels are converted in
+  ///                               stripes by multiple threads, 0 to always use one thread
+  /// @param[in] chromaShiftX     - horizontal chroma subsampling of the frames, as a shift
+  /// @param[in] chromaShiftY     - vertical chroma subsampling of the frames, as a shift
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  CDecoderContext(int minStripedPixels, int chromaShiftX, int chromaShiftY);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Destructor
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  ~CDecoderContext();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Sets the window the frames are rendered to. The context takes over the reference to the
+  /// window and releases the previous one.
+  ///
+  /// @param[in] window - the window, or NULL to stop rendering
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        SetWindow(ANativeWindow* window);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Locks the next buffer of the window for the current frame. The window buffers have the
+  /// output size, see GetOutputWidth(). Unless the frame is scaled natively, that is the size
+  /// of the frame and the consumer of the surface scales the buffers to the view.
+  ///
+  /// Only the dirty rectangle of the frame is locked. The window may extend it, e.g. when the
+  /// buffer has no valid previous content, so the returned rectangle has to be redrawn.
+  ///
+  /// @param[out] buffer - the locked RGBA buffer
+  /// @param[out] dirty  - the region of the buffer to redraw
+  /// @retval bool - true if the buffer was locked and has to be unlocked with UnlockWindow(),
+  ///                false on failure or when nothing changed
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  bool        LockWindow(ANativeWindow_Buffer& buffer, ARect& dirty);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Posts the buffer locked by LockWindow()
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        UnlockWindow();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns true if the frame buffer holds a decoded frame
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  bool        HasFrame() const;
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Processes the rows of a frame, in stripes on multiple threads if the frame reaches the
+  /// striping threshold
+  ///
+  /// @param[in] func         - the stripe function
+  /// @param[in] job          - the job passed to the stripe function
+  /// @param[in] width        - the frame width
+  /// @param[in] height       - the frame height
+  /// @param[in] rowAlignment - the stripes start at multiples of this number of rows
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        RunStriped(CStripeWorkerPool::StripeFunc func, void* job, int width, int height, int rowAlignment);
+
+  int         GetFrameWidth() const;
+  int         GetFrameHeight() const;
+  int         GetFrameFormat() const;
+  uint8_t*    GetFrameData() const;
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Enables scaling the frames to the size of the window, which the window had when it was
+  /// set, instead of rendering them at their encoded size
+  ///
+  /// @param[in] filterMode - the libyuv::FilterMode of the scaling, or -1 to disable it
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        SetScaling(int filterMode);
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns true if the current frame has to be scaled to the output size before it is
+  /// converted into the window
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  bool        IsScaling() const;
+  int         GetScalingFilter() const;
+  int         GetOutputWidth() const;
+  int         GetOutputHeight() const;
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns the buffer receiving the planes of the scaled frame
+  ///
+  /// @param[in] size - the size of the scaled planes
+  /// @retval uint8_t* - the buffer, or NULL if the allocation failed
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  uint8_t*    ReserveScaledFrame(size_t size);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns the size of the Y, U and V planes of a frame
+  ///
+  /// @param[in] width  - the frame width
+  /// @param[in] height - the frame height
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  typedef size_t (*PlanesSizeFunc)(int width, int height);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Sets the limits the frame headers are validated against
+  ///
+  /// @param[in] maxWidth       - the maximum frame width, e.g. the surface width
+  /// @param[in] maxHeight      - the maximum frame height, e.g. the surface height
+  /// @param[in] verifyChecksum - true to verify the checksum of the frames that carry one
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        SetFrameLimits(int maxWidth, int maxHeight, bool verifyChecksum);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Validates and decompresses an encoded frame into the frame buffer
+  ///
+  /// @param[in] frame      - the encoded frame, starting with its header
+  /// @param[in] size       - the size of the encoded frame
+  /// @param[in] format     - decoder specific pixel format of the frame
+  /// @param[in] planesSize - returns the expected size of the decompressed planes
+  /// @retval int - FRAME_DECODED if the frame buffer holds the new frame, FRAME_CORRUPT if the
+  ///               frame was invalid, FRAME_NO_REFERENCE if it is a delta without a matching
+  ///               reference frame, FRAME_FAILED if the memory could not be allocated
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  int         DecodeFrame(const uint8_t* frame, int size, int format, PlanesSizeFunc planesSize);
+
+private:
+  CDecoderContext(const CDecoderContext&);
+  CDecoderContext& operator=(const CDecoderContext&);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Starts decoding a frame and returns the staging buffer that receives its decompressed Y,
+  /// U and V planes. EndFrame() swaps a key frame in, or XORs a delta onto the previous frame.
+  ///
+  /// @param[in] width   - the frame width
+  /// @param[in] height  - the frame height
+  /// @param[in] format  - decoder specific pixel format of the frame
+  /// @param[in] size    - the size of the decompressed planes
+  /// @param[in] isDelta - true if the planes are an XOR delta to the previous frame
+  /// @retval uint8_t* - the buffer, or NULL if the allocation failed or the delta does not
+  ///                    match the previous frame
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  uint8_t*    BeginFrame(int width, int height, int format, size_t size, bool isDelta);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Completes the frame started by BeginFrame(), which becomes the content of the frame
+  /// buffer, and computes its dirty rectangle
+  ///
+  /// @retval uint8_t* - the Y, U and V planes of the frame
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  uint8_t*    EndFrame();
+
+  bool        IsSameLayout(int width, int height, int format, size_t size) const;
+  int         DropFrame();
+  void        FindChanges(const uint8_t* planes, const uint8_t* reference);
+
+private:
+  CScratchBuffer    m_frame;
+  CScratchBuffer    m_staging;
+  CScratchBuffer    m_scaled;
+  int               m_frameWidth;
+  int               m_frameHeight;
+  int               m_frameFormat;
+  size_t            m_frameSize;
+  int               m_pendingWidth;
+  int               m_pendingHeight;
+  int               m_pendingFormat;
+  size_t            m_pendingSize;
+  bool              m_isPendingDelta;
+  bool              m_isReferenceValid;
+  int               m_maxWidth;
+  int               m_maxHeight;
+  bool              m_verifyChecksum;
+  int               m_chromaShiftX;
+  int               m_chromaShiftY;
+  ARect             m_dirty;
+  bool              m_isWindowComplete;
+  ANativeWindow*    m_window;
+  int               m_windowWidth;
+  int               m_windowHeight;
+  int               m_surfaceWidth;
+  int               m_surfaceHeight;
+  int               m_scalingFilter;
+  int               m_minStripedPixels;
+  bool              m_isWorkerPoolStarted;
+  CStripeWorkerPool m_workerPool;
+};
+
+inline bool CDecoderContext::HasFrame() const
+{
+  return m_frameWidth > 0 && m_frameHeight > 0;
+}
+
+inline int CDecoderContext::GetFrameWidth() const
+{
+  return m_frameWidth;
+}
+
+inline int CDecoderContext::GetFrameHeight() const
+{
+  return m_frameHeight;
+}
+
+inline int CDecoderContext::GetFrameFormat() const
+{
+  return m_frameFormat;
+}
+
+inline uint8_t* CDecoderContext::GetFrameData() const
+{
+  return m_frame.GetData();
+}
+
+inline bool CDecoderContext::IsScaling() const
+{
+  return m_scalingFilter >= 0 && m_surfaceWidth > 0 && m_surfaceHeight > 0 &&
+         (m_surfaceWidth != m_frameWidth || m_surfaceHeight != m_frameHeight);
+}
+
+inline int CDecoderContext::GetScalingFilter() const
+{
+  return m_scalingFilter;
+}
+
+inline int CDecoderContext::GetOutputWidth() const
+{
+  return IsScaling() ? m_surfaceWidth : m_frameWidth;
+}
+
+inline int CDecoderContext::GetOutputHeight() const
+{
+  return IsScaling() ? m_surfaceHeight : m_frameHeight;
+}
+
+inline uint8_t* CDecoderContext::ReserveScaledFrame(size_t size)
+{
+  return m_scaled.Reserve(size);
+}
+
+//--------------------------------------------------------------------------------------------
+//  JNI helpers
+//--------------------------------------------------------------------------------------------
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts the handle kept on the Java side to the context
+//////////////////////////////////////////////////////////////////////////////////////////////
+inline CDecoderContext* getDecoderContext(int64_t handle)
+{
+  return reinterpret_cast<CDecoderContext*>(static_cast<intptr_t>(handle));
+}
+
+#endif //__DecoderContext_H__
@@ -1,67 +1,303 @@
 #include <jni.h>
 #include <android/log.h>
 #include <android/bitmap.h>
+#include <android/native_window_jni.h>
 //---
-#include <assert.h>
 #include <stdint.h>
+#include <algorithm>
 //---
 #include <libyuv/convert_from.h>
 #include <libyuv/scale.h>
 #include <libyuv/convert_from_argb.h>
-#include <lz4.h>
+//---
+#include "DecoderContext.h"
+#include "YuvToRgba.h"
 
 
 #define  LOG_TAG    "I420Decoder.native"
 #define  LOGI(...)  __android_log_print(ANDROID_LOG_INFO,LOG_TAG,__VA_ARGS__)
 #define  LOGE(...)  __android_log_print(ANDROID_LOG_ERROR,LOG_TAG,__VA_ARGS__)
 
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// \struct SJavaCache
+/// \brief Java classes and methods looked up once in JNI_OnLoad()
+//////////////////////////////////////////////////////////////////////////////////////////////
+static struct SJavaCache
+{
+  jclass    bitmapClass;
+  jmethodID createBitmapMethodID;
+  jobject   argb8888Config;
+} s_java;
+
 static bool getBitmapInfo(JNIEnv* env, jobject bitmap, AndroidBitmapInfo& info);
 static jobject createBitmap(JNIEnv* env, int width, int height);
+static void convertFrame(CDecoderContext* decoderContext,
+                         const uint8_t* frame, int frameWidth, int frameHeight,
+                         uint8_t* dst, int dstStride, const ARect& rect);
+static void convertStripe(void* job, int firstRow, int lastRow);
+static const uint8_t* scaleFrame(CDecoderContext* decoderContext);
+static size_t getPlanesSize(int width, int height);
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// \struct SConvertJob
+/// \brief Parameters of a frame conversion shared by the stripes
+//////////////////////////////////////////////////////////////////////////////////////////////
+struct SConvertJob
+{
+  const uint8_t* frame;
+  int            frameWidth;
+  int            frameHeight;
+  uint8_t*       dst;
+  int            dstStride;
+  int            left;
+  int            top;
+  int            width;
+};
+
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Looks up the Java classes and methods used by the decoder
+///
+/// @retval jint - the required JNI version, or JNI_ERR on failure
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm, void* reserved)
+{
+  JNIEnv*  env;
+  jclass   bitmapConfig;
+  jfieldID argb8888FieldID;
+  jclass   bitmapClass;
+  jobject  argb8888Obj;
+
+  if (vm->GetEnv((void**)&env, JNI_VERSION_1_6) != JNI_OK)
+  {
+    return JNI_ERR;
+  }
+  bitmapConfig    = env->FindClass("android/graphics/Bitmap$Config");
+  argb8888FieldID = bitmapConfig ? env->GetStaticFieldID(bitmapConfig, "ARGB_8888",
+                                       "Landroid/graphics/Bitmap$Config;") : NULL;
+  argb8888Obj     = argb8888FieldID ? env->GetStaticObjectField(bitmapConfig, argb8888FieldID) : NULL;
+  bitmapClass     = env->FindClass("android/graphics/Bitmap");
+  s_java.createBitmapMethodID = bitmapClass ? env->GetStaticMethodID(bitmapClass, "createBitmap",
+                                    "(IILandroid/graphics/Bitmap$Config;)Landroid/graphics/Bitmap;") : NULL;
+  if (!argb8888Obj || !s_java.createBitmapMethodID)
+  {
+    LOGE("Failed to look up the android.graphics.Bitmap methods");
+    return JNI_ERR;
+  }
+  s_java.bitmapClass    = (jclass)env->NewGlobalRef(bitmapClass);
+  s_java.argb8888Config = env->NewGlobalRef(argb8888Obj);
+  env->DeleteLocalRef(bitmapConfig);
+  env->DeleteLocalRef(bitmapClass);
+  env->DeleteLocalRef(argb8888Obj);
+  return JNI_VERSION_1_6;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Creates the native context of a decoder, holding the buffers reused across frames
+///
+/// @param[in] minStripedPixels - frames with at least this number of pixels are converted by
+///                               multiple threads, 0 to always use one thread
+/// @retval jlong - handle of the context, 0 on failure
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT jlong JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_createContext(
+    JNIEnv*    env,
+    jclass     classObj,
+    jint       minStripedPixels
+    )
+{
+  return static_cast<jlong>(reinterpret_cast<intptr_t>(new CDecoderContext(minStripedPixels, 1, 1)));
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Releases a context created by createContext()
+///
+/// @param[in] context - The context handle
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT void JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_releaseContext(
+    JNIEnv*    env,
+    jclass     classObj,
+    jlong      context
+    )
+{
+  delete getDecoderContext(context);
+}
 
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Sets the surface the decoded frames are rendered to
+///
+/// @param[in] context - The context handle
+/// @param[in] surface - The android.view.Surface, or NULL to stop rendering
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT void JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_setSurface(
+    JNIEnv*    env,
+    jclass     classObj,
+    jlong      context,
+    jobject    surface
+    )
+{
+  CDecoderContext* decoderContext = getDecoderContext(context);
+
+  if (decoderContext)
+  {
+    ANativeWindow* window = surface ? ANativeWindow_fromSurface(env, surface) : NULL;
+    if (surface && !window)
+    {
+      LOGE("ANativeWindow_fromSurface() failed");
+    }
+    decoderContext->SetWindow(window);
+  }
+}
 
 //////////////////////////////////////////////////////////////////////////////////////////////
-/// Encodes a frame using I420+XOR+LZ4
+/// Sets the limits the frames are validated against
 ///
-/// @param[in] sourceFrame - The source image
-/// @param[in] srcWidth    - The source image width
-/// @param[in] srcHeight   - The source image height
-/// @param[in] encWidth    - The encoded image width
-/// @param[in] encHeight   - The encoded image height
-/// @param[in] encodedFrame- The encoded frame
+/// @param[in] context        - The context handle
+/// @param[in] maxWidth       - The maximum frame width
+/// @param[in] maxHeight      - The maximum frame height
+/// @param[in] verifyChecksum - true to verify the checksum of the frames that carry one
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT void JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_setFrameLimits(
+    JNIEnv*    env,
+    jclass     classObj,
+    jlong      context,
+    jint       maxWidth,
+    jint       maxHeight,
+    jboolean   verifyChecksum
+    )
+{
+  CDecoderContext* decoderContext = getDecoderContext(context);
+
+  if (decoderContext)
+  {
+    decoderContext->SetFrameLimits(maxWidth, maxHeight, verifyChecksum);
+  }
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Enables scaling the frames to the size of the surface in the decoder
 ///
-/// @retval bool - true on success, false otherwise
+/// @param[in] context    - The context handle
+/// @param[in] filterMode - The libyuv::FilterMode of the scaling, or -1 to render the frames at
+///                         their encoded size
 //////////////////////////////////////////////////////////////////////////////////////////////
-extern "C" JNIEXPORT jobject JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_decodeFrame(
+extern "C" JNIEXPORT void JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_setScaling(
+    JNIEnv*    env,
+    jclass     classObj,
+    jlong      context,
+    jint       filterMode
+    )
+{
+  CDecoderContext* decoderContext = getDecoderContext(context);
+
+  if (decoderContext)
+  {
+    decoderContext->SetScaling(filterMode);
+  }
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Decodes a frame encoded using I420+XOR+LZ4 and renders it to the surface of the context.
+/// When the size field of the header has FRAME_FLAG_DELTA set, the decompressed planes are
+/// XOR-ed onto the previous frame.
+///
+/// @param[in] context     - The native decoder context returned by createContext()
+/// @param[in] encFrame    - The encoded frame
+/// @param[in] startPos    - The offset of the frame in encFrame
+/// @param[in] size        - The size of the frame
+///
+/// @retval jint - FRAME_DECODED on success, FRAME_CORRUPT, FRAME_NO_REFERENCE or FRAME_FAILED
+///                if the frame was dropped
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT jint JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_decodeFrame(
     JNIEnv*    env,
     jobject    classObj,
-    jobject    frameBuffer,
+    jlong      context,
     jbyteArray encFrame,
     jint       startPos,
     jint       size
     )
 {
-  jobject  result     = NULL;
-  jboolean isCopy     = false;
-  jbyte*   source     = env->GetByteArrayElements(encFrame, &isCopy);
+  CDecoderContext* decoderContext = getDecoderContext(context);
+  jint     result     = FRAME_FAILED;
+  uint8_t* source     = NULL;
+
+  if (!decoderContext)
+  {
+    return FRAME_FAILED;
+  }
+  if (startPos < 0 || size < 0 || startPos > env->GetArrayLength(encFrame) - size)
+  {
+    LOGE("Invalid frame range %d+%d", startPos, size);
+    return FRAME_CORRUPT;
+  }
+  // The critical section only covers the decompression into the staging buffer, which makes
+  // no JNI calls and never blocks. The array is neither copied nor pinned for the presentation.
+  source = (uint8_t*)env->GetPrimitiveArrayCritical(encFrame, NULL);
+  if (!source)
+  {
+    return FRAME_FAILED;
+  }
+  result = decoderContext->DecodeFrame(source + startPos, size, 0, getPlanesSize);
+  env->ReleasePrimitiveArrayCritical(encFrame, source, JNI_ABORT);
+
+  if (result == FRAME_DECODED)
+  {
+    ANativeWindow_Buffer buffer;
+    ARect                dirty;
+
+    if (decoderContext->LockWindow(buffer, dirty))
+    {
+      const uint8_t* planes = decoderContext->IsScaling() ? scaleFrame(decoderContext) : decoderContext->GetFrameData();
+
+      if (planes)
+      {
+        convertFrame(decoderContext, planes,
+                     decoderContext->GetOutputWidth(), decoderContext->GetOutputHeight(),
+                     (uint8_t*)buffer.bits, buffer.stride * 4, dirty);
+      }
+      else
+      {
+        LOGE("Failed to allocate the scaled frame");
+      }
+      decoderContext->UnlockWindow();
+    }
+  }
+  else if (result == FRAME_FAILED)
+  {
+    LOGE("Failed to allocate the frame buffer");
+  }
+  return result;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts the last decoded frame to a bitmap
+///
+/// @param[in] context     - The native decoder context returned by createContext()
+/// @param[in] frameBuffer - A bitmap to reuse, a new one is created if it has a different size
+///
+/// @retval jobject - the bitmap holding the frame, NULL if no frame was decoded yet
+//////////////////////////////////////////////////////////////////////////////////////////////
+extern "C" JNIEXPORT jobject JNICALL Java_com_abaltatech_weblinkclient_framedecoding_FrameDecoder_1I420_createScreenshot(
+    JNIEnv*    env,
+    jobject    classObj,
+    jlong      context,
+    jobject    frameBuffer
+    )
+{
+  CDecoderContext* decoderContext = getDecoderContext(context);
+  jobject          result         = NULL;
 
-  if (source)
+  if (decoderContext && decoderContext->HasFrame())
   {
-    jbyte*  inputFrame = source + startPos;
-    int     offset     = sizeof(uint32_t) + 2 * sizeof(uint16_t);
-    int16_t encWidth   = ((int16_t*)inputFrame)[0];
-    int16_t encHeight  = ((int16_t*)inputFrame)[1];
-    int     bufferSize = *(uint32_t*)(inputFrame + 4);
-    int     y_plane_size = encWidth * encHeight;
-    int     u_plane_size = ((encWidth + 1) / 2) * (encHeight / 2);
-    int     v_plane_size = ((encWidth + 1) / 2) * (encHeight / 2);
+    int               width  = decoderContext->GetFrameWidth();
+    int               height = decoderContext->GetFrameHeight();
     AndroidBitmapInfo info;
     void*             pixels;
 
-    assert(bufferSize == y_plane_size + u_plane_size + v_plane_size);
-    if (!getBitmapInfo(env, frameBuffer, info) || info.width != encWidth || info.height != encHeight)
+    if (!getBitmapInfo(env, frameBuffer, info) || (int)info.width != width || (int)info.height != height)
     {
-      LOGI("New %dx%d bitmap created", encWidth, encHeight);
-      result = createBitmap(env, encWidth, encHeight);
+      LOGI("New %dx%d bitmap created", width, height);
+      result = createBitmap(env, width, height);
     }
     else
     {
@@ -69,24 +305,11 @@ extern "C" JNIEXPORT jobject JNICALL Java_com_abaltatech_weblinkclient_framedeco
     }
     if (result && AndroidBitmap_lockPixels(env, result, &pixels) >= 0)
     {
-      uint8_t*     i420frame = new uint8_t[bufferSize];
-      int          readSize  = LZ4_decompress_fast((char*)inputFrame + offset, (char*)i420frame, bufferSize);
-      const uint8* src_y  = i420frame;
-      const uint8* src_u  = i420frame + y_plane_size;
-      const uint8* src_v  = i420frame + y_plane_size + u_plane_size;
-
-      assert(readSize == size - offset);
-      libyuv::I420ToABGR(
-                      src_y, encWidth,
-                      src_u, (encWidth + 1) / 2,
-                      src_v, (encWidth + 1) / 2,
-                      (uint8*)pixels, encWidth * 4,
-                      encWidth, encHeight
-                    );
+      ARect frameRect = { 0, 0, width, height };
+
+      convertFrame(decoderContext, decoderContext->GetFrameData(), width, height, (uint8_t*)pixels, width * 4, frameRect);
       AndroidBitmap_unlockPixels(env, result);
-      delete[] i420frame;
     }
-    env->ReleaseByteArrayElements(encFrame, source, JNI_ABORT);
   }
   return result;
 }
@@ -157,15 +380,121 @@ static bool getBitmapInfo(JNIEnv* env, jobject bitmap, AndroidBitmapInfo& info)
 
 static jobject createBitmap(JNIEnv* env, int width, int height)
 {
-  jclass    bitmapConfig    = env->FindClass("android/graphics/Bitmap$Config");
-  jfieldID  argb8888FieldID = env->GetStaticFieldID(bitmapConfig, "ARGB_8888",
-                                  "Landroid/graphics/Bitmap$Config;");
-  jobject   argb8888Obj     = env->GetStaticObjectField(bitmapConfig, argb8888FieldID);
-  jclass    bitmapClass     = env->FindClass("android/graphics/Bitmap");
-  jmethodID createBitmapMethodID =
-                              env->GetStaticMethodID(bitmapClass,"createBitmap",
-                                  "(IILandroid/graphics/Bitmap$Config;)Landroid/graphics/Bitmap;");
-  jobject   bitmapObj       = env->CallStaticObjectMethod(bitmapClass,
-                                  createBitmapMethodID, width, height, argb8888Obj);
-  return bitmapObj;
+  return env->CallStaticObjectMethod(s_java.bitmapClass, s_java.createBitmapMethodID,
+                                     width, height, s_java.argb8888Config);
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Scales the last decoded frame to the output size of the context. The planes are scaled
+/// one by one, as I420Scale() would, so that the chroma planes keep the h / 2 rows of the
+/// frame layout for odd heights.
+///
+/// @param[in] decoderContext - the decoder context
+/// @retval const uint8_t* - the Y, U and V planes of the scaled frame, NULL if the allocation
+///                          failed
+//////////////////////////////////////////////////////////////////////////////////////////////
+static const uint8_t* scaleFrame(CDecoderContext* decoderContext)
+{
+  int                 srcWidth     = decoderContext->GetFrameWidth();
+  int                 srcHeight    = decoderContext->GetFrameHeight();
+  int                 dstWidth     = decoderContext->GetOutputWidth();
+  int                 dstHeight    = decoderContext->GetOutputHeight();
+  int                 srcUVStride  = (srcWidth + 1) / 2;
+  int                 dstUVStride  = (dstWidth + 1) / 2;
+  size_t              srcYSize     = (size_t)srcWidth * srcHeight;
+  size_t              srcUSize     = (size_t)srcUVStride * (srcHeight / 2);
+  size_t              dstYSize     = (size_t)dstWidth * dstHeight;
+  size_t              dstUSize     = (size_t)dstUVStride * (dstHeight / 2);
+  libyuv::FilterMode  filter       = (libyuv::FilterMode)decoderContext->GetScalingFilter();
+  const uint8_t*      src          = decoderContext->GetFrameData();
+  uint8_t*            dst          = decoderContext->ReserveScaledFrame(getPlanesSize(dstWidth, dstHeight));
+
+  if (dst)
+  {
+    libyuv::ScalePlane(src, srcWidth, srcWidth, srcHeight, dst, dstWidth, dstWidth, dstHeight, filter);
+    if (srcHeight / 2 > 0 && dstHeight / 2 > 0)
+    {
+      libyuv::ScalePlane(src + srcYSize, srcUVStride, srcUVStride, srcHeight / 2,
+                         dst + dstYSize, dstUVStride, dstUVStride, dstHeight / 2, filter);
+      libyuv::ScalePlane(src + srcYSize + srcUSize, srcUVStride, srcUVStride, srcHeight / 2,
+                         dst + dstYSize + dstUSize, dstUVStride, dstUVStride, dstHeight / 2, filter);
+    }
+  }
+  return dst;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts a part of an I420 frame to RGBA
+///
+/// @param[in] decoderContext - the context running the conversion
+/// @param[in] frame          - the Y, U and V planes of the frame
+/// @param[in] frameWidth     - the frame width
+/// @param[in] frameHeight    - the frame height
+/// @param[in] dst            - the destination pixels, for the whole frame
+/// @param[in] dstStride      - the destination stride in bytes
+/// @param[in] rect           - the part of the frame to convert
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void convertFrame(CDecoderContext* decoderContext,
+                         const uint8_t* frame, int frameWidth, int frameHeight,
+                         uint8_t* dst, int dstStride, const ARect& rect)
+{
+  SConvertJob job;
+
+  job.frame       = frame;
+  job.frameWidth  = frameWidth;
+  job.frameHeight = frameHeight;
+  job.dst         = dst;
+  job.dstStride   = dstStride;
+  job.left        = rect.left;
+  job.top         = rect.top;
+  job.width       = rect.right - rect.left;
+  decoderContext->RunStriped(convertStripe, &job, job.width, rect.bottom - rect.top, 2);
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts the rows [firstRow, lastRow) of the rectangle of a conversion job
+///
+/// @param[in] job      - the SConvertJob
+/// @param[in] firstRow - the first row to convert
+/// @param[in] lastRow  - the row after the last row to convert
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void convertStripe(void* job, int firstRow, int lastRow)
+{
+  const SConvertJob& convertJob = *static_cast<const SConvertJob*>(job);
+  int          frameWidth   = convertJob.frameWidth;
+  int          row          = convertJob.top + firstRow;
+  int          left         = convertJob.left;
+  int          height       = lastRow - firstRow;
+  int          width        = convertJob.width;
+  int          dstStride    = convertJob.dstStride;
+  uint8_t*     dst          = convertJob.dst + row * dstStride + left * 4;
+  int          y_plane_size = frameWidth * convertJob.frameHeight;
+  int          u_plane_size = ((frameWidth + 1) / 2) * (convertJob.frameHeight / 2);
+  int          uv_stride    = (frameWidth + 1) / 2;
+  const uint8* src_y  = convertJob.frame + row * frameWidth + left;
+  const uint8* src_u  = convertJob.frame + y_plane_size + (row / 2) * uv_stride + left / 2;
+  const uint8* src_v  = convertJob.frame + y_plane_size + u_plane_size + (row / 2) * uv_stride + left / 2;
+
+  convertI420ToRGBA(
+                  src_y, frameWidth,
+                  src_u, (frameWidth + 1) / 2,
+                  src_v, (frameWidth + 1) / 2,
+                  (uint8*)dst, dstStride,
+                  width, height
+                );
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Returns the size of the Y, U and V planes of an I420 frame
+///
+/// @param[in] width  - the frame width
+/// @param[in] height - the frame height
+//////////////////////////////////////////////////////////////////////////////////////////////
+static size_t getPlanesSize(int width, int height)
+{
+  size_t y_plane_size = (size_t)width * height;
+  size_t u_plane_size = (size_t)((width + 1) / 2) * (height / 2);
+  size_t v_plane_size = (size_t)((width + 1) / 2) * (height / 2);
+
+  return y_plane_size + u_plane_size + v_plane_size;
 }
@@ -0,0 +1,217 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file StripeWorkerPool.cpp
+/// @brief
+///
+/// Contains implementation of the CStripeWorkerPool class.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include "StripeWorkerPool.h"
+#include <stdio.h>
+#include <unistd.h>
+
+
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+
+CStripeWorkerPool::CStripeWorkerPool()
+: m_numWorkers(0)
+, m_isStopping(false)
+, m_generation(0)
+, m_numActiveWorkers(0)
+, m_func(NULL)
+, m_job(NULL)
+, m_height(0)
+, m_stripeHeight(0)
+, m_nextRow(0)
+, m_numPendingRows(0)
+{
+  pthread_mutex_init(&m_mutex, NULL);
+  pthread_cond_init(&m_workCond, NULL);
+  pthread_cond_init(&m_doneCond, NULL);
+}
+
+CStripeWorkerPool::~CStripeWorkerPool()
+{
+  Stop();
+  pthread_cond_destroy(&m_doneCond);
+  pthread_cond_destroy(&m_workCond);
+  pthread_mutex_destroy(&m_mutex);
+}
+
+int CStripeWorkerPool::Start(int numWorkers)
+{
+  Stop();
+  if (numWorkers > MAX_WORKERS)
+  {
+    numWorkers = MAX_WORKERS;
+  }
+  m_isStopping = false;
+  while (m_numWorkers < numWorkers)
+  {
+    if (pthread_create(&m_workers[m_numWorkers], NULL, WorkerProc, this) != 0)
+    {
+      break;
+    }
+    ++m_numWorkers;
+  }
+  return m_numWorkers;
+}
+
+void CStripeWorkerPool::Stop()
+{
+  pthread_mutex_lock(&m_mutex);
+  m_isStopping = true;
+  pthread_cond_broadcast(&m_workCond);
+  pthread_mutex_unlock(&m_mutex);
+  for (int i = 0; i < m_numWorkers; ++i)
+  {
+    pthread_join(m_workers[i], NULL);
+  }
+  m_numWorkers = 0;
+}
+
+void CStripeWorkerPool::Run(StripeFunc func, void* job, int height, int rowAlignment)
+{
+  int numThreads   = m_numWorkers + 1;
+  int stripeHeight = (height + numThreads - 1) / numThreads;
+
+  stripeHeight = (stripeHeight + rowAlignment - 1) / rowAlignment * rowAlignment;
+  if (m_numWorkers == 0 || stripeHeight >= height)
+  {
+    func(job, 0, height);
+    return;
+  }
+
+  pthread_mutex_lock(&m_mutex);
+  // Workers of the previous job may still be on their way out
+  while (m_numActiveWorkers > 0)
+  {
+    pthread_cond_wait(&m_doneCond, &m_mutex);
+  }
+  m_func           = func;
+  m_job            = job;
+  m_height         = height;
+  m_stripeHeight   = stripeHeight;
+  m_nextRow        = 0;
+  m_numPendingRows = height;
+  ++m_generation;
+  pthread_cond_broadcast(&m_workCond);
+
+  RunStripes();
+  while (m_numPendingRows > 0 || m_numActiveWorkers > 0)
+  {
+    pthread_cond_wait(&m_doneCond, &m_mutex);
+  }
+  pthread_mutex_unlock(&m_mutex);
+}
+
+void* CStripeWorkerPool::WorkerProc(void* param)
+{
+  static_cast<CStripeWorkerPool*>(param)->Work();
+  return NULL;
+}
+
+void CStripeWorkerPool::Work()
+{
+  pthread_mutex_lock(&m_mutex);
+  unsigned generation = m_generation;
+  for (;;)
+  {
+    while (!m_isStopping && m_generation == generation)
+    {
+      pthread_cond_wait(&m_workCond, &m_mutex);
+    }
+    if (m_isStopping)
+    {
+      break;
+    }
+    generation = m_generation;
+    ++m_numActiveWorkers;
+    RunStripes();
+    if (--m_numActiveWorkers == 0)
+    {
+      pthread_cond_signal(&m_doneCond);
+    }
+  }
+  pthread_mutex_unlock(&m_mutex);
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Processes stripes until none is left. Called with the mutex locked, which is released
+/// while a stripe is processed.
+//////////////////////////////////////////////////////////////////////////////////////////////
+void CStripeWorkerPool::RunStripes()
+{
+  while (m_nextRow < m_height)
+  {
+    int firstRow = m_nextRow;
+    int lastRow  = firstRow + m_stripeHeight < m_height ? firstRow + m_stripeHeight : m_height;
+
+    m_nextRow = lastRow;
+    pthread_mutex_unlock(&m_mutex);
+    m_func(m_job, firstRow, lastRow);
+    pthread_mutex_lock(&m_mutex);
+    m_numPendingRows -= lastRow - firstRow;
+    if (m_numPendingRows == 0)
+    {
+      pthread_cond_signal(&m_doneCond);
+    }
+  }
+}
+
+int CStripeWorkerPool::GetBigCoreCount()
+{
+  int  numCores   = static_cast<int>(sysconf(_SC_NPROCESSORS_CONF));
+  int  result     = 0;
+  long maxFreqKHz = 0;
+
+  for (int i = 0; i < numCores; ++i)
+  {
+    char  path[96];
+    long  freqKHz = 0;
+    FILE* file;
+
+    snprintf(path, sizeof(path), "/sys/devices/system/cpu/cpu%d/cpufreq/cpuinfo_max_freq", i);
+    file = fopen(path, "r");
+    if (file)
+    {
+      if (fscanf(file, "%ld", &freqKHz) == 1)
+      {
+        if (freqKHz > maxFreqKHz)
+        {
+          maxFreqKHz = freqKHz;
+          result     = 1;
+        }
+        else if (freqKHz == maxFreqKHz)
+        {
+          ++result;
+        }
+      }
+      fclose(file);
+    }
+  }
+  if (result == 0)
+  {
+    // The frequencies are not readable, assume a symmetric system
+    result = static_cast<int>(sysconf(_SC_NPROCESSORS_ONLN));
+  }
+  return result > 0 ? result : 1;
+}
@@ -0,0 +1,131 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file StripeWorkerPool.h
+/// @brief
+///
+/// Contains declaration of the CStripeWorkerPool class.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+#ifndef __StripeWorkerPool_H__
+#define __StripeWorkerPool_H__
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <pthread.h>
+
+//--------------------------------------------------------------------------------------------
+//  Type definitions
+//--------------------------------------------------------------------------------------------
+
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// \class CStripeWorkerPool
+/// \brief Small pool of native threads that process an image in horizontal stripes.
+///
+/// Run() splits the rows of an image into one stripe per thread and returns when all of them
+/// were processed. The calling thread processes stripes as well. The threads are created once
+/// and synchronised with a mutex and two condition variables, so running a job does not
+/// allocate. Run() must not be called concurrently.
+//////////////////////////////////////////////////////////////////////////////////////////////
+class CStripeWorkerPool
+{
+public:
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Processes the rows [firstRow, lastRow) of an image
+  ///
+  /// @param[in] job      - the job passed to Run()
+  /// @param[in] firstRow - the first row of the stripe
+  /// @param[in] lastRow  - the row after the last row of the stripe
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  typedef void (*StripeFunc)(void* job, int firstRow, int lastRow);
+
+  enum { MAX_WORKERS = 7 };
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Default constructor
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  CStripeWorkerPool();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Destructor, stops the workers
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  ~CStripeWorkerPool();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Starts the worker threads
+  ///
+  /// @param[in] numWorkers - the number of workers, not counting the thread calling Run()
+  /// @retval int - the number of workers started
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  int         Start(int numWorkers);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Stops the worker threads
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        Stop();
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns the number of started workers
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  int         GetWorkerCount() const;
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Processes the rows of an image in stripes and waits for all of them
+  ///
+  /// @param[in] func         - the stripe function
+  /// @param[in] job          - the job passed to the stripe function
+  /// @param[in] height       - the number of rows
+  /// @param[in] rowAlignment - the stripes start at multiples of this number of rows, e.g. 2
+  ///                           for vertically subsampled chroma
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  void        Run(StripeFunc func, void* job, int height, int rowAlignment);
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  /// Returns the number of the fastest cores of the device, e.g. the big cores of a big.LITTLE
+  /// system
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  static int  GetBigCoreCount();
+
+private:
+  CStripeWorkerPool(const CStripeWorkerPool&);
+  CStripeWorkerPool& operator=(const CStripeWorkerPool&);
+
+  static void* WorkerProc(void* param);
+  void        Work();
+  void        RunStripes();
+
+private:
+  pthread_mutex_t m_mutex;
+  pthread_cond_t  m_workCond;
+  pthread_cond_t  m_doneCond;
+  pthread_t       m_workers[MAX_WORKERS];
+  int             m_numWorkers;
+  bool            m_isStopping;
+  unsigned        m_generation;
+  int             m_numActiveWorkers;
+  StripeFunc      m_func;
+  void*           m_job;
+  int             m_height;
+  int             m_stripeHeight;
+  int             m_nextRow;
+  int             m_numPendingRows;
+};
+
+inline int CStripeWorkerPool::GetWorkerCount() const
+{
+  return m_numWorkers;
+}
+
+#endif //__StripeWorkerPool_H__
@@ -0,0 +1,181 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file YuvToRgba.cpp
+/// @brief
+///
+/// Contains implementation of the planar YUV to RGBA conversions of the software decoders.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include "YuvToRgba.h"
+#if defined(__aarch64__)
+#include <arm_neon.h>
+#else
+#include <libyuv/convert_from.h>
+#include <libyuv/planar_functions.h>
+#endif
+
+
+#if defined(__aarch64__)
+//--------------------------------------------------------------------------------------------
+//  Constants
+//--------------------------------------------------------------------------------------------
+
+// BT.601 coefficients in 6-bit fixed point, as in the C rows of libyuv (row_common.cc)
+static const int16_t YG = 74;
+static const int16_t UB = 127;
+static const int16_t UG = -25;
+static const int16_t VG = -52;
+static const int16_t VR = 102;
+
+
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+static inline uint8_t clip(int32_t value)
+{
+  return static_cast<uint8_t>(value < 0 ? 0 : (value > 255 ? 255 : value));
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts one pixel, exactly as YuvPixel() of libyuv
+//////////////////////////////////////////////////////////////////////////////////////////////
+static inline void convertPixel(uint8_t y, uint8_t u, uint8_t v, uint8_t* dst)
+{
+  int32_t y1 = (static_cast<int32_t>(y) - 16) * YG;
+
+  dst[0] = clip((v * VR - VR * 128 + y1) >> 6);
+  dst[1] = clip((u * UG + v * VG - (UG + VG) * 128 + y1) >> 6);
+  dst[2] = clip((u * UB - UB * 128 + y1) >> 6);
+  dst[3] = 255;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts 8 pixels sharing 8 (duplicated) chroma samples. All the terms fit in 16 bits, the
+/// saturating addition only clips sums that end up above 255 anyway.
+//////////////////////////////////////////////////////////////////////////////////////////////
+static inline uint8x8x4_t convertPixels(uint8x8_t y, uint8x8_t u, uint8x8_t v)
+{
+  int16x8_t   y1 = vmulq_n_s16(vsubq_s16(vreinterpretq_s16_u16(vmovl_u8(y)), vdupq_n_s16(16)), YG);
+  int16x8_t   u1 = vreinterpretq_s16_u16(vmovl_u8(u));
+  int16x8_t   v1 = vreinterpretq_s16_u16(vmovl_u8(v));
+  int16x8_t   r  = vsubq_s16(vmulq_n_s16(v1, VR), vdupq_n_s16(VR * 128));
+  int16x8_t   g  = vaddq_s16(vmlaq_n_s16(vmulq_n_s16(u1, UG), v1, VG), vdupq_n_s16(-(UG + VG) * 128));
+  int16x8_t   b  = vsubq_s16(vmulq_n_s16(u1, UB), vdupq_n_s16(UB * 128));
+  uint8x8x4_t rgba;
+
+  rgba.val[0] = vqmovun_s16(vshrq_n_s16(vqaddq_s16(r, y1), 6));
+  rgba.val[1] = vqmovun_s16(vshrq_n_s16(vqaddq_s16(g, y1), 6));
+  rgba.val[2] = vqmovun_s16(vshrq_n_s16(vqaddq_s16(b, y1), 6));
+  rgba.val[3] = vdup_n_u8(255);
+  return rgba;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts a row whose chroma is subsampled horizontally
+///
+/// @param[in] srcY  - the Y samples
+/// @param[in] srcU  - the U samples, one for two pixels
+/// @param[in] srcV  - the V samples, one for two pixels
+/// @param[in] dst   - the RGBA pixels
+/// @param[in] width - the number of pixels
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void convertRow(const uint8_t* srcY, const uint8_t* srcU, const uint8_t* srcV, uint8_t* dst, int width)
+{
+  int x = 0;
+
+  for (; x + 16 <= width; x += 16)
+  {
+    uint8x16_t y = vld1q_u8(srcY + x);
+    uint8x8_t  u = vld1_u8(srcU + x / 2);
+    uint8x8_t  v = vld1_u8(srcV + x / 2);
+
+    vst4_u8(dst + x * 4, convertPixels(vget_low_u8(y), vzip1_u8(u, u), vzip1_u8(v, v)));
+    vst4_u8(dst + x * 4 + 32, convertPixels(vget_high_u8(y), vzip2_u8(u, u), vzip2_u8(v, v)));
+  }
+  for (; x < width; ++x)
+  {
+    convertPixel(srcY[x], srcU[x / 2], srcV[x / 2], dst + x * 4);
+  }
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts an image whose chroma is subsampled horizontally, and vertically by chromaShiftY
+//////////////////////////////////////////////////////////////////////////////////////////////
+static int convertImage(const uint8_t* srcY, int strideY,
+                        const uint8_t* srcU, int strideU,
+                        const uint8_t* srcV, int strideV,
+                        uint8_t* dst, int dstStride,
+                        int width, int height, int chromaShiftY)
+{
+  if (!srcY || !srcU || !srcV || !dst || width <= 0 || height <= 0)
+  {
+    return -1;
+  }
+  for (int row = 0; row < height; ++row)
+  {
+    int chromaRow = row >> chromaShiftY;
+
+    convertRow(srcY + row * strideY, srcU + chromaRow * strideU, srcV + chromaRow * strideV,
+               dst + row * dstStride, width);
+  }
+  return 0;
+}
+
+int convertI420ToRGBA(const uint8_t* srcY, int strideY,
+                      const uint8_t* srcU, int strideU,
+                      const uint8_t* srcV, int strideV,
+                      uint8_t* dst, int dstStride,
+                      int width, int height)
+{
+  return convertImage(srcY, strideY, srcU, strideU, srcV, strideV, dst, dstStride, width, height, 1);
+}
+
+int convertI422ToRGBA(const uint8_t* srcY, int strideY,
+                      const uint8_t* srcU, int strideU,
+                      const uint8_t* srcV, int strideV,
+                      uint8_t* dst, int dstStride,
+                      int width, int height)
+{
+  return convertImage(srcY, strideY, srcU, strideU, srcV, strideV, dst, dstStride, width, height, 0);
+}
+
+#else
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+int convertI420ToRGBA(const uint8_t* srcY, int strideY,
+                      const uint8_t* srcU, int strideU,
+                      const uint8_t* srcV, int strideV,
+                      uint8_t* dst, int dstStride,
+                      int width, int height)
+{
+  return libyuv::I420ToABGR(srcY, strideY, srcU, strideU, srcV, strideV, dst, dstStride, width, height);
+}
+
+int convertI422ToRGBA(const uint8_t* srcY, int strideY,
+                      const uint8_t* srcU, int strideU,
+                      const uint8_t* srcV, int strideV,
+                      uint8_t* dst, int dstStride,
+                      int width, int height)
+{
+  return libyuv::I422ToABGR(srcY, strideY, srcU, strideU, srcV, strideV, dst, dstStride, width, height);
+}
+
+#endif
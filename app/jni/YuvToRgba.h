@@ -0,0 +1,69 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file YuvToRgba.h
+/// @brief
+///
+/// Contains declaration of the planar YUV to RGBA conversions of the software decoders.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+#ifndef __YuvToRgba_H__
+#define __YuvToRgba_H__
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <stdint.h>
+
+//--------------------------------------------------------------------------------------------
+//  Functions
+//--------------------------------------------------------------------------------------------
+
+// The conversions below have the signatures and produce the same pixels as libyuv::I420ToABGR()
+// and libyuv::I422ToABGR(): R, G, B and A bytes in memory. On arm64 they use NEON rows, which
+// the bundled libyuv only provides for ARMv7, on the other ABIs they call libyuv, whose
+// NEON/SSSE3 rows are selected at runtime by its cpu_id detection. bench/YuvToRgbaTest.cpp
+// checks them against the C rows of libyuv.
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts an I420 image, chroma subsampled horizontally and vertically, to RGBA
+///
+/// @param[in] srcY      - the Y plane
+/// @param[in] strideY   - the stride of the Y plane
+/// @param[in] srcU      - the U plane
+/// @param[in] strideU   - the stride of the U plane
+/// @param[in] srcV      - the V plane
+/// @param[in] strideV   - the stride of the V plane
+/// @param[in] dst       - the RGBA pixels
+/// @param[in] dstStride - the stride of the RGBA pixels in bytes
+/// @param[in] width     - the image width
+/// @param[in] height    - the image height
+/// @retval int - 0 on success, -1 on invalid arguments
+//////////////////////////////////////////////////////////////////////////////////////////////
+int convertI420ToRGBA(const uint8_t* srcY, int strideY,
+                      const uint8_t* srcU, int strideU,
+                      const uint8_t* srcV, int strideV,
+                      uint8_t* dst, int dstStride,
+                      int width, int height);
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts an I422 image, chroma subsampled horizontally, to RGBA
+///
+/// @see convertI420ToRGBA()
+//////////////////////////////////////////////////////////////////////////////////////////////
+int convertI422ToRGBA(const uint8_t* srcY, int strideY,
+                      const uint8_t* srcU, int strideU,
+                      const uint8_t* srcV, int strideV,
+                      uint8_t* dst, int dstStride,
+                      int width, int height);
+
+#endif //__YuvToRgba_H__
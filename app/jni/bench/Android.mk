@@ -0,0 +1,43 @@
+# Native benchmarks and tests, built as executables for the device:
+#   cd app/jni/bench
+#   ndk-build NDK_PROJECT_PATH=. APP_BUILD_SCRIPT=Android.mk NDK_APPLICATION_MK=Application.mk
+#   adb push libs/arm64-v8a/lz4_benchmark /data/local/tmp
+#   adb shell /data/local/tmp/lz4_benchmark
+# The executables of each ABI are in libs/<abi>, run them on a device of that ABI.
+BENCH_PATH := $(call my-dir)
+
+# liblz4 and libyuv, built like for the decoders
+include $(BENCH_PATH)/../Android.mk
+
+# LZ4 safe vs fast decompression of the frames of the software decoders
+include $(CLEAR_VARS)
+LOCAL_PATH      := $(BENCH_PATH)
+LOCAL_MODULE    := lz4_benchmark
+LOCAL_SRC_FILES := Lz4Benchmark.cpp
+LOCAL_STATIC_LIBRARIES := liblz4
+LOCAL_LDLIBS    += -lz
+LOCAL_C_INCLUDES += $(BENCH_PATH)/../lz4
+include $(BUILD_EXECUTABLE)
+
+# YUV to RGBA conversions of the software decoders, compared with the C rows of libyuv
+include $(CLEAR_VARS)
+LOCAL_PATH      := $(BENCH_PATH)
+LOCAL_MODULE    := yuv_to_rgba_test
+LOCAL_SRC_FILES := YuvToRgbaTest.cpp ../YuvToRgba.cpp
+LOCAL_STATIC_LIBRARIES := libyuv
+ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
+    LOCAL_ARM_NEON := true
+endif
+LOCAL_C_INCLUDES += $(BENCH_PATH)/.. $(BENCH_PATH)/../libyuv/include
+include $(BUILD_EXECUTABLE)
+
+include $(CLEAR_VARS)
+LOCAL_PATH      := $(BENCH_PATH)
+LOCAL_MODULE    := yuv_to_rgba_benchmark
+LOCAL_SRC_FILES := YuvToRgbaBenchmark.cpp ../YuvToRgba.cpp
+LOCAL_STATIC_LIBRARIES := libyuv
+ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
+    LOCAL_ARM_NEON := true
+endif
+LOCAL_C_INCLUDES += $(BENCH_PATH)/.. $(BENCH_PATH)/../libyuv/include
+include $(BUILD_EXECUTABLE)
@@ -0,0 +1,5 @@
+# The benchmarks run on the ABIs of the decoders. Executables need position independent code,
+# which the NDK enables from android-16 on.
+APP_ABI := armeabi-v7a arm64-v8a x86
+APP_PLATFORM := android-21
+APP_MODULES := lz4_benchmark yuv_to_rgba_test yuv_to_rgba_benchmark
@@ -0,0 +1,102 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file BenchmarkUtils.h
+/// @brief
+///
+/// Contains the timing and the synthetic frames shared by the native benchmarks.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+#ifndef __BenchmarkUtils_H__
+#define __BenchmarkUtils_H__
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <stdint.h>
+#include <time.h>
+
+//--------------------------------------------------------------------------------------------
+//  Functions
+//--------------------------------------------------------------------------------------------
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// @retval int64_t - the monotonic time, in nanoseconds
+//////////////////////////////////////////////////////////////////////////////////////////////
+static inline int64_t getTimeNs()
+{
+  timespec now;
+  clock_gettime(CLOCK_MONOTONIC, &now);
+  return static_cast<int64_t>(now.tv_sec) * 1000000000LL + now.tv_nsec;
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Fills the planes of an I420 frame with a synthetic user interface: flat panels, a gradient
+/// background and rows of text-like noise. The variants differ in a band of list rows, like
+/// two consecutive frames of an updating list item.
+///
+/// @param[out] planes  - the Y, U and V planes, width * height * 3 / 2 bytes
+/// @param[in]  width   - the width of the frame, even
+/// @param[in]  height  - the height of the frame, even
+/// @param[in]  variant - the variant of the changing panel
+//////////////////////////////////////////////////////////////////////////////////////////////
+static inline void fillScreenFrame(uint8_t* planes, int width, int height, int variant)
+{
+  uint32_t seed = 12345;
+  uint8_t* y    = planes;
+  uint8_t* u    = planes + width * height;
+  uint8_t* v    = u + width * height / 4;
+
+  for (int row = 0; row < height; ++row)
+  {
+    // The band of rows which changes between the variants
+    int shift = (row >= height / 2 && row < height / 2 + 96) ? variant : 0;
+    for (int col = 0; col < width; ++col)
+    {
+      // The same noise sequence for every variant, so that only the changing panel differs
+      seed = seed * 1103515245 + 12345;
+      uint8_t value;
+      if (row < height / 10)
+      {
+        // Title bar
+        value = 40;
+      }
+      else if (col < width / 4)
+      {
+        // Gradient background
+        value = static_cast<uint8_t>(64 + row * 128 / height);
+      }
+      else if ((row / 24 + shift) % 2 == 0 && (row % 24) < 14 && (col % 9) < 7)
+      {
+        // Text in every other list row
+        value = (seed >> 24) < 96 ? 230 : 20;
+      }
+      else
+      {
+        value = 245;
+      }
+      y[row * width + col] = value;
+    }
+  }
+
+  for (int row = 0; row < height / 2; ++row)
+  {
+    for (int col = 0; col < width / 2; ++col)
+    {
+      bool isPanel = row * 2 >= height / 10 && col * 2 >= width / 4;
+      u[row * width / 2 + col] = isPanel ? 128 : static_cast<uint8_t>(100 + row * 56 / height);
+      v[row * width / 2 + col] = isPanel ? 128 : 150;
+    }
+  }
+}
+
+#endif // __BenchmarkUtils_H__
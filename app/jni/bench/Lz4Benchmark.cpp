@@ -0,0 +1,191 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file Lz4Benchmark.cpp
+/// @brief
+///
+/// Compares the decompression of the software decoder frames with LZ4_decompress_fast() and
+/// with LZ4_decompress_safe(), with and without the Adler-32 verification of the frames.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <lz4.h>
+#include <zlib.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+//---
+#include "BenchmarkUtils.h"
+
+
+//--------------------------------------------------------------------------------------------
+//  Constants
+//--------------------------------------------------------------------------------------------
+
+// Frame size of the benchmark, a 720p I420 frame as sent by the host
+static const int FRAME_WIDTH  = 1280;
+static const int FRAME_HEIGHT = 720;
+
+// Number of decompressions timed in a round, and number of rounds. The fastest round counts.
+static const int ITERATIONS   = 50;
+static const int ROUNDS       = 15;
+
+
+//--------------------------------------------------------------------------------------------
+//  Type definitions
+//--------------------------------------------------------------------------------------------
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// \struct SCompressedFrame
+/// \brief The LZ4 data of a frame and its decompressed planes
+//////////////////////////////////////////////////////////////////////////////////////////////
+struct SCompressedFrame
+{
+  const char* name;
+  uint8_t*    planes;
+  int         planesSize;
+  char*       data;
+  int         dataSize;
+  uint32_t    checksum;
+};
+
+enum EMode
+{
+  eFast,
+  eSafe,
+  eSafeChecksum,
+  eModeCount
+};
+
+static const char* const MODE_NAMES[eModeCount] = { "fast", "safe", "safe+adler32" };
+
+
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Compresses the planes of a frame like the host does
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void compressFrame(SCompressedFrame& frame, const char* name, uint8_t* planes, int planesSize)
+{
+  frame.name       = name;
+  frame.planes     = planes;
+  frame.planesSize = planesSize;
+  frame.data       = static_cast<char*>(malloc(LZ4_compressBound(planesSize)));
+  frame.dataSize   = LZ4_compress(reinterpret_cast<const char*>(planes), frame.data, planesSize);
+  frame.checksum   = adler32(1, reinterpret_cast<const Bytef*>(frame.data), frame.dataSize);
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Decompresses a frame the way the selected decoder path does
+///
+/// @retval bool - true if the frame decompressed to the announced size
+//////////////////////////////////////////////////////////////////////////////////////////////
+static bool decompressFrame(const SCompressedFrame& frame, EMode mode, uint8_t* dst)
+{
+  switch (mode)
+  {
+  case eFast:
+    return LZ4_decompress_fast(frame.data, reinterpret_cast<char*>(dst), frame.planesSize) == frame.dataSize;
+  case eSafeChecksum:
+    if (adler32(1, reinterpret_cast<const Bytef*>(frame.data), frame.dataSize) != frame.checksum)
+    {
+      return false;
+    }
+    // Falls through
+  case eSafe:
+  default:
+    return LZ4_decompress_safe(frame.data, reinterpret_cast<char*>(dst), frame.dataSize, frame.planesSize) ==
+           frame.planesSize;
+  }
+}
+
+int main(int argc, char** argv)
+{
+  int              planesSize = FRAME_WIDTH * FRAME_HEIGHT * 3 / 2;
+  uint8_t*         keyPlanes  = static_cast<uint8_t*>(malloc(planesSize));
+  uint8_t*         nextPlanes = static_cast<uint8_t*>(malloc(planesSize));
+  uint8_t*         deltaPlanes = static_cast<uint8_t*>(malloc(planesSize));
+  uint8_t*         dst        = static_cast<uint8_t*>(malloc(planesSize));
+  SCompressedFrame frames[2];
+  bool             isValid    = true;
+
+  // A key frame, and the XOR delta to a frame where a part of the screen changed
+  fillScreenFrame(keyPlanes, FRAME_WIDTH, FRAME_HEIGHT, 0);
+  fillScreenFrame(nextPlanes, FRAME_WIDTH, FRAME_HEIGHT, 1);
+  for (int i = 0; i < planesSize; ++i)
+  {
+    deltaPlanes[i] = keyPlanes[i] ^ nextPlanes[i];
+  }
+  compressFrame(frames[0], "key frame", keyPlanes, planesSize);
+  compressFrame(frames[1], "delta frame", deltaPlanes, planesSize);
+
+  printf("LZ4 decompression of %dx%d I420 frames, fastest of %d rounds of %d frames\n",
+         FRAME_WIDTH, FRAME_HEIGHT, ROUNDS, ITERATIONS);
+  for (int f = 0; f < 2; ++f)
+  {
+    const SCompressedFrame& frame = frames[f];
+    double                  bestUs[eModeCount];
+
+    for (int mode = 0; mode < eModeCount; ++mode)
+    {
+      memset(dst, 0, planesSize);
+      if (!decompressFrame(frame, static_cast<EMode>(mode), dst) || memcmp(dst, frame.planes, planesSize) != 0)
+      {
+        printf("  %s: %s decompression failed\n", frame.name, MODE_NAMES[mode]);
+        isValid = false;
+      }
+      bestUs[mode] = 1e30;
+    }
+
+    // The modes are interleaved, so that frequency changes affect them alike
+    for (int round = 0; round < ROUNDS; ++round)
+    {
+      for (int mode = 0; mode < eModeCount; ++mode)
+      {
+        int64_t startNs = getTimeNs();
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+          decompressFrame(frame, static_cast<EMode>(mode), dst);
+        }
+        double us = (getTimeNs() - startNs) / 1000.0 / ITERATIONS;
+        if (us < bestUs[mode])
+        {
+          bestUs[mode] = us;
+        }
+      }
+    }
+
+    printf("  %s, %d bytes compressed to %d:\n", frame.name, frame.planesSize, frame.dataSize);
+    for (int mode = 0; mode < eModeCount; ++mode)
+    {
+      printf("    %-13s %8.1f us per frame, %+6.1f%% vs fast\n", MODE_NAMES[mode], bestUs[mode],
+             (bestUs[mode] / bestUs[eFast] - 1.0) * 100.0);
+    }
+  }
+
+  for (int f = 0; f < 2; ++f)
+  {
+    free(frames[f].data);
+  }
+  free(keyPlanes);
+  free(nextPlanes);
+  free(deltaPlanes);
+  free(dst);
+  return isValid ? 0 : 1;
+}
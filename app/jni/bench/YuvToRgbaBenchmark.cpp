@@ -0,0 +1,142 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file YuvToRgbaBenchmark.cpp
+/// @brief
+///
+/// Times the conversions of the software decoders, convertI420ToRGBA() and
+/// convertI422ToRGBA(), against the C rows of libyuv on the ABI it is built for.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <libyuv/convert_from.h>
+#include <libyuv/cpu_id.h>
+#include <libyuv/planar_functions.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+//---
+#include "BenchmarkUtils.h"
+#include "YuvToRgba.h"
+
+
+//--------------------------------------------------------------------------------------------
+//  Constants
+//--------------------------------------------------------------------------------------------
+
+static const int FRAME_WIDTH  = 1280;
+static const int FRAME_HEIGHT = 720;
+
+// Number of conversions timed in a round, and number of rounds. The fastest round counts.
+static const int ITERATIONS   = 20;
+static const int ROUNDS       = 10;
+
+#if defined(__aarch64__)
+static const char* const ABI  = "arm64-v8a";
+#elif defined(__arm__)
+static const char* const ABI  = "armeabi-v7a";
+#elif defined(__x86_64__)
+static const char* const ABI  = "x86_64";
+#elif defined(__i386__)
+static const char* const ABI  = "x86";
+#else
+static const char* const ABI  = "unknown";
+#endif
+
+
+//--------------------------------------------------------------------------------------------
+//  Type definitions
+//--------------------------------------------------------------------------------------------
+
+typedef int (*ConvertFunc)(const uint8_t* srcY, int strideY,
+                           const uint8_t* srcU, int strideU,
+                           const uint8_t* srcV, int strideV,
+                           uint8_t* dst, int dstStride,
+                           int width, int height);
+
+
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Times a conversion of a frame
+///
+/// @param[in] cpuFlags - the CPU flags libyuv may use, 0 for its C rows
+///
+/// @retval double - the fastest time of a conversion, in microseconds
+//////////////////////////////////////////////////////////////////////////////////////////////
+static double timeConversion(ConvertFunc convert, int cpuFlags, const uint8_t* planes, int chromaHeight, uint8_t* dst)
+{
+  int            chromaWidth = FRAME_WIDTH / 2;
+  const uint8_t* y           = planes;
+  const uint8_t* u           = y + FRAME_WIDTH * FRAME_HEIGHT;
+  const uint8_t* v           = u + chromaWidth * chromaHeight;
+  double         bestUs      = 1e30;
+
+  libyuv::MaskCpuFlags(cpuFlags);
+  for (int round = 0; round < ROUNDS; ++round)
+  {
+    int64_t startNs = getTimeNs();
+    for (int i = 0; i < ITERATIONS; ++i)
+    {
+      convert(y, FRAME_WIDTH, u, chromaWidth, v, chromaWidth, dst, FRAME_WIDTH * 4, FRAME_WIDTH, FRAME_HEIGHT);
+    }
+    double us = (getTimeNs() - startNs) / 1000.0 / ITERATIONS;
+    if (us < bestUs)
+    {
+      bestUs = us;
+    }
+  }
+  libyuv::MaskCpuFlags(-1);
+  return bestUs;
+}
+
+static void benchmark(const char* name, ConvertFunc convert, ConvertFunc reference, int chromaHeight,
+                      const uint8_t* planes, uint8_t* dst)
+{
+  double referenceUs = timeConversion(reference, 0, planes, chromaHeight, dst);
+  double libyuvUs    = timeConversion(reference, -1, planes, chromaHeight, dst);
+  double convertUs   = timeConversion(convert, -1, planes, chromaHeight, dst);
+
+  printf("  %s to RGBA:\n", name);
+  printf("    libyuv C rows     %8.1f us per frame\n", referenceUs);
+  printf("    libyuv, cpu_id    %8.1f us per frame, %.2fx\n", libyuvUs, referenceUs / libyuvUs);
+  printf("    decoders          %8.1f us per frame, %.2fx\n", convertUs, referenceUs / convertUs);
+}
+
+int main(int argc, char** argv)
+{
+  // Large enough for I422, whose chroma planes have all the rows
+  uint8_t* planes = static_cast<uint8_t*>(malloc(FRAME_WIDTH * FRAME_HEIGHT * 2));
+  uint8_t* dst    = static_cast<uint8_t*>(malloc(FRAME_WIDTH * FRAME_HEIGHT * 4));
+
+  // The screen content of the I420 frames, the extra chroma rows of I422 repeat its pattern
+  fillScreenFrame(planes, FRAME_WIDTH, FRAME_HEIGHT, 0);
+  for (int i = FRAME_WIDTH * FRAME_HEIGHT * 3 / 2; i < FRAME_WIDTH * FRAME_HEIGHT * 2; ++i)
+  {
+    planes[i] = planes[i - FRAME_WIDTH * FRAME_HEIGHT / 2];
+  }
+
+  printf("%dx%d conversions on %s, fastest of %d rounds of %d frames\n", FRAME_WIDTH, FRAME_HEIGHT, ABI,
+         ROUNDS, ITERATIONS);
+  benchmark("I420", convertI420ToRGBA, libyuv::I420ToABGR, FRAME_HEIGHT / 2, planes, dst);
+  benchmark("I422", convertI422ToRGBA, libyuv::I422ToABGR, FRAME_HEIGHT, planes, dst);
+
+  free(planes);
+  free(dst);
+  return 0;
+}
@@ -0,0 +1,217 @@
+//////////////////////////////////////////////////////////////////////////////////////////////
+///
+/// @file YuvToRgbaTest.cpp
+/// @brief
+///
+/// Checks that convertI420ToRGBA() and convertI422ToRGBA() produce the pixels of the C rows of
+/// libyuv. On arm64 this covers the NEON rows of YuvToRgba.cpp, which must match them bit for
+/// bit. On the other ABIs the conversions are the libyuv SIMD rows selected by cpu_id.
+///
+/// @author Abalta Technologies, Inc.
+/// @date 10/2026
+///
+/// @cond Copyright
+///
+/// COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+/// This program may not be reproduced, in whole or in part in any form or any means whatsoever
+/// without the written permission of ABALTA TECHNOLOGIES.
+///
+/// @endcond
+//////////////////////////////////////////////////////////////////////////////////////////////
+
+
+//--------------------------------------------------------------------------------------------
+//  Includes
+//--------------------------------------------------------------------------------------------
+#include <libyuv/convert_from.h>
+#include <libyuv/cpu_id.h>
+#include <libyuv/planar_functions.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+//---
+#include "YuvToRgba.h"
+
+
+//--------------------------------------------------------------------------------------------
+//  Constants
+//--------------------------------------------------------------------------------------------
+
+// The widths cover all the remainders of the 16 pixel NEON loop, with and without a full block
+static const int MAX_WIDTH        = 97;
+static const int HEIGHTS[]        = { 1, 2, 3, 8 };
+static const int NUM_HEIGHTS      = sizeof(HEIGHTS) / sizeof(HEIGHTS[0]);
+
+// Padding of the source and destination rows, the destination padding must stay untouched
+static const int PADDING          = 13;
+static const uint8_t GUARD        = 0xCD;
+
+// Maximum difference to the C rows allowed per channel. The NEON rows of YuvToRgba.cpp and the
+// SSSE3 rows of libyuv are bit exact. The ARMv7 NEON rows of libyuv may round differently.
+#if defined(__arm__)
+static const int TOLERANCE        = 2;
+#else
+static const int TOLERANCE        = 0;
+#endif
+
+
+//--------------------------------------------------------------------------------------------
+//  Type definitions
+//--------------------------------------------------------------------------------------------
+
+typedef int (*ConvertFunc)(const uint8_t* srcY, int strideY,
+                           const uint8_t* srcU, int strideU,
+                           const uint8_t* srcV, int strideV,
+                           uint8_t* dst, int dstStride,
+                           int width, int height);
+
+enum EPattern
+{
+  eRandom,      // Random samples over the whole range
+  eExtremes,    // Samples of 0 and 255 only, which clip all the channels
+  eVideoRange,  // Samples at the limits of the video range, 16-235 and 16-240
+  ePatternCount
+};
+
+static const char* const PATTERN_NAMES[ePatternCount] = { "random", "extremes", "video range" };
+
+
+//--------------------------------------------------------------------------------------------
+//  Implementation
+//--------------------------------------------------------------------------------------------
+
+static uint32_t ms_seed = 1;
+
+static uint8_t nextSample(EPattern pattern, bool isChroma)
+{
+  ms_seed = ms_seed * 1103515245 + 12345;
+  uint8_t value = static_cast<uint8_t>(ms_seed >> 16);
+
+  switch (pattern)
+  {
+  case eExtremes:
+    return (value & 1) ? 255 : 0;
+  case eVideoRange:
+    if (value & 1)
+    {
+      return 16;
+    }
+    return isChroma ? 240 : 235;
+  case eRandom:
+  default:
+    return value;
+  }
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Fills a plane with samples, including the padding of its rows
+//////////////////////////////////////////////////////////////////////////////////////////////
+static void fillPlane(uint8_t* plane, int stride, int height, EPattern pattern, bool isChroma)
+{
+  for (int row = 0; row < height; ++row)
+  {
+    for (int col = 0; col < stride; ++col)
+    {
+      plane[row * stride + col] = nextSample(pattern, isChroma);
+    }
+  }
+}
+
+//////////////////////////////////////////////////////////////////////////////////////////////
+/// Converts an image with a conversion and with the C rows of libyuv, and compares them
+///
+/// @retval bool - true if the images match and the padding of the destination is untouched
+//////////////////////////////////////////////////////////////////////////////////////////////
+static bool checkConversion(const char* name, ConvertFunc convert, ConvertFunc reference,
+                            int width, int height, int chromaShiftY, EPattern pattern)
+{
+  int      chromaWidth  = (width + 1) / 2;
+  int      chromaHeight = (height + (1 << chromaShiftY) - 1) >> chromaShiftY;
+  int      strideY      = width + PADDING;
+  int      strideUV     = chromaWidth + PADDING;
+  int      dstStride    = width * 4 + PADDING;
+  uint8_t* y            = static_cast<uint8_t*>(malloc(strideY * height));
+  uint8_t* u            = static_cast<uint8_t*>(malloc(strideUV * chromaHeight));
+  uint8_t* v            = static_cast<uint8_t*>(malloc(strideUV * chromaHeight));
+  uint8_t* expected     = static_cast<uint8_t*>(malloc(dstStride * height));
+  uint8_t* actual       = static_cast<uint8_t*>(malloc(dstStride * height));
+  bool     isValid      = true;
+
+  fillPlane(y, strideY, height, pattern, false);
+  fillPlane(u, strideUV, chromaHeight, pattern, true);
+  fillPlane(v, strideUV, chromaHeight, pattern, true);
+  memset(expected, GUARD, dstStride * height);
+  memset(actual, GUARD, dstStride * height);
+
+  // The C rows of libyuv are the reference, the conversion runs with the rows of the CPU
+  libyuv::MaskCpuFlags(0);
+  reference(y, strideY, u, strideUV, v, strideUV, expected, dstStride, width, height);
+  libyuv::MaskCpuFlags(-1);
+  if (convert(y, strideY, u, strideUV, v, strideUV, actual, dstStride, width, height) != 0)
+  {
+    printf("%s %dx%d %s: conversion failed\n", name, width, height, PATTERN_NAMES[pattern]);
+    isValid = false;
+  }
+
+  for (int row = 0; row < height && isValid; ++row)
+  {
+    for (int col = 0; col < dstStride && isValid; ++col)
+    {
+      int index      = row * dstStride + col;
+      int difference = abs(actual[index] - expected[index]);
+
+      if (col >= width * 4 && actual[index] != GUARD)
+      {
+        printf("%s %dx%d %s: row %d overwritten at byte %d\n", name, width, height,
+               PATTERN_NAMES[pattern], row, col);
+        isValid = false;
+      }
+      else if (col < width * 4 && difference > TOLERANCE)
+      {
+        printf("%s %dx%d %s: pixel %d,%d channel %d is %d instead of %d\n", name, width, height,
+               PATTERN_NAMES[pattern], col / 4, row, col % 4, actual[index], expected[index]);
+        isValid = false;
+      }
+    }
+  }
+
+  free(y);
+  free(u);
+  free(v);
+  free(expected);
+  free(actual);
+  return isValid;
+}
+
+int main(int argc, char** argv)
+{
+  int numCases    = 0;
+  int numFailures = 0;
+
+  for (int pattern = 0; pattern < ePatternCount; ++pattern)
+  {
+    for (int width = 1; width <= MAX_WIDTH; ++width)
+    {
+      for (int h = 0; h < NUM_HEIGHTS; ++h)
+      {
+        int height = HEIGHTS[h];
+
+        numCases += 2;
+        if (!checkConversion("I420", convertI420ToRGBA, libyuv::I420ToABGR, width, height, 1,
+                             static_cast<EPattern>(pattern)))
+        {
+          ++numFailures;
+        }
+        if (!checkConversion("I422", convertI422ToRGBA, libyuv::I422ToABGR, width, height, 0,
+                             static_cast<EPattern>(pattern)))
+        {
+          ++numFailures;
+        }
+      }
+    }
+  }
+
+  printf("%d of %d conversions match the libyuv C rows (tolerance %d)\n", numCases - numFailures, numCases, TOLERANCE);
+  return numFailures == 0 ? 0 : 1;
+}
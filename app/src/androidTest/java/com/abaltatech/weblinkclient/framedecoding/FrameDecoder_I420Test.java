@@ -0,0 +1,229 @@
+/****************************************************************************
+ *
+ * @file FrameDecoder_I420Test.java
+ * @brief
+ *
+ * Contains the FrameDecoder_I420Test class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.graphics.PixelFormat;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.abaltatech.weblink.core.DataBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Decodes synthetic frames with the native {@link FrameDecoder_I420} into an {@link ImageReader}
+ * surface, and measures the cost of the JNI calls against the cost of a decode.
+ * <p></p>
+ * The frames are key frames of a flat color. Their LZ4 block is built here: one literal, a
+ * match at offset 1 repeating it over the planes, and the five literals LZ4 ends a block with.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FrameDecoder_I420Test {
+
+    private static final String TAG = "FrameDecoder_I420Test";
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int HEADER_SIZE = 8;
+    // Frames are placed inside larger arrays, like in the buffers of the connection
+    private static final int FRAME_OFFSET = 64;
+    private static final int INPUT_ARRAY_SIZE = 1024 * 1024;
+    private static final int NUM_CALLS = 10000;
+
+    private final Notification m_notification = new Notification();
+    private HandlerThread m_readerThread;
+    private ImageReader m_reader;
+    private VideoSurface m_surface;
+    private FrameDecoder_I420 m_decoder;
+
+    @Before
+    public void setUp() {
+        m_readerThread = new HandlerThread(TAG);
+        m_readerThread.start();
+        m_reader = ImageReader.newInstance(WIDTH, HEIGHT, PixelFormat.RGBA_8888, 3);
+        m_reader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                Image image = reader.acquireLatestImage();
+                if (image != null) {
+                    image.close();
+                }
+            }
+        }, new Handler(m_readerThread.getLooper()));
+        m_surface = new VideoSurface(m_reader.getSurface());
+        m_decoder = new FrameDecoder_I420();
+        assertTrue(m_decoder.startDecoding(m_notification, WIDTH, HEIGHT, m_surface));
+    }
+
+    @After
+    public void tearDown() {
+        m_decoder.stopDecoding();
+        m_reader.close();
+        m_readerThread.quitSafely();
+    }
+
+    @Test
+    public void decodesKeyFramesAndDropsCorruptOnes() {
+        assertTrue(m_decoder.decodeImage(createKeyFrame(WIDTH, HEIGHT, 100)));
+        assertEquals(0, m_decoder.getCorruptFrameCount());
+        assertEquals(0, m_notification.m_numErrors);
+
+        // The header announces a frame larger than the surface
+        assertTrue(m_decoder.decodeImage(createKeyFrame(WIDTH * 2, HEIGHT, 100)));
+        assertEquals(1, m_decoder.getCorruptFrameCount());
+        assertEquals(1, m_notification.m_numErrors);
+
+        // The LZ4 data is truncated
+        DataBuffer frame = createKeyFrame(WIDTH, HEIGHT, 100);
+        DataBuffer truncated = new DataBuffer(frame.getData(), frame.getPos(), frame.getSize() - 3);
+        assertTrue(m_decoder.decodeImage(truncated));
+        assertEquals(2, m_decoder.getCorruptFrameCount());
+        assertEquals(1, m_notification.m_numErrors);
+
+        assertTrue(m_decoder.decodeImage(createKeyFrame(WIDTH, HEIGHT, 200)));
+        assertEquals(2, m_decoder.getCorruptFrameCount());
+    }
+
+    /**
+     * Logs the time of 10k decode calls rejected by the header check, which is the cost of the
+     * JNI call and of the access to the input array, and of 10k decodes of 720p key frames.
+     * Run with -Pandroid.testInstrumentationRunnerArguments.benchmark=true, the results are
+     * logged under the FrameDecoder_I420Test tag.
+     */
+    @Test
+    public void benchmark() {
+        assumeTrue("Pass the benchmark=true instrumentation argument to run the benchmark",
+                Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        // A zero width is rejected before anything is decompressed
+        DataBuffer rejected = new DataBuffer(new byte[INPUT_ARRAY_SIZE], FRAME_OFFSET, HEADER_SIZE + 16);
+        DataBuffer[] frames = { createKeyFrame(WIDTH, HEIGHT, 100), createKeyFrame(WIDTH, HEIGHT, 200) };
+
+        // Warm up
+        for (int i = 0; i < 100; i++) {
+            m_decoder.decodeImage(rejected);
+            m_decoder.decodeImage(frames[i % 2]);
+        }
+
+        long startNs = System.nanoTime();
+        for (int i = 0; i < NUM_CALLS; i++) {
+            m_decoder.decodeImage(rejected);
+        }
+        double callUs = (System.nanoTime() - startNs) / 1000.0 / NUM_CALLS;
+
+        long corruptFrames = m_decoder.getCorruptFrameCount();
+        startNs = System.nanoTime();
+        // The frames alternate, so that every frame changes the whole surface
+        for (int i = 0; i < NUM_CALLS; i++) {
+            m_decoder.decodeImage(frames[i % 2]);
+        }
+        double decodeUs = (System.nanoTime() - startNs) / 1000.0 / NUM_CALLS;
+        assertEquals(corruptFrames, m_decoder.getCorruptFrameCount());
+
+        Log.i(TAG, String.format("%d calls, %d byte input array: %.2f us per rejected call, %.1f us per %dx%d decode, call overhead %.2f%%",
+                NUM_CALLS, INPUT_ARRAY_SIZE, callUs, decodeUs, WIDTH, HEIGHT, callUs / decodeUs * 100));
+    }
+
+    /**
+     * @return An LZ4 key frame of a flat color, in a larger array
+     */
+    private static DataBuffer createKeyFrame(int width, int height, int value) {
+        int planesSize = width * height * 3 / 2;
+        int matchLength = planesSize - 1 - 5;
+        int extraLength = matchLength - 4 - 15;
+        int blockSize = 1 + 1 + 2 + extraLength / 255 + 1 + 1 + 5;
+        byte[] data = new byte[FRAME_OFFSET + HEADER_SIZE + blockSize + 16];
+        int pos = FRAME_OFFSET;
+
+        pos = writeLittleEndian(data, pos, width, 2);
+        pos = writeLittleEndian(data, pos, height, 2);
+        pos = writeLittleEndian(data, pos, planesSize, 4);
+
+        // One literal, then the longest match length code followed by its extension bytes
+        data[pos++] = (byte) ((1 << 4) | 15);
+        data[pos++] = (byte) value;
+        pos = writeLittleEndian(data, pos, 1, 2);
+        for (int rest = extraLength; ; rest -= 255) {
+            if (rest < 255) {
+                data[pos++] = (byte) rest;
+                break;
+            }
+            data[pos++] = (byte) 255;
+        }
+        data[pos++] = (byte) (5 << 4);
+        for (int i = 0; i < 5; i++) {
+            data[pos++] = (byte) value;
+        }
+        return new DataBuffer(data, FRAME_OFFSET, pos - FRAME_OFFSET);
+    }
+
+    private static int writeLittleEndian(byte[] data, int pos, int value, int numBytes) {
+        for (int i = 0; i < numBytes; i++) {
+            data[pos++] = (byte) (value >> (8 * i));
+        }
+        return pos;
+    }
+
+    private static class Notification implements IFrameDecoderNotification {
+        int m_numErrors;
+
+        @Override
+        public void onDecodingStarted() {
+        }
+
+        @Override
+        public void onDecodingStartFailed() {
+        }
+
+        @Override
+        public void onDecodingStopped() {
+        }
+
+        @Override
+        public void onDecodingStopFailed() {
+        }
+
+        @Override
+        public void onDecodingError() {
+            m_numErrors++;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/****************************************************************************
+ *
+ * @file AudioMixer.java
+ * @brief
+ *
+ * Contains the AudioMixer class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Process;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+import com.abaltatech.weblink.core.audioconfig.EAudioType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mixes several audio channels into a single AudioTrack.
+ * <p></p>
+ * Each channel is a {@link MixerChannel}, set as the audio output of its decoder instead of
+ * an {@link AudioOutput}. A mixer thread sums the channels in blocks of
+ * {@link #BLOCK_DURATION_MS} into a preallocated 32-bit accumulator, with the gain of each
+ * channel, saturates the sum to 16 bits and writes it to a stereo low-latency track. The
+ * blocking write paces the thread, so the whole mix costs one track and one thread.
+ * <p></p>
+ * While a channel is started, see {@link #onAudioChannelStarted(int)}, the channels of a lower
+ * priority are ducked by a {@link DuckingEngine}, e.g. the music under a navigation prompt.
+ * <p></p>
+ * The channels of another sample rate than the mixer are resampled to its rate.
+ */
+public class AudioMixer {
+    private static final String TAG = "AudioMixer";
+
+    /** Duration of a mixed block, in milliseconds */
+    public static final int BLOCK_DURATION_MS = 10;
+
+    /** Priority of the channels without a type below */
+    public static final int PRIORITY_DEFAULT   = 0;
+    /** Priority of the channels of type EAudioType.AT_INFO */
+    public static final int PRIORITY_INFO      = 1;
+    /** Priority of the channels of type EAudioType.AT_GUIDANCE or EAudioType.AT_ALERT */
+    public static final int PRIORITY_GUIDANCE  = 2;
+    /** Priority of the channels of type EAudioType.AT_PHONECALL */
+    public static final int PRIORITY_PHONECALL = 3;
+
+    private static final int OUTPUT_CHANNELS = 2;
+    private static final int OUTPUT_FRAME_SIZE = OUTPUT_CHANNELS * 2; // in bytes
+
+    private final int m_sampleRate;
+    private final int m_blockFrames;
+    // Replaced on each new channel, so the mixer thread iterates without a lock
+    private volatile MixerChannel[] m_channels = new MixerChannel[0];
+    private final DuckingEngine m_duckingEngine;
+
+    private int m_numStartedChannels;
+    private AudioTrack m_audioTrack;
+    private MixerThread m_mixerThread;
+    // Frames written to the track, compared with its playback head. Written by the mixer thread.
+    private volatile long m_numFramesWritten;
+
+    /**
+     * @param sampleRate Sample rate of the mixed channels and of the track
+     */
+    public AudioMixer(int sampleRate) {
+        m_sampleRate = sampleRate;
+        m_blockFrames = Math.max(1, sampleRate * BLOCK_DURATION_MS / 1000);
+        m_duckingEngine = new DuckingEngine(sampleRate);
+    }
+
+    /**
+     * Creates a channel of the mixer.
+     *
+     * @param channelID ID of the audio channel, for the logs
+     * @param priority  Priority of the channel, the channels of a lower priority are ducked
+     *                  while it is started
+     * @return The channel, to be used as the audio output of the channel decoder
+     */
+    public synchronized MixerChannel createChannel(int channelID, int priority) {
+        MixerChannel channel = new MixerChannel(this, channelID, m_duckingEngine.addChannel(priority));
+        MixerChannel[] channels = Arrays.copyOf(m_channels, m_channels.length + 1);
+        channels[channels.length - 1] = channel;
+        m_channels = channels;
+        return channel;
+    }
+
+    /**
+     * @return The sample rate of the mixer
+     */
+    public int getSampleRate() {
+        return m_sampleRate;
+    }
+
+    /**
+     * Sets the gain applied to the channels of a lower priority than a started channel.
+     *
+     * @param gain Gain from 0 (muted) to 1 (no ducking), DuckingEngine.DEFAULT_DUCKING_GAIN by
+     *             default
+     */
+    public void setDuckingGain(float gain) {
+        m_duckingEngine.setDuckingGain(gain);
+    }
+
+    /**
+     * Sets the time the ducked channels take to ramp down and back up.
+     *
+     * @param durationMs Duration of a ramp, in milliseconds, DuckingEngine.DEFAULT_RAMP_DURATION_MS
+     *                   by default
+     */
+    public void setDuckingRampDuration(int durationMs) {
+        m_duckingEngine.setRampDuration(durationMs);
+    }
+
+    /**
+     * Ducks the channels of a lower priority than the started one. To be called from
+     * IClientNotification.onAudioChannelStarted().
+     *
+     * @param channelID ID of the started audio channel
+     */
+    public void onAudioChannelStarted(int channelID) {
+        setChannelActive(channelID, true);
+    }
+
+    /**
+     * Restores the channels ducked by the stopped one. To be called from
+     * IClientNotification.onAudioChannelStopped().
+     *
+     * @param channelID ID of the stopped audio channel
+     */
+    public void onAudioChannelStopped(int channelID) {
+        setChannelActive(channelID, false);
+    }
+
+    /**
+     * Returns the default priority of a channel from its audio types.
+     *
+     * @param audioTypes EAudioType values of the channel, see WLAudioChannelMapping
+     * @return The highest priority of the types, one of the PRIORITY_ constants
+     */
+    public static int getPriority(List<Integer> audioTypes) {
+        int priority = PRIORITY_DEFAULT;
+        if (audioTypes != null) {
+            for (Integer audioType : audioTypes) {
+                if (audioType == null) {
+                    continue;
+                }
+                switch (audioType) {
+                    case EAudioType.AT_PHONECALL:
+                        priority = Math.max(priority, PRIORITY_PHONECALL);
+                        break;
+                    case EAudioType.AT_GUIDANCE:
+                    case EAudioType.AT_ALERT:
+                        priority = Math.max(priority, PRIORITY_GUIDANCE);
+                        break;
+                    case EAudioType.AT_INFO:
+                        priority = Math.max(priority, PRIORITY_INFO);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return priority;
+    }
+
+    private void setChannelActive(int channelID, boolean isActive) {
+        for (MixerChannel channel : m_channels) {
+            if (channel.getChannelID() == channelID) {
+                channel.getDucking().setActive(isActive);
+            }
+        }
+    }
+
+    /**
+     * @return The number of frames of a mixed block
+     */
+    int getBlockFrames() {
+        return m_blockFrames;
+    }
+
+    /**
+     * @return The number of frames mixed and not played yet
+     */
+    synchronized int getQueuedFrames() {
+        if (m_audioTrack == null) {
+            return 0;
+        }
+        // Both counters wrap at 2^32 frames, the difference does not
+        return Math.max(0, (int) m_numFramesWritten - m_audioTrack.getPlaybackHeadPosition());
+    }
+
+    /**
+     * Starts the track and the mixer thread with the first started channel.
+     *
+     * @return false if the track could not be created
+     */
+    synchronized boolean onChannelStarted() {
+        if (m_numStartedChannels == 0) {
+            int minBufSize = AudioTrack.getMinBufferSize(m_sampleRate, AudioFormat.CHANNEL_OUT_STEREO,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            if (minBufSize <= 0) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "AudioTrack.getMinBufferSize() failed: " + minBufSize);
+                return false;
+            }
+            // Room for a whole block, which is written at once
+            AudioTrack audioTrack = AudioOutput.createAudioTrack(m_sampleRate, AudioFormat.CHANNEL_OUT_STEREO,
+                    Math.max(minBufSize, m_blockFrames * OUTPUT_FRAME_SIZE));
+            if (audioTrack == null) {
+                return false;
+            }
+            m_audioTrack = audioTrack;
+            m_numFramesWritten = 0;
+            m_audioTrack.play();
+            m_mixerThread = new MixerThread(m_audioTrack);
+            m_mixerThread.start();
+        }
+        m_numStartedChannels++;
+        return true;
+    }
+
+    /**
+     * Stops the mixer thread and releases the track with the last stopped channel.
+     */
+    synchronized void onChannelStopped() {
+        if (m_numStartedChannels == 0 || --m_numStartedChannels > 0) {
+            return;
+        }
+        if (m_mixerThread != null) {
+            m_mixerThread.interrupt();
+            try {
+                m_mixerThread.join();
+            } catch (InterruptedException e) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "Interrupted while joining the mixer thread");
+                Thread.currentThread().interrupt();
+            }
+            m_mixerThread = null;
+        }
+        if (m_audioTrack != null) {
+            m_audioTrack.pause();
+            m_audioTrack.flush();
+            m_audioTrack.release();
+            m_audioTrack = null;
+        }
+    }
+
+    /**
+     * Mixes the channels block by block into the track.
+     */
+    private class MixerThread extends Thread {
+
+        private final AudioTrack m_track;
+        private final int[] m_accumulator;
+        private final short[] m_output;
+
+        MixerThread(AudioTrack track) {
+            setName("AudioMixerThread");
+            m_track = track;
+            m_accumulator = new int[m_blockFrames * OUTPUT_CHANNELS];
+            m_output = new short[m_blockFrames * OUTPUT_CHANNELS];
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+            while (!isInterrupted()) {
+                MixerChannel[] channels = m_channels;
+                long nowNs = System.nanoTime();
+
+                m_duckingEngine.update();
+                for (MixerChannel channel : channels) {
+                    channel.mix(nowNs, m_accumulator, m_blockFrames);
+                }
+
+                for (int i = 0; i < m_accumulator.length; i++) {
+                    int sample = m_accumulator[i];
+                    m_output[i] = (short) (sample > Short.MAX_VALUE ? Short.MAX_VALUE
+                            : sample < Short.MIN_VALUE ? Short.MIN_VALUE : sample);
+                    m_accumulator[i] = 0;
+                }
+                int written = m_track.write(m_output, 0, m_output.length, AudioTrack.WRITE_BLOCKING);
+                if (written < 0) {
+                    MCSLogger.log(MCSLogger.ELogType.eError, TAG, "AudioTrack.write() failed: " + written);
+                    break;
+                }
+                m_numFramesWritten += written / OUTPUT_CHANNELS;
+            }
+        }
+    }
+}
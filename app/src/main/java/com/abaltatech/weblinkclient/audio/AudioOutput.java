@@ -28,60 +28,439 @@
  *****************************************************************************/
 package com.abaltatech.weblinkclient.audio;
 
-import android.media.AudioManager;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
 import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
 
+import com.abaltatech.mcs.logger.MCSLogger;
 import com.abaltatech.weblink.core.DataBuffer;
 import com.abaltatech.weblinkclient.audiodecoding.IAudioOutput;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Concrete implementation of the IAudioOutput interface.
+ * <p></p>
+ * The decoded PCM data is queued in a preallocated {@link PcmRingBuffer} and played by a
+ * dedicated audio thread, which writes it to the AudioTrack without blocking. The decoder
+ * thread only copies the data into the ring buffer, so it is never held up by the track.
+ * <p></p>
+ * The depth of the queue is controlled by a {@link JitterBuffer}, which absorbs the bursts of
+ * the link without keeping the latency of the worst burst for the rest of the stream.
+ * <p></p>
+ * When an output sample rate is set, the track runs at that rate and the decoded PCM is
+ * converted by a {@link PolyphaseResampler} before it is queued.
  */
 public class AudioOutput implements IAudioOutput {
     private static final String      TAG  = "AudioDecoder";
 
+    // Minimum capacity of the ring buffer, in milliseconds of audio
+    private static final int RING_BUFFER_DURATION_MS = 500;
+    // Default limits of the target depth
+    private static final int DEFAULT_JITTER_FLOOR_MS = 40;
+    private static final int DEFAULT_JITTER_CEILING_MS = 250;
+    // Longest time outputAudio() waits for free space in the ring buffer before dropping data
+    private static final long MAX_OUTPUT_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Polling interval of outputAudio() while the ring buffer is full
+    private static final long OUTPUT_WAIT_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Longest sleep of the audio thread while there is nothing to play
+    private static final long IDLE_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * Minimum and maximum target depth of the jitter buffer, in milliseconds.
+     */
+    private static volatile int ms_jitterFloorMs = DEFAULT_JITTER_FLOOR_MS;
+    private static volatile int ms_jitterCeilingMs = DEFAULT_JITTER_CEILING_MS;
+
+    /**
+     * Sample rate of the tracks, 0 to play at the sample rate of the host.
+     */
+    private static volatile int ms_outputSampleRate = 0;
+
+    /**
+     * Quality of the conversion to the output sample rate.
+     */
+    private static volatile int ms_resamplerQuality = PolyphaseResampler.QUALITY_MEDIUM;
+
     private AudioTrack m_audioTrack;
     private int m_minBufSize;
+    private int m_frameSize; // in bytes
+    private int m_sampleRate;
+    private int m_trackSampleRate;
+    // Null when the track runs at the sample rate of the host. Used by the decoder thread.
+    private volatile PolyphaseResampler m_resampler;
+    private volatile PcmRingBuffer m_ringBuffer;
+    private volatile AudioThread m_audioThread;
+    private volatile JitterBuffer m_jitterBuffer;
+    // Frames written to the track, compared with its playback head. Written by the audio thread.
+    private volatile long m_numFramesWritten;
 
     @Override
-    public boolean startAudio(int sampleRate, int bitsPerChannel, int channelCount) {
-        m_minBufSize  = AudioTrack.getMinBufferSize(sampleRate,
-                channelCount == 2 ? android.media.AudioFormat.CHANNEL_OUT_STEREO : android.media.AudioFormat.CHANNEL_OUT_MONO,
-                android.media.AudioFormat.ENCODING_PCM_16BIT);
+    public synchronized boolean startAudio(int sampleRate, int bitsPerChannel, int channelCount) {
+        if (bitsPerChannel != 16 || channelCount < 1 || channelCount > 2 || sampleRate <= 0) {
+            MCSLogger.log(MCSLogger.ELogType.eError, TAG, "Unsupported PCM format: " + sampleRate + " Hz, "
+                    + bitsPerChannel + " bits, " + channelCount + " channels");
+            return false;
+        }
+        if (m_audioTrack != null) {
+            stopAudio();
+        }
 
-        m_minBufSize = Math.max(m_minBufSize, bitsPerChannel / 8 * channelCount * 1024);
+        int trackSampleRate = ms_outputSampleRate > 0 ? ms_outputSampleRate : sampleRate;
+        int channelMask = channelCount == 2 ? AudioFormat.CHANNEL_OUT_STEREO : AudioFormat.CHANNEL_OUT_MONO;
+        m_frameSize   = bitsPerChannel / 8 * channelCount;
+        m_minBufSize  = AudioTrack.getMinBufferSize(trackSampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT);
+        if (m_minBufSize <= 0) {
+            MCSLogger.log(MCSLogger.ELogType.eError, TAG, "AudioTrack.getMinBufferSize() failed: " + m_minBufSize);
+            return false;
+        }
+
+        AudioTrack audioTrack = createAudioTrack(trackSampleRate, channelMask, m_minBufSize);
+        if (audioTrack == null) {
+            return false;
+        }
+
+        int trackFrames = m_minBufSize / m_frameSize;
 
-        m_audioTrack = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate,
-                channelCount == 2 ? android.media.AudioFormat.CHANNEL_OUT_STEREO : android.media.AudioFormat.CHANNEL_OUT_MONO,
-                android.media.AudioFormat.ENCODING_PCM_16BIT, m_minBufSize, AudioTrack.MODE_STREAM);
+        m_audioTrack = audioTrack;
+        m_sampleRate = sampleRate;
+        m_trackSampleRate = trackSampleRate;
+        m_resampler = createResampler(sampleRate, trackSampleRate, channelCount);
+        m_ringBuffer = createRingBuffer(trackSampleRate, m_frameSize);
+        m_jitterBuffer = createJitterBuffer(trackSampleRate, trackFrames);
+        m_numFramesWritten = 0;
         m_audioTrack.play();
+        m_audioThread = new AudioThread(m_audioTrack, m_ringBuffer, m_jitterBuffer, m_frameSize,
+                TimeUnit.SECONDS.toNanos(trackFrames) / trackSampleRate);
+        m_audioThread.start();
         return true;
     }
 
     @Override
-    public boolean stopAudio() {
+    public synchronized boolean stopAudio() {
+        boolean result = true;
+
+        if (m_audioThread != null) {
+            m_audioThread.interrupt();
+            try {
+                m_audioThread.join();
+            } catch (InterruptedException e) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "stopAudio: Interrupted while joining the audio thread");
+                Thread.currentThread().interrupt();
+                result = false;
+            }
+            m_audioThread = null;
+        }
+        m_ringBuffer = null;
         if (m_audioTrack != null) {
             m_audioTrack.pause();
             m_audioTrack.flush();
-            m_audioTrack.play();
             m_audioTrack.release();
             m_audioTrack = null;
         }
 
-        return true;
+        return result;
     }
 
     @Override
     public boolean outputAudio(DataBuffer audioData) {
-        if (m_audioTrack != null) {
-            DataBuffer data = audioData.copy();
+        return queueAudio(audioData, m_resampler, m_ringBuffer, m_jitterBuffer, m_frameSize, m_audioThread);
+    }
+
+    /**
+     * @return The number of bytes queued for playback: in the ring buffer and in the AudioTrack
+     *         buffer, which is the data written to the track minus its playback head. Counted at
+     *         the sample rate of the host.
+     */
+    @Override
+    public synchronized int getBufferedLength() {
+        if (m_audioTrack == null || m_ringBuffer == null) {
+            return 0;
         }
+        // Both counters wrap at 2^32 frames, the difference does not
+        int queuedFrames = (int) m_numFramesWritten - m_audioTrack.getPlaybackHeadPosition();
+        int length = m_ringBuffer.getAvailable() + Math.max(0, queuedFrames) * m_frameSize;
+        return toHostLength(length, m_sampleRate, m_trackSampleRate, m_frameSize);
+    }
 
-        return false;
+    /**
+     * Return the number of times the playback ran out of data since the audio was started,
+     * including the end of each stream.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return The number of underruns
+     */
+    public long getUnderrunCount() {
+        JitterBuffer jitterBuffer = m_jitterBuffer;
+        return jitterBuffer != null ? jitterBuffer.getUnderrunCount() : 0;
     }
 
-    @Override
-    public int getBufferedLength() {
-        return m_minBufSize;
+    /**
+     * Return the number of times audio was dropped since the audio was started, because the
+     * ring buffer was full or the queue was deeper than the jitter buffer ceiling.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return The number of overruns
+     */
+    public long getOverrunCount() {
+        JitterBuffer jitterBuffer = m_jitterBuffer;
+        return jitterBuffer != null ? jitterBuffer.getOverrunCount() : 0;
+    }
+
+    /**
+     * Return the current target depth of the jitter buffer.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return The target depth in milliseconds, 0 if the audio is not started
+     */
+    public int getJitterTargetMs() {
+        JitterBuffer jitterBuffer = m_jitterBuffer;
+        return jitterBuffer != null ? jitterBuffer.getTargetMs() : 0;
+    }
+
+    /**
+     * Sets the limits of the jitter buffer for the audio started after this call.
+     * <p></p>
+     * The target depth follows the measured jitter of the link between the two limits. A low
+     * floor keeps short prompts responsive on a steady link, the ceiling bounds the latency
+     * after a stall: anything queued above it is dropped.
+     *
+     * @param floorMs   Minimum target depth, in milliseconds
+     * @param ceilingMs Maximum target depth, in milliseconds, at least the floor
+     */
+    public static void setJitterBufferLimits(int floorMs, int ceilingMs) {
+        ms_jitterFloorMs = Math.max(0, floorMs);
+        ms_jitterCeilingMs = Math.max(ms_jitterFloorMs, ceilingMs);
+    }
+
+    /**
+     * Sets the sample rate of the tracks for the audio started after this call.
+     * <p></p>
+     * By default a track runs at the sample rate announced by the host and the Android mixer
+     * converts it to the rate of the output. When set, e.g. to the native 48 kHz of the
+     * amplifier, the audio of another rate is converted by a {@link PolyphaseResampler} on the
+     * decoder thread, and a mixer created by the application runs at that rate.
+     *
+     * @param sampleRate Sample rate in Hz, or 0 to play at the sample rate of the host
+     */
+    public static void setOutputSampleRate(int sampleRate) {
+        ms_outputSampleRate = Math.max(0, sampleRate);
+    }
+
+    /**
+     * @return The sample rate of the tracks, 0 if they play at the sample rate of the host
+     */
+    public static int getOutputSampleRate() {
+        return ms_outputSampleRate;
+    }
+
+    /**
+     * Sets the quality of the sample rate conversion for the audio started after this call.
+     *
+     * @param quality PolyphaseResampler.QUALITY_LOW, QUALITY_MEDIUM (default) or QUALITY_HIGH,
+     *                from the least CPU to the best stop band attenuation
+     */
+    public static void setResamplerQuality(int quality) {
+        ms_resamplerQuality = quality;
+    }
+
+    /**
+     * @return A resampler with the configured quality, null if the rates are the same
+     */
+    static PolyphaseResampler createResampler(int inputRate, int outputRate, int channelCount) {
+        if (inputRate == outputRate) {
+            return null;
+        }
+        return new PolyphaseResampler(inputRate, outputRate, channelCount, ms_resamplerQuality);
+    }
+
+    /**
+     * Converts a length of queued PCM to the sample rate of the host, which sizes its
+     * buffering on it.
+     */
+    static int toHostLength(int length, int sampleRate, int trackSampleRate, int frameSize) {
+        if (sampleRate == trackSampleRate || trackSampleRate <= 0) {
+            return length;
+        }
+        return (int) ((long) (length / frameSize) * sampleRate / trackSampleRate) * frameSize;
+    }
+
+    /**
+     * Creates a streaming 16-bit AudioTrack for media playback, in low latency mode where
+     * available.
+     *
+     * @return The track, or null if it could not be created
+     */
+    static AudioTrack createAudioTrack(int sampleRate, int channelMask, int bufferSize) {
+        AudioTrack.Builder builder = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(channelMask)
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .build())
+                .setBufferSizeInBytes(bufferSize)
+                .setTransferMode(AudioTrack.MODE_STREAM);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+        }
+
+        AudioTrack audioTrack;
+        try {
+            audioTrack = builder.build();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.ELogType.eError, TAG, "Failed to create the AudioTrack", e);
+            return null;
+        }
+        if (audioTrack.getState() != AudioTrack.STATE_INITIALIZED) {
+            MCSLogger.log(MCSLogger.ELogType.eError, TAG, "Failed to initialize the AudioTrack");
+            audioTrack.release();
+            return null;
+        }
+        return audioTrack;
+    }
+
+    /**
+     * Creates the ring buffer of a channel, sized for the configured jitter buffer ceiling.
+     */
+    static PcmRingBuffer createRingBuffer(int sampleRate, int frameSize) {
+        // The ring buffer holds a burst on top of the deepest target
+        int durationMs = Math.max(RING_BUFFER_DURATION_MS, 2 * ms_jitterCeilingMs);
+        return new PcmRingBuffer((int) ((long) sampleRate * durationMs / 1000) * frameSize);
+    }
+
+    /**
+     * Creates the jitter buffer of a channel, with the configured limits.
+     *
+     * @param trackFrames Frames queued after the ring buffer, in the track or the mixer
+     */
+    static JitterBuffer createJitterBuffer(int sampleRate, int trackFrames) {
+        return new JitterBuffer(sampleRate, ms_jitterFloorMs, ms_jitterCeilingMs, trackFrames);
+    }
+
+    /**
+     * Copies a decoded packet into the ring buffer of a channel. Waits up to
+     * MAX_OUTPUT_WAIT_NS for free space, then drops the rest.
+     *
+     * @param resampler Converts the packet to the rate of the ring buffer, null if the same
+     * @param consumer  Thread woken up when data was queued, null if it polls
+     * @return false if the channel is stopped or data was dropped
+     */
+    static boolean queueAudio(DataBuffer audioData, PolyphaseResampler resampler, PcmRingBuffer ringBuffer,
+                              JitterBuffer jitterBuffer, int frameSize, Thread consumer) {
+        if (ringBuffer == null || jitterBuffer == null || audioData == null) {
+            return false;
+        }
+
+        byte[] data = audioData.getData();
+        int offset = audioData.getPos();
+        int size = audioData.getSize();
+        if (resampler != null) {
+            size = resampler.process(data, offset, size);
+            data = resampler.getOutput();
+            offset = 0;
+        }
+        jitterBuffer.onPacket(System.nanoTime(), size / frameSize);
+        long deadline = System.nanoTime() + MAX_OUTPUT_WAIT_NS;
+        while (size > 0) {
+            int count = ringBuffer.write(data, offset, size);
+            offset += count;
+            size -= count;
+            if (count > 0 && consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+            if (size > 0) {
+                if (System.nanoTime() - deadline >= 0) {
+                    MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Audio output overrun, " + size + " bytes dropped");
+                    jitterBuffer.onOverrun();
+                    return false;
+                }
+                LockSupport.parkNanos(OUTPUT_WAIT_INTERVAL_NS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the PCM data from the ring buffer to the AudioTrack.
+     */
+    private class AudioThread extends Thread {
+
+        private final AudioTrack m_track;
+        private final PcmRingBuffer m_source;
+        private final JitterBuffer m_jitter;
+        private final int m_alignment;
+        // Sleep while the track is full, a quarter of its buffer
+        private final long m_fullWaitNs;
+
+        AudioThread(AudioTrack track, PcmRingBuffer source, JitterBuffer jitter, int frameSize, long trackBufferNs) {
+            setName("AudioOutputThread");
+            m_track = track;
+            m_source = source;
+            m_jitter = jitter;
+            m_alignment = frameSize;
+            m_fullWaitNs = Math.max(trackBufferNs / 4, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+            while (!isInterrupted()) {
+                int ringFrames = m_source.getAvailable() / m_alignment;
+                int trackFrames = Math.max(0, (int) m_numFramesWritten - m_track.getPlaybackHeadPosition());
+                int action = m_jitter.onPlayback(System.nanoTime(), ringFrames + trackFrames, ringFrames);
+                if (action == JitterBuffer.HOLD || ringFrames == 0) {
+                    // Woken up by outputAudio()
+                    LockSupport.parkNanos(this, IDLE_WAIT_NS);
+                    continue;
+                }
+                if (action < 0) {
+                    m_source.skip(-action * m_alignment);
+                    continue;
+                }
+                if (action > 0) {
+                    // Plays the next frame twice, the write below starts with it again
+                    if (write(m_source.peek(m_alignment, m_alignment), m_alignment) < 0) {
+                        break;
+                    }
+                }
+
+                ByteBuffer chunk = m_source.peek(Integer.MAX_VALUE, m_alignment);
+                int size = chunk.remaining();
+                int written = write(chunk, size);
+                if (written < 0) {
+                    break;
+                }
+                m_source.skip(written);
+                if (written < size) {
+                    LockSupport.parkNanos(this, m_fullWaitNs);
+                }
+            }
+        }
+
+        /**
+         * Writes a chunk to the track, without consuming it from the ring buffer.
+         *
+         * @return The number of bytes written, negative if the track failed
+         */
+        private int write(ByteBuffer chunk, int size) {
+            int written = m_track.write(chunk, size, AudioTrack.WRITE_NON_BLOCKING);
+            if (written < 0) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "AudioTrack.write() failed: " + written);
+            } else {
+                m_numFramesWritten += written / m_alignment;
+            }
+            return written;
+        }
     }
 };
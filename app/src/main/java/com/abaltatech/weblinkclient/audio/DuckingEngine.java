@@ -0,0 +1,228 @@
+/****************************************************************************
+ *
+ * @file DuckingEngine.java
+ * @brief
+ *
+ * Contains the DuckingEngine class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import java.util.Arrays;
+
+/**
+ * Ducks the audio channels of a lower priority while a channel of a higher priority is active,
+ * e.g. the music while a navigation prompt plays.
+ * <p></p>
+ * The channels are marked active and inactive from any thread, typically on
+ * onAudioChannelStarted() and onAudioChannelStopped(). The audio thread calls {@link #update()}
+ * once per block, which retargets the gain of each channel, and then takes one gain per frame
+ * from the {@link Channel}: the gain moves linearly to its target over the ramp duration, frame
+ * by frame, across as many blocks as it takes. Nothing is allocated after the channels are
+ * added.
+ * <p></p>
+ * The class has no Android dependency and can be driven with synthetic PCM.
+ */
+public class DuckingEngine {
+
+    /** Default duration of a gain ramp, in milliseconds */
+    public static final int DEFAULT_RAMP_DURATION_MS = 200;
+    /** Default gain of the ducked channels, -12 dB */
+    public static final float DEFAULT_DUCKING_GAIN = 0.25f;
+
+    private final int m_sampleRate;
+    // Replaced on each new channel, so the audio thread iterates without a lock
+    private volatile Channel[] m_channels = new Channel[0];
+    private volatile float m_duckingGain = DEFAULT_DUCKING_GAIN;
+    private volatile int m_rampFrames;
+
+    /**
+     * @param sampleRate Sample rate of the audio the gains are applied to
+     */
+    public DuckingEngine(int sampleRate) {
+        m_sampleRate = sampleRate;
+        setRampDuration(DEFAULT_RAMP_DURATION_MS);
+    }
+
+    /**
+     * Adds a channel, inactive and at full gain.
+     *
+     * @param priority Priority of the channel, the channels of a lower priority are ducked
+     *                 while it is active
+     * @return The channel
+     */
+    public synchronized Channel addChannel(int priority) {
+        Channel channel = new Channel(priority);
+        Channel[] channels = Arrays.copyOf(m_channels, m_channels.length + 1);
+        channels[channels.length - 1] = channel;
+        m_channels = channels;
+        return channel;
+    }
+
+    /**
+     * Sets the duration of the ramps started after this call.
+     *
+     * @param durationMs Duration of a ramp, in milliseconds, 0 to switch the gain at once
+     */
+    public void setRampDuration(int durationMs) {
+        m_rampFrames = (int) ((long) m_sampleRate * Math.max(0, durationMs) / 1000);
+    }
+
+    /**
+     * Sets the gain of the ducked channels, applied from the next {@link #update()}.
+     *
+     * @param gain Gain from 0 (muted) to 1 (no ducking)
+     */
+    public void setDuckingGain(float gain) {
+        m_duckingGain = Math.max(0f, Math.min(1f, gain));
+    }
+
+    /**
+     * Retargets the gains from the active channels. Called by the audio thread only, before
+     * the frames of a block.
+     */
+    public void update() {
+        Channel[] channels = m_channels;
+        int topPriority = Integer.MIN_VALUE;
+        for (Channel channel : channels) {
+            if (channel.m_isActive) {
+                topPriority = Math.max(topPriority, channel.m_priority);
+            }
+        }
+
+        float duckingGain = m_duckingGain;
+        int rampFrames = m_rampFrames;
+        for (Channel channel : channels) {
+            float target = channel.m_priority < topPriority ? duckingGain : 1f;
+            if (target != channel.m_target) {
+                channel.startRamp(target, rampFrames);
+            }
+        }
+    }
+
+    /**
+     * Gain of a channel of the engine.
+     */
+    public static final class Channel {
+
+        private final int m_priority;
+        private volatile boolean m_isActive;
+
+        // Audio thread state
+        private float m_gain = 1f;
+        private float m_target = 1f;
+        private float m_step;
+        private int m_numRampFrames;
+
+        private Channel(int priority) {
+            m_priority = priority;
+        }
+
+        /**
+         * @return The priority of the channel
+         */
+        public int getPriority() {
+            return m_priority;
+        }
+
+        /**
+         * Marks the channel active or inactive, applied from the next {@link #update()}.
+         *
+         * @param isActive true while the channel plays
+         */
+        public void setActive(boolean isActive) {
+            m_isActive = isActive;
+        }
+
+        /**
+         * @return true if the channel is active
+         */
+        public boolean isActive() {
+            return m_isActive;
+        }
+
+        /**
+         * @return The gain of the next frame. Called by the audio thread only.
+         */
+        public float getGain() {
+            return m_gain;
+        }
+
+        /**
+         * Returns the gain of the next frame and moves to the following one. Called by the
+         * audio thread only.
+         */
+        public float nextGain() {
+            float gain = m_gain;
+            if (m_numRampFrames > 0) {
+                m_gain = --m_numRampFrames > 0 ? m_gain + m_step : m_target;
+            }
+            return gain;
+        }
+
+        /**
+         * Moves over frames that were not played, e.g. while the channel had no data, so that
+         * the ramps follow the output time. Called by the audio thread only.
+         *
+         * @param numFrames Number of frames
+         */
+        public void skip(int numFrames) {
+            if (numFrames >= m_numRampFrames) {
+                m_gain = m_target;
+                m_numRampFrames = 0;
+            } else if (numFrames > 0) {
+                m_gain += m_step * numFrames;
+                m_numRampFrames -= numFrames;
+            }
+        }
+
+        /**
+         * Applies the gains to interleaved samples in place. Called by the audio thread only.
+         *
+         * @param samples      Interleaved samples
+         * @param offset       Index of the first sample
+         * @param numFrames    Number of frames
+         * @param channelCount Number of samples per frame
+         */
+        public void apply(int[] samples, int offset, int numFrames, int channelCount) {
+            int index = offset;
+            for (int i = 0; i < numFrames; i++) {
+                float gain = nextGain();
+                for (int c = 0; c < channelCount; c++, index++) {
+                    samples[index] = (int) (samples[index] * gain);
+                }
+            }
+        }
+
+        private void startRamp(float target, int rampFrames) {
+            m_target = target;
+            if (rampFrames <= 0) {
+                m_gain = target;
+                m_numRampFrames = 0;
+            } else {
+                m_step = (target - m_gain) / rampFrames;
+                m_numRampFrames = rampFrames;
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/****************************************************************************
+ *
+ * @file JitterBuffer.java
+ * @brief
+ *
+ * Contains the JitterBuffer class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive depth control of an audio channel.
+ * <p></p>
+ * The depth is the audio queued for playback, in the ring buffer and in the AudioTrack. The
+ * producer reports the packet arrivals, from which the inter-arrival jitter is estimated as in
+ * RFC 3550, but with a fast attack so that a Wi-Fi stall raises it at once and a slow decay so
+ * that it comes back down over a few seconds. The target depth covers the track buffer, one
+ * packet and twice the jitter, within a configurable floor and ceiling.
+ * <p></p>
+ * The audio thread asks before each write what to do:
+ * <ul>
+ * <li>after the start and after an underrun, playback is held until the target is reached,</li>
+ * <li>while playing, the depth drifts towards the target by dropping or repeating a single
+ * frame at most every {@link #CORRECTION_INTERVAL_MS}, a speed change below 0.3%,</li>
+ * <li>a depth above the ceiling, e.g. the burst after a stall, is cut back to the target at
+ * once instead of turning into a permanent lag.</li>
+ * </ul>
+ */
+class JitterBuffer {
+
+    /** Returned by {@link #onPlayback(long, int, int)} while playback is held */
+    static final int HOLD = Integer.MIN_VALUE;
+
+    // Minimum time between two drift corrections
+    static final int CORRECTION_INTERVAL_MS = 10;
+    // Weights of a jitter sample above and below the estimate
+    private static final int JITTER_ATTACK = 2;
+    private static final int JITTER_DECAY = 256;
+    // Weight of a depth sample in the smoothed depth
+    private static final int DEPTH_SMOOTHING = 64;
+
+    private final int m_sampleRate;
+    private final int m_floorFrames;
+    private final int m_ceilingFrames;
+    private final int m_trackFrames;
+    private final long m_correctionIntervalNs;
+
+    // Producer state
+    private long m_lastArrivalNs = -1;
+    private int m_lastPacketFrames;
+    private volatile int m_maxPacketFrames;
+    private long m_jitterNs;
+    private volatile int m_targetFrames;
+
+    // Audio thread state
+    private boolean m_isBuffering = true;
+    private long m_smoothedDepth;
+    private long m_lastCorrectionNs;
+
+    private final AtomicLong m_numUnderruns = new AtomicLong(0);
+    private final AtomicLong m_numOverruns = new AtomicLong(0);
+
+    /**
+     * @param sampleRate  Sample rate of the channel
+     * @param floorMs     Minimum target depth, in milliseconds
+     * @param ceilingMs   Maximum target depth, in milliseconds, raised to the track buffer if
+     *                    smaller
+     * @param trackFrames Size of the AudioTrack buffer, in frames
+     */
+    JitterBuffer(int sampleRate, int floorMs, int ceilingMs, int trackFrames) {
+        m_sampleRate = sampleRate;
+        m_trackFrames = trackFrames;
+        m_floorFrames = msToFrames(floorMs);
+        m_ceilingFrames = Math.max(msToFrames(ceilingMs), Math.max(m_floorFrames, trackFrames));
+        m_correctionIntervalNs = TimeUnit.MILLISECONDS.toNanos(CORRECTION_INTERVAL_MS);
+        m_targetFrames = clampTarget(trackFrames);
+    }
+
+    /**
+     * Reports a packet queued by the producer.
+     *
+     * @param nowNs     Arrival time, System.nanoTime()
+     * @param numFrames Number of frames in the packet
+     */
+    void onPacket(long nowNs, int numFrames) {
+        if (m_lastArrivalNs >= 0) {
+            long expectedNs = TimeUnit.SECONDS.toNanos(m_lastPacketFrames) / m_sampleRate;
+            long deviationNs = Math.abs(nowNs - m_lastArrivalNs - expectedNs);
+            m_jitterNs += (deviationNs - m_jitterNs) / (deviationNs > m_jitterNs ? JITTER_ATTACK : JITTER_DECAY);
+        }
+        m_lastArrivalNs = nowNs;
+        m_lastPacketFrames = numFrames;
+        m_maxPacketFrames = Math.max(m_maxPacketFrames, numFrames);
+        m_targetFrames = clampTarget(m_trackFrames + m_maxPacketFrames + 2 * nsToFrames(m_jitterNs));
+    }
+
+    /**
+     * Reports data the producer dropped because the ring buffer was full.
+     */
+    void onOverrun() {
+        m_numOverruns.incrementAndGet();
+    }
+
+    /**
+     * Decides what the audio thread does next. Called by the audio thread only.
+     *
+     * @param nowNs        Current time, System.nanoTime()
+     * @param queuedFrames Frames queued in the ring buffer and in the track
+     * @param ringFrames   Frames in the ring buffer
+     * @return {@link #HOLD} to wait, a negative number of frames to drop from the ring buffer,
+     *         1 to play the next frame twice, or 0 to play normally
+     */
+    int onPlayback(long nowNs, int queuedFrames, int ringFrames) {
+        int target = m_targetFrames;
+
+        if (m_isBuffering) {
+            if (queuedFrames < target && ringFrames < m_ceilingFrames) {
+                return HOLD;
+            }
+            m_isBuffering = false;
+            m_smoothedDepth = queuedFrames;
+            m_lastCorrectionNs = nowNs;
+        }
+        if (queuedFrames <= 0) {
+            m_numUnderruns.incrementAndGet();
+            m_isBuffering = true;
+            return HOLD;
+        }
+        // Leaves room for the packet that just arrived
+        if (queuedFrames > Math.max(m_ceilingFrames, target + 2 * m_maxPacketFrames) && ringFrames > 0) {
+            int excess = Math.min(ringFrames, queuedFrames - target);
+            m_numOverruns.incrementAndGet();
+            m_smoothedDepth = queuedFrames - excess;
+            m_lastCorrectionNs = nowNs;
+            return -excess;
+        }
+        m_smoothedDepth += (queuedFrames - m_smoothedDepth) / DEPTH_SMOOTHING;
+        if (nowNs - m_lastCorrectionNs < m_correctionIntervalNs) {
+            return 0;
+        }
+        int tolerance = Math.max(msToFrames(CORRECTION_INTERVAL_MS), target / 4);
+        if (m_smoothedDepth > target + tolerance && ringFrames > 0) {
+            m_lastCorrectionNs = nowNs;
+            return -1;
+        }
+        if (m_smoothedDepth < target - tolerance && ringFrames > 0) {
+            m_lastCorrectionNs = nowNs;
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The current target depth, in milliseconds
+     */
+    int getTargetMs() {
+        return (int) ((long) m_targetFrames * 1000 / m_sampleRate);
+    }
+
+    /**
+     * @return The number of times the queue ran empty while playing
+     */
+    long getUnderrunCount() {
+        return m_numUnderruns.get();
+    }
+
+    /**
+     * @return The number of times data was dropped, because the ring buffer was full or the
+     *         depth exceeded the ceiling
+     */
+    long getOverrunCount() {
+        return m_numOverruns.get();
+    }
+
+    private int clampTarget(int frames) {
+        return Math.max(m_floorFrames, Math.min(m_ceilingFrames, frames));
+    }
+
+    private int msToFrames(int ms) {
+        return (int) ((long) m_sampleRate * ms / 1000);
+    }
+
+    private int nsToFrames(long ns) {
+        return (int) (ns * m_sampleRate / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,278 @@
+/****************************************************************************
+ *
+ * @file MixerChannel.java
+ * @brief
+ *
+ * Contains the MixerChannel class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+import com.abaltatech.weblink.core.DataBuffer;
+import com.abaltatech.weblinkclient.audiodecoding.IAudioOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Audio output of a channel played through an {@link AudioMixer}.
+ * <p></p>
+ * The decoded PCM data is queued in a ring buffer, under the control of a
+ * {@link JitterBuffer}, and read by the mixer thread. The audio of another sample rate than
+ * the mixer is converted by a {@link PolyphaseResampler} before it is queued. Its gain is the
+ * product of the gain set on the channel and of the ducking gain of its
+ * {@link DuckingEngine.Channel}. Created by {@link AudioMixer#createChannel(int, int)}.
+ */
+public class MixerChannel implements IAudioOutput {
+    private static final String TAG = "AudioMixer";
+
+    private final AudioMixer m_mixer;
+    private final int m_channelID;
+    private final DuckingEngine.Channel m_ducking;
+    private volatile float m_gain = 1f;
+
+    private boolean m_isStarted;
+    private volatile int m_frameSize; // in bytes
+    private volatile boolean m_isStereo;
+    private int m_sampleRate;
+    // Null when the channel has the sample rate of the mixer. Used by the decoder thread.
+    private volatile PolyphaseResampler m_resampler;
+    // Null while stopped, read by the mixer thread
+    private volatile PcmRingBuffer m_ringBuffer;
+    private volatile JitterBuffer m_jitterBuffer;
+
+    // Mixer thread state
+    private boolean m_isAudible;
+    private float m_appliedGain;
+
+    MixerChannel(AudioMixer mixer, int channelID, DuckingEngine.Channel ducking) {
+        m_mixer = mixer;
+        m_channelID = channelID;
+        m_ducking = ducking;
+    }
+
+    @Override
+    public synchronized boolean startAudio(int sampleRate, int bitsPerChannel, int channelCount) {
+        if (bitsPerChannel != 16 || channelCount < 1 || channelCount > 2 || sampleRate <= 0) {
+            MCSLogger.log(MCSLogger.ELogType.eError, TAG, "Channel " + m_channelID + ": unsupported PCM format: "
+                    + sampleRate + " Hz, " + bitsPerChannel + " bits, " + channelCount + " channels");
+            return false;
+        }
+        if (m_isStarted) {
+            stopAudio();
+        }
+        if (!m_mixer.onChannelStarted()) {
+            return false;
+        }
+
+        m_isStarted = true;
+        m_frameSize = bitsPerChannel / 8 * channelCount;
+        m_isStereo = channelCount == 2;
+        m_sampleRate = sampleRate;
+        m_resampler = AudioOutput.createResampler(sampleRate, m_mixer.getSampleRate(), channelCount);
+        m_jitterBuffer = AudioOutput.createJitterBuffer(m_mixer.getSampleRate(), m_mixer.getBlockFrames());
+        // Published last, the mixer reads the channel from now on
+        m_ringBuffer = AudioOutput.createRingBuffer(m_mixer.getSampleRate(), m_frameSize);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean stopAudio() {
+        if (m_isStarted) {
+            m_isStarted = false;
+            m_ringBuffer = null;
+            m_ducking.setActive(false);
+            m_mixer.onChannelStopped();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean outputAudio(DataBuffer audioData) {
+        // The mixer thread polls the channels once per block
+        return AudioOutput.queueAudio(audioData, m_resampler, m_ringBuffer, m_jitterBuffer, m_frameSize, null);
+    }
+
+    /**
+     * @return The number of bytes queued for playback: in the ring buffer and in the mixer.
+     *         Counted at the sample rate of the host.
+     */
+    @Override
+    public synchronized int getBufferedLength() {
+        PcmRingBuffer ringBuffer = m_ringBuffer;
+        if (ringBuffer == null) {
+            return 0;
+        }
+        int length = ringBuffer.getAvailable() + m_mixer.getQueuedFrames() * m_frameSize;
+        return AudioOutput.toHostLength(length, m_sampleRate, m_mixer.getSampleRate(), m_frameSize);
+    }
+
+    /**
+     * @return The ID of the audio channel
+     */
+    public int getChannelID() {
+        return m_channelID;
+    }
+
+    /**
+     * @return The priority of the channel
+     */
+    public int getPriority() {
+        return m_ducking.getPriority();
+    }
+
+    /**
+     * Sets the gain of the channel, applied from the next mixed block.
+     *
+     * @param gain Gain from 0 (muted) to 1 (unchanged)
+     */
+    public void setGain(float gain) {
+        m_gain = Math.max(0f, Math.min(1f, gain));
+    }
+
+    /**
+     * @return The gain of the channel
+     */
+    public float getGain() {
+        return m_gain;
+    }
+
+    /**
+     * Return the number of times the channel ran out of data since it was started, including
+     * the end of each stream.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return The number of underruns
+     */
+    public long getUnderrunCount() {
+        JitterBuffer jitterBuffer = m_jitterBuffer;
+        return jitterBuffer != null ? jitterBuffer.getUnderrunCount() : 0;
+    }
+
+    /**
+     * Return the number of times audio of the channel was dropped since it was started.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return The number of overruns
+     */
+    public long getOverrunCount() {
+        JitterBuffer jitterBuffer = m_jitterBuffer;
+        return jitterBuffer != null ? jitterBuffer.getOverrunCount() : 0;
+    }
+
+    /**
+     * @return The ducking state of the channel
+     */
+    DuckingEngine.Channel getDucking() {
+        return m_ducking;
+    }
+
+    /**
+     * Adds the next block of the channel to the accumulator. Called by the mixer thread only.
+     *
+     * @param nowNs       Current time, System.nanoTime()
+     * @param accumulator Interleaved stereo sum of the block
+     * @param numFrames   Number of frames of the block
+     */
+    void mix(long nowNs, int[] accumulator, int numFrames) {
+        PcmRingBuffer ringBuffer = m_ringBuffer;
+        JitterBuffer jitterBuffer = m_jitterBuffer;
+        if (ringBuffer == null || jitterBuffer == null) {
+            m_isAudible = false;
+            m_ducking.skip(numFrames);
+            return;
+        }
+
+        int frameSize = m_frameSize;
+        int ringFrames = ringBuffer.getAvailable() / frameSize;
+        int action = jitterBuffer.onPlayback(nowNs, ringFrames, ringFrames);
+        if (action == JitterBuffer.HOLD) {
+            m_isAudible = false;
+            m_ducking.skip(numFrames);
+            return;
+        }
+        if (action < 0) {
+            ringBuffer.skip(-action * frameSize);
+        }
+
+        // Fades in after a pause, then moves to the new gain over the block
+        float startGain = m_isAudible ? m_appliedGain : 0f;
+        float endGain = m_gain;
+        float step = (endGain - startGain) / numFrames;
+        int frame = 0;
+        if (action > 0) {
+            // Plays the next frame twice
+            frame = mixFrames(ringBuffer, accumulator, 0, 1, startGain, step, false);
+        }
+        frame += mixFrames(ringBuffer, accumulator, frame, numFrames - frame, startGain, step, true);
+        // Keeps the ducking ramp in step with the output when the ring buffer ran empty
+        m_ducking.skip(numFrames - frame);
+        m_appliedGain = endGain;
+        m_isAudible = true;
+    }
+
+    /**
+     * Adds frames of the ring buffer to the accumulator, with a linear gain ramp and the
+     * ducking gain of each frame.
+     *
+     * @param firstFrame Position of the first frame in the block
+     * @param startGain  Gain at the start of the block
+     * @param step       Gain change per frame
+     * @param consume    false to leave the frames in the ring buffer
+     * @return The number of frames mixed, less than numFrames if the ring buffer ran empty
+     */
+    private int mixFrames(PcmRingBuffer ringBuffer, int[] accumulator, int firstFrame, int numFrames,
+                          float startGain, float step, boolean consume) {
+        int frameSize = m_frameSize;
+        boolean isStereo = m_isStereo;
+        int index = firstFrame * 2;
+        float gain = startGain + step * firstFrame;
+        int numMixed = 0;
+
+        while (numMixed < numFrames) {
+            ByteBuffer chunk = ringBuffer.peek((numFrames - numMixed) * frameSize, frameSize);
+            int count = chunk.remaining() / frameSize;
+            if (count == 0) {
+                break;
+            }
+            int pos = chunk.position();
+            for (int i = 0; i < count; i++) {
+                float frameGain = gain * m_ducking.nextGain();
+                int left = chunk.getShort(pos);
+                int right = isStereo ? chunk.getShort(pos + 2) : left;
+                accumulator[index++] += (int) (left * frameGain);
+                accumulator[index++] += (int) (right * frameGain);
+                gain += step;
+                pos += frameSize;
+            }
+            numMixed += count;
+            if (!consume) {
+                break;
+            }
+            ringBuffer.skip(count * frameSize);
+        }
+        return numMixed;
+    }
+}
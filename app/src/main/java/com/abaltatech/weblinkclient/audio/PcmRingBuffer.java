@@ -0,0 +1,141 @@
+/****************************************************************************
+ *
+ * @file PcmRingBuffer.java
+ * @brief
+ *
+ * Contains the PcmRingBuffer class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free ring buffer of PCM bytes between one producer and one consumer thread.
+ * <p></p>
+ * The memory is allocated once, as a direct buffer that AudioTrack can read without a copy.
+ * The producer only moves the write position and the consumer only the read position, each
+ * through its own view of the memory, so neither side takes a lock or allocates.
+ */
+class PcmRingBuffer {
+
+    private final ByteBuffer m_writeView;
+    private final ByteBuffer m_readView;
+    private final int m_capacity;
+    private final int m_mask;
+    private final AtomicLong m_writePos = new AtomicLong(0);
+    private final AtomicLong m_readPos = new AtomicLong(0);
+
+    /**
+     * @param minCapacity Minimum capacity in bytes, rounded up to a power of two
+     */
+    PcmRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(minCapacity, 64) - 1) << 1;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        m_writeView = buffer.duplicate().order(ByteOrder.nativeOrder());
+        m_readView = buffer.duplicate().order(ByteOrder.nativeOrder());
+        m_capacity = capacity;
+        m_mask = capacity - 1;
+    }
+
+    /**
+     * @return The capacity in bytes
+     */
+    int getCapacity() {
+        return m_capacity;
+    }
+
+    /**
+     * @return The number of bytes that can be read. Exact on the consumer thread, a lower
+     *         bound on the producer thread.
+     */
+    int getAvailable() {
+        return (int) (m_writePos.get() - m_readPos.get());
+    }
+
+    /**
+     * @return The number of bytes that can be written. Exact on the producer thread, a lower
+     *         bound on the consumer thread.
+     */
+    int getFree() {
+        return m_capacity - getAvailable();
+    }
+
+    /**
+     * Copies bytes into the buffer. Called by the producer thread only.
+     *
+     * @param data   Source array
+     * @param offset Offset of the first byte in data
+     * @param size   Number of bytes to copy
+     * @return The number of bytes copied, less than size if the buffer is full
+     */
+    int write(byte[] data, int offset, int size) {
+        long writePos = m_writePos.get();
+        int count = Math.min(size, m_capacity - (int) (writePos - m_readPos.get()));
+        int start = (int) writePos & m_mask;
+        int first = Math.min(count, m_capacity - start);
+
+        m_writeView.limit(start + first);
+        m_writeView.position(start);
+        m_writeView.put(data, offset, first);
+        if (count > first) {
+            m_writeView.limit(count - first);
+            m_writeView.position(0);
+            m_writeView.put(data, offset + first, count - first);
+        }
+        // Publishes the bytes to the consumer
+        m_writePos.lazySet(writePos + count);
+        return count;
+    }
+
+    /**
+     * Returns the contiguous readable bytes, without consuming them. Called by the consumer
+     * thread only, the returned view is reused by the next call.
+     *
+     * @param maxSize   Maximum number of bytes to return
+     * @param alignment The returned size is a multiple of it, e.g. the PCM frame size
+     * @return The view, positioned at the first readable byte
+     */
+    ByteBuffer peek(int maxSize, int alignment) {
+        long readPos = m_readPos.get();
+        int start = (int) readPos & m_mask;
+        int count = Math.min(Math.min(maxSize, getAvailable()), m_capacity - start);
+
+        count -= count % alignment;
+        m_readView.limit(start + count);
+        m_readView.position(start);
+        return m_readView;
+    }
+
+    /**
+     * Consumes bytes returned by {@link #peek(int, int)}. Called by the consumer thread only.
+     *
+     * @param size Number of bytes to consume
+     */
+    void skip(int size) {
+        // Returns the space to the producer
+        m_readPos.lazySet(m_readPos.get() + size);
+    }
+}
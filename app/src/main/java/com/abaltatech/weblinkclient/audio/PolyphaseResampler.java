@@ -0,0 +1,286 @@
+/****************************************************************************
+ *
+ * @file PolyphaseResampler.java
+ * @brief
+ *
+ * Contains the PolyphaseResampler class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import java.util.Arrays;
+
+/**
+ * Streaming sample rate converter of 16-bit little-endian PCM, e.g. 44.1 kHz to 48 kHz.
+ * <p></p>
+ * The ratio is reduced to L/M (160/147 from 44.1 kHz to 48 kHz) and the input is conceptually
+ * upsampled by L, low-pass filtered and decimated by M. Only the filter phases that hit an
+ * output sample are computed: the windowed sinc filter is precomputed as L phases of
+ * {@link #getTapsPerPhase()} taps each, so an output sample costs one dot product per channel.
+ * <p></p>
+ * The input is consumed in blocks of at most {@link #BLOCK_FRAMES} frames, behind the history
+ * of the previous block, and the output is appended to a buffer reused by the next call. The
+ * quality setting trades the number of taps, hence the CPU, against the stop band attenuation
+ * and the width of the transition band.
+ * <p></p>
+ * The transition band is relative to the lower of the two Nyquist frequencies: it starts below
+ * it and ends above it, the attenuation of each quality is reached from there on. When
+ * downsampling, the cutoff is M/L times lower than when upsampling, so the taps per phase are
+ * multiplied by ceil(M/L) to keep the same transition band; the cost per input frame stays the
+ * same.
+ */
+public class PolyphaseResampler {
+
+    /** 8 taps per phase, about 50 dB of attenuation from 1.3 times the Nyquist, for speech */
+    public static final int QUALITY_LOW    = 0;
+    /** 16 taps per phase, about 70 dB of attenuation from 1.2 times the Nyquist */
+    public static final int QUALITY_MEDIUM = 1;
+    /** 32 taps per phase, about 90 dB of attenuation from 1.15 times the Nyquist, for music */
+    public static final int QUALITY_HIGH   = 2;
+
+    /** Maximum number of input frames filtered at once */
+    public static final int BLOCK_FRAMES = 256;
+
+    // Per quality: taps per phase, Kaiser window beta and cutoff relative to the lower Nyquist
+    private static final int[]   TAPS_PER_PHASE = { 8, 16, 32 };
+    private static final double[] KAISER_BETA   = { 5.0, 7.0, 9.0 };
+    private static final double[] CUTOFF        = { 0.85, 0.90, 0.94 };
+
+    // Rates whose reduced ratio has more phases are converted with this many phases
+    private static final int MAX_PHASES = 1024;
+
+    private final int m_channelCount;
+    private final int m_numPhases;     // L
+    private final int m_decimation;    // M
+    private final int m_numTaps;
+    // Phase p uses m_coefficients[p * m_numTaps .. + m_numTaps - 1], oldest input first
+    private final float[] m_coefficients;
+
+    // History followed by the current block, interleaved
+    private final float[] m_input;
+    // Index of the next input frame in m_input, negative while input frames are skipped
+    private int m_numInputFrames;
+    // Input frame of the next output frame, its newest tap, and its phase
+    private int m_position;
+    private int m_phase;
+
+    private byte[] m_output = new byte[0];
+
+    /**
+     * @param inputRate    Sample rate of the input
+     * @param outputRate   Sample rate of the output
+     * @param channelCount Number of interleaved channels
+     * @param quality      QUALITY_LOW, QUALITY_MEDIUM or QUALITY_HIGH
+     */
+    public PolyphaseResampler(int inputRate, int outputRate, int channelCount, int quality) {
+        if (inputRate <= 0 || outputRate <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException("Invalid resampler format: " + inputRate + " -> " + outputRate
+                    + " Hz, " + channelCount + " channels");
+        }
+        quality = Math.max(QUALITY_LOW, Math.min(QUALITY_HIGH, quality));
+
+        int gcd = gcd(inputRate, outputRate);
+        int numPhases = outputRate / gcd;
+        int decimation = inputRate / gcd;
+        if (numPhases > MAX_PHASES) {
+            // The rate is approximated, the error is absorbed by the jitter buffer
+            decimation = (int) Math.round((double) decimation * MAX_PHASES / numPhases);
+            numPhases = MAX_PHASES;
+        }
+
+        m_channelCount = channelCount;
+        m_numPhases = numPhases;
+        m_decimation = Math.max(1, decimation);
+        // When downsampling, the cutoff is M/L times lower and the filter M/L times longer
+        m_numTaps = TAPS_PER_PHASE[quality] * ((m_decimation + numPhases - 1) / numPhases);
+        m_coefficients = createCoefficients(m_numPhases, m_decimation, m_numTaps,
+                KAISER_BETA[quality], CUTOFF[quality]);
+        m_input = new float[(m_numTaps - 1 + BLOCK_FRAMES) * channelCount];
+        reset();
+    }
+
+    /**
+     * Clears the history, e.g. at the start of a new stream.
+     */
+    public void reset() {
+        Arrays.fill(m_input, 0f);
+        m_numInputFrames = m_numTaps - 1;
+        m_position = m_numTaps - 1;
+        m_phase = 0;
+    }
+
+    /**
+     * @return The number of taps of a filter phase, more than the quality sets when downsampling
+     */
+    public int getTapsPerPhase() {
+        return m_numTaps;
+    }
+
+    /**
+     * Converts a chunk of the input stream.
+     *
+     * @param data   Input PCM, 16-bit little-endian interleaved frames
+     * @param offset Offset of the first byte in data
+     * @param size   Number of bytes, a multiple of the frame size
+     * @return The number of bytes of output in {@link #getOutput()}
+     */
+    public int process(byte[] data, int offset, int size) {
+        int channelCount = m_channelCount;
+        int frameSize = 2 * channelCount;
+        int numFrames = size / frameSize;
+        // Worst case of the output, reallocated only for a larger chunk than before
+        int maxOutputBytes = (int) (((long) numFrames * m_numPhases / m_decimation + 2) * frameSize);
+        if (m_output.length < maxOutputBytes) {
+            m_output = new byte[maxOutputBytes];
+        }
+
+        int outputSize = 0;
+        while (numFrames > 0) {
+            if (m_numInputFrames < 0) {
+                // Frames between two output frames, when decimating by more than the taps
+                int skipped = Math.min(numFrames, -m_numInputFrames);
+                offset += skipped * frameSize;
+                numFrames -= skipped;
+                m_numInputFrames += skipped;
+                continue;
+            }
+            int count = Math.min(numFrames, m_input.length / channelCount - m_numInputFrames);
+            int dst = m_numInputFrames * channelCount;
+            for (int i = 0; i < count * channelCount; i++, offset += 2) {
+                m_input[dst++] = (short) ((data[offset] & 0xFF) | (data[offset + 1] << 8));
+            }
+            m_numInputFrames += count;
+            numFrames -= count;
+            outputSize = filterBlock(outputSize);
+        }
+        return outputSize;
+    }
+
+    /**
+     * @return The output of the last call to {@link #process(byte[], int, int)}, reused by the
+     *         next call
+     */
+    public byte[] getOutput() {
+        return m_output;
+    }
+
+    /**
+     * Computes the output frames of the buffered input and keeps the history for the next block.
+     *
+     * @param outputSize Bytes of output so far
+     * @return The bytes of output
+     */
+    private int filterBlock(int outputSize) {
+        float[] input = m_input;
+        float[] coefficients = m_coefficients;
+        byte[] output = m_output;
+        int channelCount = m_channelCount;
+        int numTaps = m_numTaps;
+        int position = m_position;
+        int phase = m_phase;
+
+        while (position < m_numInputFrames) {
+            int first = (position - numTaps + 1) * channelCount;
+            int coef = phase * numTaps;
+            for (int c = 0; c < channelCount; c++) {
+                float sum = 0f;
+                for (int k = 0, i = first + c; k < numTaps; k++, i += channelCount) {
+                    sum += coefficients[coef + k] * input[i];
+                }
+                int sample = Math.round(sum);
+                sample = sample > Short.MAX_VALUE ? Short.MAX_VALUE : sample < Short.MIN_VALUE ? Short.MIN_VALUE : sample;
+                output[outputSize++] = (byte) sample;
+                output[outputSize++] = (byte) (sample >> 8);
+            }
+            phase += m_decimation;
+            position += phase / m_numPhases;
+            phase %= m_numPhases;
+        }
+
+        // Moves the history of the next output frame to the start of the buffer
+        int keepFrom = position - (numTaps - 1);
+        int numKept = m_numInputFrames - keepFrom;
+        if (numKept > 0) {
+            System.arraycopy(input, keepFrom * channelCount, input, 0, numKept * channelCount);
+        }
+        m_numInputFrames = numKept;
+        m_position = position - keepFrom;
+        m_phase = phase;
+        return outputSize;
+    }
+
+    /**
+     * Builds the polyphase table of a Kaiser windowed sinc low-pass filter.
+     */
+    private static float[] createCoefficients(int numPhases, int decimation, int numTaps, double beta, double cutoff) {
+        int length = numPhases * numTaps;
+        double center = (length - 1) / 2.0;
+        // In cycles per sample at the upsampled rate, below the lower of the two Nyquists
+        double fc = 0.5 * cutoff / Math.max(numPhases, decimation);
+        double i0Beta = besselI0(beta);
+
+        float[] coefficients = new float[length];
+        double[] taps = new double[numTaps];
+        for (int p = 0; p < numPhases; p++) {
+            double sum = 0;
+            for (int k = 0; k < numTaps; k++) {
+                // Tap k of phase p is the prototype tap p + k * L, applied to the input k frames
+                // before the newest, the table is stored oldest first
+                int j = p + k * numPhases;
+                double x = j - center;
+                double sinc = x == 0 ? 1.0 : Math.sin(2 * Math.PI * fc * x) / (2 * Math.PI * fc * x);
+                double r = 2 * x / (length - 1);
+                double window = besselI0(beta * Math.sqrt(Math.max(0, 1 - r * r))) / i0Beta;
+                taps[k] = sinc * window;
+                sum += taps[k];
+            }
+            // Each phase has a unity DC gain
+            for (int k = 0; k < numTaps; k++) {
+                coefficients[p * numTaps + numTaps - 1 - k] = (float) (taps[k] / sum);
+            }
+        }
+        return coefficients;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+            if (term < 1e-12 * sum) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
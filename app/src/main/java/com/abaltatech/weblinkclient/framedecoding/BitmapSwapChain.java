@@ -0,0 +1,165 @@
+/****************************************************************************
+ *
+ * @file BitmapSwapChain.java
+ * @brief
+ *
+ * Contains the BitmapSwapChain class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.graphics.Bitmap;
+
+/**
+ * Triple-buffered set of bitmaps holding the screenshots of a software decoder.
+ * <p></p>
+ * A new screenshot is written into a back buffer, which is neither the front buffer nor
+ * referenced by a {@link Screenshot}, and then becomes the front buffer. The bitmaps handed out
+ * are therefore never written while they are in use:
+ * <ul>
+ * <li>an acquired {@link Screenshot} keeps its bitmap out of the rotation until it is released,</li>
+ * <li>a bitmap returned by {@link IFrameDecoder#getScreenshot()}, which has no release, stays
+ * unchanged until two newer screenshots were taken, and is never recycled by the chain.</li>
+ * </ul>
+ * The methods may be called from any thread.
+ */
+class BitmapSwapChain {
+
+    private static final int NUM_BUFFERS = 3;
+
+    private final Bitmap[] m_bitmaps = new Bitmap[NUM_BUFFERS];
+    private final int[] m_refCounts = new int[NUM_BUFFERS];
+    // Handed out without a reference count, so they must not be recycled
+    private final boolean[] m_isHandedOut = new boolean[NUM_BUFFERS];
+    private int m_front = -1;
+
+    /**
+     * Returns a buffer that may be written.
+     *
+     * @return The index of the back buffer, or -1 if all buffers are in use
+     */
+    synchronized int findBackBuffer() {
+        for (int i = 0; i < NUM_BUFFERS; ++i) {
+            if (i != m_front && m_refCounts[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index Index of a buffer
+     * @return The bitmap of the buffer, null if it has none yet
+     */
+    synchronized Bitmap getBitmap(int index) {
+        return m_bitmaps[index];
+    }
+
+    /**
+     * Makes a back buffer the front buffer.
+     *
+     * @param index  Index returned by {@link #findBackBuffer()}
+     * @param bitmap The new content of the buffer, which replaces its previous bitmap
+     */
+    synchronized void present(int index, Bitmap bitmap) {
+        if (m_bitmaps[index] != bitmap) {
+            recycle(index);
+            m_bitmaps[index] = bitmap;
+        }
+        m_isHandedOut[index] = false;
+        m_front = index;
+    }
+
+    /**
+     * @return true if the chain has a front buffer
+     */
+    synchronized boolean hasFront() {
+        return m_front >= 0;
+    }
+
+    /**
+     * Acquires a reference to the front buffer.
+     *
+     * @return The screenshot, or null if there is no front buffer
+     */
+    synchronized Screenshot acquireFront() {
+        if (m_front < 0) {
+            return null;
+        }
+        ++m_refCounts[m_front];
+        return new Screenshot(this, m_bitmaps[m_front]);
+    }
+
+    /**
+     * Returns the front buffer without a reference, for {@link IFrameDecoder#getScreenshot()}.
+     *
+     * @return The front bitmap, or null if there is no front buffer
+     */
+    synchronized Bitmap getFront() {
+        if (m_front < 0) {
+            return null;
+        }
+        m_isHandedOut[m_front] = true;
+        return m_bitmaps[m_front];
+    }
+
+    /**
+     * Releases a reference acquired by {@link #acquireFront()}.
+     *
+     * @param bitmap The bitmap of the screenshot
+     */
+    synchronized void release(Bitmap bitmap) {
+        for (int i = 0; i < NUM_BUFFERS; ++i) {
+            if (m_bitmaps[i] == bitmap && m_refCounts[i] > 0) {
+                --m_refCounts[i];
+                return;
+            }
+        }
+        // The chain was cleared while the screenshot was in use
+        if (!bitmap.isRecycled()) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Drops all buffers. The referenced bitmaps are recycled when they are released.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < NUM_BUFFERS; ++i) {
+            if (m_refCounts[i] == 0) {
+                recycle(i);
+            }
+            m_bitmaps[i] = null;
+            m_refCounts[i] = 0;
+            m_isHandedOut[i] = false;
+        }
+        m_front = -1;
+    }
+
+    private void recycle(int index) {
+        Bitmap bitmap = m_bitmaps[index];
+        if (bitmap != null && !m_isHandedOut[index] && m_refCounts[index] == 0) {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/****************************************************************************
+ *
+ * @file CodecScoreboard.java
+ * @brief
+ *
+ * Contains the CodecScoreboard class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+import com.abaltatech.weblinkclient.appcatalog.IPlatformFileManager;
+import com.abaltatech.weblinkclientapp.compatibility.WLCompatibilityUtils_Custom;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent record of how the H264 codec candidates behaved on this hardware.
+ * <p></p>
+ * For every codec the scoreboard keeps whether it has ever produced output, how long it took to
+ * produce the first frame and how many errors it raised. The records are stored per hardware ID
+ * (see {@link WLCompatibilityUtils_Custom#getHardwareID()}), so on the next start the decoder can
+ * go straight to the codec known to work instead of probing the broken ones again.
+ * <p></p>
+ * The file contains one tab separated line per codec:
+ * {@code hardwareID codecName producedOutput timeToFirstFrameMs errorCount}.
+ */
+public class CodecScoreboard {
+
+    private static final String TAG = "CodecScoreboard";
+
+    private static final String SEPARATOR = "\t";
+    private static final String CHARSET = "UTF-8";
+    private static final int FIELD_COUNT = 5;
+
+    /**
+     * Score of a single codec.
+     */
+    private static class Entry {
+        boolean producedOutput = false;
+        long timeToFirstFrameMs = -1;
+        int errorCount = 0;
+    }
+
+    private final IPlatformFileManager m_fileManager;
+    private final String m_filePath;
+    private final String m_hardwareID;
+    private final Map<String, Entry> m_entries = new LinkedHashMap<String, Entry>();
+    // Lines that belong to other hardware IDs, written back unchanged
+    private final List<String> m_foreignLines = new ArrayList<String>();
+    // Set while a background save is scheduled and has not started yet
+    private boolean m_isSavePending = false;
+    // Serializes the writes of the file, taken before the lock of the records
+    private final Object m_fileLock = new Object();
+
+    /**
+     * Creates a scoreboard for the current hardware.
+     *
+     * @param fileManager File manager used to read and write the scoreboard
+     * @param filePath    Path of the scoreboard file
+     */
+    public CodecScoreboard(IPlatformFileManager fileManager, String filePath) {
+        m_fileManager = fileManager;
+        m_filePath = filePath;
+        m_hardwareID = WLCompatibilityUtils_Custom.getHardwareID();
+    }
+
+    /**
+     * Reads the scoreboard file. A missing or malformed file results in an empty scoreboard.
+     */
+    public synchronized void load() {
+        m_entries.clear();
+        m_foreignLines.clear();
+
+        FileInputStream fis = m_fileManager.openFileForReading(m_filePath);
+        if (fis == null) {
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(fis, CHARSET));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.split(SEPARATOR);
+                if (tokens.length != FIELD_COUNT) {
+                    continue;
+                }
+                if (!tokens[0].equals(m_hardwareID)) {
+                    m_foreignLines.add(line);
+                    continue;
+                }
+                try {
+                    Entry entry = new Entry();
+                    entry.producedOutput = Boolean.parseBoolean(tokens[2]);
+                    entry.timeToFirstFrameMs = Long.parseLong(tokens[3]);
+                    entry.errorCount = Integer.parseInt(tokens[4]);
+                    m_entries.put(tokens[1], entry);
+                } catch (NumberFormatException e) {
+                    MCSLogger.log(MCSLogger.eWarning, TAG, "Ignoring malformed entry: " + line);
+                }
+            }
+        } catch (IOException e) {
+            MCSLogger.log(MCSLogger.eWarning, TAG, "Failed to read the codec scoreboard!");
+        } finally {
+            try {
+                fis.close();
+            } catch (IOException e) {
+                // No-op
+            }
+        }
+    }
+
+    /**
+     * Writes the scoreboard file. The records are not locked while the file is written.
+     */
+    public void save() {
+        synchronized (m_fileLock) {
+            StringBuilder content = new StringBuilder();
+            synchronized (this) {
+                for (String line : m_foreignLines) {
+                    content.append(line).append('\n');
+                }
+                for (Map.Entry<String, Entry> item : m_entries.entrySet()) {
+                    Entry entry = item.getValue();
+                    content.append(m_hardwareID).append(SEPARATOR).append(item.getKey())
+                            .append(SEPARATOR).append(entry.producedOutput)
+                            .append(SEPARATOR).append(entry.timeToFirstFrameMs)
+                            .append(SEPARATOR).append(entry.errorCount).append('\n');
+                }
+            }
+            writeFile(content.toString());
+        }
+    }
+
+    private void writeFile(String content) {
+        FileOutputStream fos = m_fileManager.openFileForWriting(m_filePath);
+        if (fos == null) {
+            MCSLogger.log(MCSLogger.eWarning, TAG, "Failed to open the codec scoreboard for writing!");
+            return;
+        }
+        try {
+            Writer writer = new OutputStreamWriter(fos, CHARSET);
+            writer.write(content);
+            writer.flush();
+        } catch (IOException e) {
+            MCSLogger.log(MCSLogger.eWarning, TAG, "Failed to write the codec scoreboard!");
+        } finally {
+            try {
+                fos.close();
+            } catch (IOException e) {
+                // No-op
+            }
+        }
+    }
+
+    /**
+     * Writes the scoreboard file on a background thread, so that the decoding threads never wait
+     * for the file system. Saves requested while one is pending are merged into it.
+     */
+    public void saveInBackground() {
+        synchronized (this) {
+            if (m_isSavePending) {
+                return;
+            }
+            m_isSavePending = true;
+        }
+        Thread writer = new Thread("CodecScoreboardWriter") {
+            @Override
+            public void run() {
+                synchronized (CodecScoreboard.this) {
+                    // Records made from now on schedule another save
+                    m_isSavePending = false;
+                }
+                save();
+            }
+        };
+        writer.start();
+    }
+
+    /**
+     * Returns the codec that should be tried first: among the codecs that have produced output,
+     * the one with the fewest errors, and then the fastest first frame.
+     *
+     * @return Codec name, or null if no codec is known to work
+     */
+    public synchronized String getPreferredCodec() {
+        String result = null;
+        Entry best = null;
+        for (Map.Entry<String, Entry> item : m_entries.entrySet()) {
+            Entry entry = item.getValue();
+            if (!entry.producedOutput) {
+                continue;
+            }
+            if (best == null
+                    || entry.errorCount < best.errorCount
+                    || (entry.errorCount == best.errorCount && entry.timeToFirstFrameMs < best.timeToFirstFrameMs)) {
+                best = entry;
+                result = item.getKey();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if a codec has failed without ever producing output.
+     *
+     * @param codecName Codec name
+     * @return true if the codec is known to be broken, false otherwise
+     */
+    public synchronized boolean isKnownBroken(String codecName) {
+        Entry entry = m_entries.get(codecName);
+        return entry != null && !entry.producedOutput && entry.errorCount > 0;
+    }
+
+    /**
+     * Records that a codec produced its first frame.
+     *
+     * @param codecName          Codec name
+     * @param timeToFirstFrameMs Time from the codec start to the first rendered frame
+     */
+    public synchronized void recordFirstOutput(String codecName, long timeToFirstFrameMs) {
+        Entry entry = getEntry(codecName);
+        entry.producedOutput = true;
+        entry.timeToFirstFrameMs = timeToFirstFrameMs;
+    }
+
+    /**
+     * Records a decoding error raised by a codec.
+     *
+     * @param codecName Codec name
+     */
+    public synchronized void recordError(String codecName) {
+        ++getEntry(codecName).errorCount;
+    }
+
+    private Entry getEntry(String codecName) {
+        Entry entry = m_entries.get(codecName);
+        if (entry == null) {
+            entry = new Entry();
+            m_entries.put(codecName, entry);
+        }
+        return entry;
+    }
+}
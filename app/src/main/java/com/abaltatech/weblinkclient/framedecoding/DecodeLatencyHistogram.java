@@ -0,0 +1,111 @@
+/****************************************************************************
+ *
+ * @file DecodeLatencyHistogram.java
+ * @brief
+ *
+ * Contains the DecodeLatencyHistogram class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+/**
+ * Fixed-size histogram of per-frame decode latencies.
+ * <p></p>
+ * Latencies are counted in 1 millisecond buckets up to {@link #MAX_TRACKED_LATENCY_MS}; anything
+ * above that lands in a single overflow bucket. Recording a sample does not allocate, so it is
+ * safe to call for every decoded frame.
+ */
+class DecodeLatencyHistogram {
+
+    /**
+     * Highest latency (in milliseconds) that gets its own bucket.
+     */
+    static final int MAX_TRACKED_LATENCY_MS = 500;
+
+    private final long[] m_buckets = new long[MAX_TRACKED_LATENCY_MS + 2];
+    private long m_sampleCount = 0;
+    private long m_maxLatencyUs = 0;
+
+    /**
+     * Records a single latency sample.
+     *
+     * @param latencyUs Latency in microseconds
+     */
+    synchronized void record(long latencyUs) {
+        if (latencyUs < 0) {
+            return;
+        }
+        long bucket = latencyUs / 1000;
+        if (bucket > MAX_TRACKED_LATENCY_MS) {
+            bucket = MAX_TRACKED_LATENCY_MS + 1;
+        }
+        ++m_buckets[(int) bucket];
+        ++m_sampleCount;
+        if (latencyUs > m_maxLatencyUs) {
+            m_maxLatencyUs = latencyUs;
+        }
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the samples fall.
+     *
+     * @param percentile Percentile in the range [0, 100]
+     * @return Latency in milliseconds (the upper bound of the matching bucket), or -1 if no
+     * samples were recorded. Samples in the overflow bucket report the maximum latency seen.
+     */
+    synchronized long getPercentileMs(double percentile) {
+        if (m_sampleCount == 0) {
+            return -1;
+        }
+        long threshold = (long) Math.ceil(m_sampleCount * percentile / 100.0);
+        if (threshold < 1) {
+            threshold = 1;
+        }
+        long count = 0;
+        for (int i = 0; i <= MAX_TRACKED_LATENCY_MS; ++i) {
+            count += m_buckets[i];
+            if (count >= threshold) {
+                return i + 1;
+            }
+        }
+        return m_maxLatencyUs / 1000;
+    }
+
+    /**
+     * @return Number of recorded samples
+     */
+    synchronized long getSampleCount() {
+        return m_sampleCount;
+    }
+
+    /**
+     * Clears all recorded samples.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < m_buckets.length; ++i) {
+            m_buckets[i] = 0;
+        }
+        m_sampleCount = 0;
+        m_maxLatencyUs = 0;
+    }
+}
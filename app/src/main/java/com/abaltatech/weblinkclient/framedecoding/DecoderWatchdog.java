@@ -0,0 +1,98 @@
+/****************************************************************************
+ *
+ * @file DecoderWatchdog.java
+ * @brief
+ *
+ * Contains the DecoderWatchdog class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects a codec that silently stopped producing output.
+ * <p></p>
+ * The watchdog tracks the average interval between output frames. The codec is considered
+ * stalled when it has not produced any output for {@link #STALL_INTERVALS} average intervals
+ * (bounded by {@link #MIN_STALL_TIMEOUT} and {@link #MAX_STALL_TIMEOUT}) although at least
+ * {@link #STALL_INPUT_FRAMES} frames were submitted in the meantime. Requiring pending input keeps
+ * a static screen, where the host sends nothing, from being reported as a stall, and tolerates
+ * a codec that holds back one frame. A codec that keeps all its input buffers has received
+ * more than that, so the stall is also detected while the caller waits for an input buffer.
+ * <p></p>
+ * Inputs and outputs may be reported from different threads.
+ */
+class DecoderWatchdog {
+
+    private static final int STALL_INTERVALS = 8;
+    private static final int STALL_INPUT_FRAMES = 2;
+    private static final long MIN_STALL_TIMEOUT = 500; // in milliseconds
+    private static final long MAX_STALL_TIMEOUT = 2000; // in milliseconds
+
+    private volatile long m_lastOutputTimeMs;
+    private volatile long m_averageOutputIntervalMs = 0;
+    private final AtomicInteger m_numInputsSinceOutput = new AtomicInteger(0);
+
+    /**
+     * Starts a new observation window, e.g. after the codec was started or recovered.
+     *
+     * @param nowMs Current time in milliseconds
+     */
+    void restart(long nowMs) {
+        m_lastOutputTimeMs = nowMs;
+        m_numInputsSinceOutput.set(0);
+    }
+
+    /**
+     * Reports a frame submitted to the codec.
+     */
+    void onInput() {
+        m_numInputsSinceOutput.incrementAndGet();
+    }
+
+    /**
+     * Reports a frame released by the codec.
+     *
+     * @param nowMs Current time in milliseconds
+     */
+    void onOutput(long nowMs) {
+        long interval = nowMs - m_lastOutputTimeMs;
+        long average = m_averageOutputIntervalMs;
+        m_averageOutputIntervalMs = average == 0 ? interval : (average * 7 + interval) / 8;
+        m_lastOutputTimeMs = nowMs;
+        m_numInputsSinceOutput.set(0);
+    }
+
+    /**
+     * @param nowMs Current time in milliseconds
+     * @return true if the codec stopped producing output although it keeps receiving input
+     */
+    boolean isStalled(long nowMs) {
+        if (m_numInputsSinceOutput.get() < STALL_INPUT_FRAMES) {
+            return false;
+        }
+        long timeout = Math.max(MIN_STALL_TIMEOUT, Math.min(MAX_STALL_TIMEOUT, m_averageOutputIntervalMs * STALL_INTERVALS));
+        return nowMs - m_lastOutputTimeMs > timeout;
+    }
+}
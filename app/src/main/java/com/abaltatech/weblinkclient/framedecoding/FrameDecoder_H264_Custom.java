@@ -35,6 +35,10 @@ import android.media.MediaCodecList;
 import android.media.MediaFormat;
 import android.os.Build;
 import android.os.Build.VERSION;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.text.TextUtils;
+import android.view.Surface;
 
 import com.abaltatech.mcs.logger.MCSLogger;
 import com.abaltatech.weblink.core.DataBuffer;
@@ -49,6 +53,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An example implementation of a Frame Decoder that uses the Android {@link MediaCodec} to decode
@@ -78,6 +86,66 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
      */
     private static final int KEY_FRAME_DELAY = 2;
 
+    /**
+     * Time in milliseconds that a newly started codec has to produce its first output frame.
+     * If it fails to do so, it is considered broken and the next codec candidate is tried.
+     */
+    private static final long GENERATE_FIRST_OUTPUT_TIMEOUT = 2500;
+
+    /**
+     * Maximum number of frames that are kept while waiting for a free input buffer in asynchronous
+     * mode. If the codec stalls for longer than that, the backlog is dropped up to the next
+     * key-frame instead of backing up the WebLink transport.
+     */
+    private static final int MAX_PENDING_ASYNC_FRAMES = 30;
+
+    /**
+     * Recovery steps taken, in this order, when a codec that has already produced output fails
+     * or stalls. The level is reset once the codec produces output again.
+     */
+    private static final int RECOVERY_NONE = 0;
+    private static final int RECOVERY_FLUSH = 1; // flush and resubmit the config and the last key-frame
+    private static final int RECOVERY_RESET = 2; // reset, configure and resubmit
+    private static final int RECOVERY_FAILED = 3; // report the error, the next session switches the candidate
+
+    /**
+     * When set, newly started decoders are driven by {@link MediaCodec.Callback} notifications
+     * instead of the blocking dequeueInputBuffer() loop and the polling {@link FrameDecodeThread}.
+     */
+    private static volatile boolean ms_asyncModeEnabled = false;
+
+    /**
+     * Target frame rate of the paced output, or 0 to render every frame as soon as it is decoded.
+     */
+    private static volatile int ms_renderFrameRate = 0;
+
+    /**
+     * When set, a working codec is kept alive between decoding sessions of the same resolution.
+     */
+    private static volatile boolean ms_warmCodecReuseEnabled = true;
+
+    /**
+     * When set, newly configured codecs get the {@link LowLatencyProfile}.
+     */
+    private static volatile boolean ms_lowLatencyProfileEnabled = false;
+
+    /**
+     * Median decode latency of the last session decoded without the low latency profile (-1 if
+     * unknown), kept to compare the two configurations
+     */
+    private static volatile long ms_baselineLatencyP50 = -1;
+
+    /**
+     * Holds the codec parked by the last stopped session
+     */
+    private static final WarmCodecHolder WARM_CODEC = new WarmCodecHolder();
+
+    /**
+     * Time in milliseconds it took to create, configure and start the codec the last time it had
+     * to be created from scratch (-1 if unknown)
+     */
+    private static volatile long ms_coldCodecStartupTimeMs = -1;
+
     private MediaCodec m_decoder;
     private ByteBuffer[] m_inputBuffers;
     private final int m_dequeInputBufferTimeoutUs = 100000; // [100 milliseconds] In micro seconds.
@@ -90,6 +158,73 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
     private long m_numKeyFrameInput = 0;
     private long m_numFrameInput = 0;
 
+    // Submit-to-render latency of the decoded frames
+    private final DecodeLatencyHistogram m_decodeLatency = new DecodeLatencyHistogram();
+
+    // Paces the output buffers to the target frame rate (null if pacing is disabled)
+    private OutputRenderScheduler m_renderScheduler;
+    // Presentation timestamp of the newest frame submitted to the codec, config units excluded
+    private volatile long m_newestInputTimeUs = 0;
+
+    // Splits the incoming stream into config units and complete access units
+    private final H264AccessUnitAssembler m_accessUnitAssembler = new H264AccessUnitAssembler(
+            new H264AccessUnitAssembler.Listener() {
+                @Override
+                public boolean onUnit(DataBuffer unit, int flags) {
+                    return decodeUnit(unit, flags);
+                }
+            });
+
+    // Latest SPS/PPS of the stream
+    private final H264ParameterSets m_parameterSets = new H264ParameterSets();
+    private long m_numFormatChanges = 0;
+
+    // Codec reuse
+    private String m_codecName;
+    private int m_width; // currently configured
+    private int m_height;
+    private VideoSurface m_surface;
+    private boolean m_isCodecReused = false;
+    // Set by the decode thread, polled by the SDK thread while it waits for an input buffer
+    private volatile boolean m_hasDecodingError = false;
+    private long m_codecStartupTimeMs = -1;
+
+    // Recovery from codec failures
+    private final DecoderWatchdog m_watchdog = new DecoderWatchdog();
+    private final DataBuffer m_lastKeyFrame = new DataBuffer();
+    private volatile boolean m_isRecoveryRequested = false;
+    private volatile int m_recoveryLevel = RECOVERY_NONE;
+    private long m_numFlushRecoveries = 0;
+    private long m_numResetRecoveries = 0;
+
+    // Low latency profile
+    private boolean m_isLowLatencyProfile = false;
+    private List<String> m_acceptedLowLatencyKeys = Collections.emptyList();
+
+    // Asynchronous (callback-driven) mode
+    private boolean m_isAsyncMode = false;
+    private HandlerThread m_callbackThread;
+    private Handler m_callbackHandler;
+    private long m_startTimestamp; // in milliseconds
+    private boolean m_waitForKeyFrame = false;
+    private final ConcurrentLinkedQueue<Integer> m_freeInputSlots = new ConcurrentLinkedQueue<Integer>();
+    private final ConcurrentLinkedQueue<PendingFrame> m_pendingInputFrames = new ConcurrentLinkedQueue<PendingFrame>();
+    private final AtomicInteger m_pendingInputFrameCount = new AtomicInteger(0);
+    private final AtomicBoolean m_isFeedingInput = new AtomicBoolean(false);
+    // Emptied frame copies, reused for the next frames that have to wait for an input buffer
+    private final ConcurrentLinkedQueue<PendingFrame> m_spareFrameCopies = new ConcurrentLinkedQueue<PendingFrame>();
+
+    // Number of frame bytes copied on the way to the codec (for debugging)
+    private final AtomicLong m_numInputBytesCopied = new AtomicLong(0);
+
+    /**
+     * Copy of a unit waiting for an input buffer in asynchronous mode
+     */
+    private static class PendingFrame {
+        final DataBuffer data = new DataBuffer();
+        int flags;
+    }
+
     /**
      * Utility class to keep available Madia Codec candidates for H264 decoding
      */
@@ -129,6 +264,11 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
      */
     private static MediaCodecCandidate H264_CODEC_CANDIDATE;
 
+    /**
+     * Persistent record of the codec candidates' behavior on this hardware (may be null)
+     */
+    private static CodecScoreboard ms_codecScoreboard;
+
     /*
      * This code collects Media Codecs to be used as a decoder.
      * <p></p>
@@ -167,6 +307,113 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
         Collections.reverse(H264_CODEC_CANDIDATES);
     }
 
+    /**
+     * Selects the operating mode of decoders started after this call.
+     * <p></p>
+     * In asynchronous mode input buffers are requested through {@link MediaCodec.Callback}, frames
+     * are submitted as soon as an input buffer becomes available and decoded frames are rendered
+     * from the callback thread, so no polling {@link FrameDecodeThread} is needed.
+     *
+     * @param enabled true to use the asynchronous mode, false to use the blocking mode
+     */
+    public static void setAsyncModeEnabled(boolean enabled) {
+        ms_asyncModeEnabled = enabled;
+    }
+
+    /**
+     * Sets the scoreboard used to remember which codec works on this hardware.
+     * <p></p>
+     * The scoreboard is loaded and, as long as no codec candidate has been tried yet, the list of
+     * candidates is reordered so that the codec known to work is tried first and the codecs known
+     * to be broken are tried last. Afterwards the scoreboard is updated whenever a candidate
+     * produces its first frame or raises an error.
+     *
+     * @param scoreboard The scoreboard, or null to disable it
+     */
+    public static synchronized void setCodecScoreboard(CodecScoreboard scoreboard) {
+        ms_codecScoreboard = scoreboard;
+        if (scoreboard == null || H264_CODEC_CANDIDATE != null) {
+            return;
+        }
+
+        scoreboard.load();
+        List<MediaCodecCandidate> brokenCandidates = new ArrayList<MediaCodecCandidate>();
+        for (int i = H264_CODEC_CANDIDATES.size() - 1; i >= 0; --i) {
+            if (scoreboard.isKnownBroken(H264_CODEC_CANDIDATES.get(i).name)) {
+                brokenCandidates.add(0, H264_CODEC_CANDIDATES.remove(i));
+            }
+        }
+        H264_CODEC_CANDIDATES.addAll(brokenCandidates);
+
+        String preferredCodec = scoreboard.getPreferredCodec();
+        if (preferredCodec != null) {
+            for (int i = 0; i < H264_CODEC_CANDIDATES.size(); ++i) {
+                if (H264_CODEC_CANDIDATES.get(i).name.equals(preferredCodec)) {
+                    MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Codec scoreboard prefers: " + preferredCodec);
+                    H264_CODEC_CANDIDATES.add(0, H264_CODEC_CANDIDATES.remove(i));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables or disables keeping a working codec alive between decoding sessions.
+     * <p></p>
+     * When enabled, stopDecoding() flushes the codec and parks it instead of releasing it, and the
+     * next startDecoding() with the same codec and resolution only redirects it to the new surface.
+     * Only used in the blocking mode, since the asynchronous callbacks are bound to the decoder
+     * instance that configured the codec, and from Android 6.0, which can switch the output surface
+     * of a started codec.
+     *
+     * @param enabled true to reuse the codec, false to create a new one for every session
+     */
+    public static void setWarmCodecReuseEnabled(boolean enabled) {
+        ms_warmCodecReuseEnabled = enabled;
+        if (!enabled) {
+            WARM_CODEC.release();
+        }
+    }
+
+    /**
+     * Enables the low latency profile for codecs configured after this call.
+     * <p></p>
+     * The profile asks the codec to output each frame as soon as it is decoded instead of
+     * buffering frames. See {@link LowLatencyProfile} for the applied keys. A parked warm codec is
+     * released when the setting changes, since it was configured with the previous setting.
+     *
+     * @param enabled true to apply the profile, false to use the default codec configuration
+     */
+    public static void setLowLatencyProfileEnabled(boolean enabled) {
+        if (ms_lowLatencyProfileEnabled != enabled) {
+            ms_lowLatencyProfileEnabled = enabled;
+            WARM_CODEC.release();
+        }
+    }
+
+    /**
+     * Releases the codec kept alive for the next decoding session, if any. A parked codec is also
+     * released on its own when it is not reused within a few seconds.
+     */
+    public static void releaseWarmCodec() {
+        WARM_CODEC.release();
+    }
+
+    /**
+     * Enables paced output for decoders started after this call.
+     * <p></p>
+     * When enabled, decoded frames are released to the surface with a render timestamp spaced by
+     * the target frame interval instead of immediately. Frames that miss their slot by more than a
+     * frame interval while a newer frame is being decoded are dropped, and at most one decoded
+     * frame is held back, so bursts after a network hiccup are smoothed out without building up
+     * latency.
+     *
+     * @param frameRate Target frame rate in frames per second, or 0 to disable the pacing
+     */
+    public static void setRenderPacing(int frameRate) {
+        ms_renderFrameRate = Math.max(frameRate, 0);
+    }
+
     @Override
     public boolean startDecoding(IFrameDecoderNotification notification, int width, int height, VideoSurface surface) {
         MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "startDecoding enter");
@@ -181,7 +428,7 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
                     MCSLogger.log(MCSLogger.ELogType.eError, TAG,"startDecoding: The surface is invalid!");
                 } else {
                     try {
-                        if(H264_CODEC_CANDIDATE == null || (H264_CODEC_CANDIDATE.isTested || !H264_CODEC_CANDIDATE.isWorking)) {
+                        if(H264_CODEC_CANDIDATE == null || (H264_CODEC_CANDIDATE.isTested && !H264_CODEC_CANDIDATE.isWorking)) {
                             H264_CODEC_CANDIDATE = getNextMediaCodecCandidate();
                         }
                         if(H264_CODEC_CANDIDATE == null) {
@@ -197,35 +444,81 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
                             String hardware     = Build.HARDWARE.toLowerCase(Locale.US);
                             MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "startDecoding: Hardware ID is %s", board + "@" + manufacturer + "@" + hardware);
 
-                            MediaFormat fmt;
-                            if (VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                                fmt = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, width, height);
-                            } else {
-                                fmt = MediaFormat.createVideoFormat(VIDEO_FORMAT, width, height);
-                            }
+                            int renderFrameRate = ms_renderFrameRate;
+                            m_renderScheduler = renderFrameRate > 0 ? new OutputRenderScheduler(renderFrameRate) : null;
+                            m_isAsyncMode = ms_asyncModeEnabled;
+                            m_isLowLatencyProfile = ms_lowLatencyProfileEnabled;
+                            m_codecName = H264_CODEC_CANDIDATE.name;
+                            m_width = width;
+                            m_height = height;
+                            m_surface = surface;
+                            m_hasDecodingError = false;
 
-                            CodecInfo codecInfo = WLCompatibilityUtils_Custom.getCodecInfo();
-                            if (codecInfo.getInputBufferSize() != null) {
-                                fmt.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, codecInfo.getInputBufferSize().intValue());
+                            long codecStartTimestamp = System.currentTimeMillis();
+                            m_decoder = null;
+                            if (!m_isAsyncMode && ms_warmCodecReuseEnabled) {
+                                m_decoder = WARM_CODEC.take(m_codecName, width, height, surface.getSurface());
+                            }
+                            m_isCodecReused = m_decoder != null;
+                            if (!m_isCodecReused) {
+                                m_decoder = MediaCodec.createByCodecName(m_codecName);
+                                if (m_isAsyncMode) {
+                                    // Callbacks must be registered before the codec is configured
+                                    m_callbackThread = new HandlerThread("FrameDecodeCallbackThread");
+                                    m_callbackThread.start();
+                                    m_callbackHandler = new Handler(m_callbackThread.getLooper());
+                                    m_decoder.setCallback(new DecoderCallback(), m_callbackHandler);
+                                }
+                                configureDecoder(width, height, surface.getSurface());
+                            } else if (m_isLowLatencyProfile) {
+                                m_acceptedLowLatencyKeys = LowLatencyProfile.getAcceptedKeys(m_decoder, m_codecName);
                             }
-
-                            m_decoder = MediaCodec.createByCodecName(H264_CODEC_CANDIDATE.name);
-                            m_decoder.configure(fmt, surface.getSurface(), null, 0);
-                            m_decoder.start();
-                            m_decoderStarted = true;
                             m_notification = notification;
-
-                            m_inputBuffers = m_decoder.getInputBuffers();
                             m_numKeyFrameInput = 0;
                             m_numFrameInput = 0;
-                            m_frameDecodeThread = new FrameDecodeThread();
-                            m_frameDecodeThread.start();
+                            if (!m_isCodecReused) {
+                                m_decoder.start();
+                            }
+                            m_decoderStarted = true;
+
+                            m_isRecoveryRequested = false;
+                            m_recoveryLevel = RECOVERY_NONE;
+                            m_watchdog.restart(System.currentTimeMillis());
+
+                            m_codecStartupTimeMs = System.currentTimeMillis() - codecStartTimestamp;
+                            if (m_isCodecReused) {
+                                MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "startDecoding: Reused the warm codec in %d ms", m_codecStartupTimeMs);
+                            } else {
+                                ms_coldCodecStartupTimeMs = m_codecStartupTimeMs;
+                            }
+
+                            if (m_isAsyncMode) {
+                                MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "startDecoding: Using asynchronous mode");
+                                m_waitForKeyFrame = false;
+                                m_startTimestamp = System.currentTimeMillis();
+                                m_callbackHandler.postDelayed(m_firstOutputTimeoutCheck, GENERATE_FIRST_OUTPUT_TIMEOUT);
+                                if (notification != null) {
+                                    notification.onDecodingStarted();
+                                }
+                            } else {
+                                m_inputBuffers = getInputBufferArray(m_decoder);
+                                m_frameDecodeThread = new FrameDecodeThread(true);
+                                m_frameDecodeThread.start();
+                            }
 
                             result = true;
                         }
                     } catch(Exception e) {
                         MCSLogger.log(MCSLogger.eError, TAG, "startDecoding: Exception was raised!");
                         MCSLogger.printStackTrace(TAG, e);
+                        // A codec that cannot even be started goes to the end of the list on the next launch
+                        CodecScoreboard scoreboard = ms_codecScoreboard;
+                        MediaCodecCandidate candidate = H264_CODEC_CANDIDATE;
+                        if (scoreboard != null && candidate != null) {
+                            scoreboard.recordError(candidate.name);
+                            scoreboard.saveInBackground();
+                        }
+                        releaseFailedStart();
                     }
                 }
             } else {
@@ -244,6 +537,38 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
         return result;
     }
 
+    /**
+     * Releases what a failed startDecoding() created, so that the next start begins from scratch
+     * instead of finding a half-started decoder.
+     */
+    private void releaseFailedStart() {
+        if (m_callbackHandler != null) {
+            m_callbackHandler.removeCallbacks(m_firstOutputTimeoutCheck);
+        }
+        if (m_decoder != null) {
+            try {
+                m_decoder.release();
+            } catch (Exception e) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "startDecoding: Exception raised while trying to release the decoder: ", e);
+            }
+            m_decoder = null;
+        }
+        m_decoderStarted = false;
+        m_surface = null;
+
+        HandlerThread callbackThread = m_callbackThread;
+        if (callbackThread != null) {
+            callbackThread.quit();
+            try {
+                callbackThread.join();
+            } catch (InterruptedException ex) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "startDecoding: Exception raised while trying to join the callback thread: ", ex);
+            }
+        }
+        m_callbackThread = null;
+        m_callbackHandler = null;
+    }
+
     @Override
     public void stopDecoding() {
         MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "stopDecoding: enter");
@@ -253,12 +578,19 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
         MediaCodec decoder;
         FrameDecodeThread frameDecodeThread;
         IFrameDecoderNotification notification;
+        HandlerThread callbackThread;
 
         synchronized (this) {
             decoder = m_decoder;
             wasDecoderStarted = m_decoderStarted;
             notification = m_notification;
             frameDecodeThread = m_frameDecodeThread;
+            callbackThread = m_callbackThread;
+        }
+
+        if (m_callbackHandler != null) {
+            m_callbackHandler.removeCallbacks(m_firstOutputTimeoutCheck);
+            m_callbackHandler.removeCallbacks(m_releasePacedOutput);
         }
 
         if (frameDecodeThread != null && frameDecodeThread.isAlive()) {
@@ -272,9 +604,28 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
         }
         m_frameDecodeThread = null;
 
+        if (!m_isLowLatencyProfile && m_decodeLatency.getSampleCount() > 0) {
+            ms_baselineLatencyP50 = m_decodeLatency.getPercentileMs(50);
+        }
+
         reset();
 
-        if (decoder != null) {
+        boolean isDecoderParked = false;
+        if (decoder != null && wasDecoderStarted && !m_isAsyncMode && ms_warmCodecReuseEnabled
+                && VERSION.SDK_INT >= Build.VERSION_CODES.M && !m_hasDecodingError && H264_CODEC_CANDIDATE != null && H264_CODEC_CANDIDATE.isWorking) {
+            // Keep the working codec for the next session instead of releasing it. It is parked
+            // under the size it is configured for, which differs from the session size after a
+            // resolution change, so that it is only reused for a session of that size.
+            try {
+                decoder.flush();
+                WARM_CODEC.park(decoder, m_codecName, m_width, m_height);
+                isDecoderParked = true;
+            } catch (Exception ex) {
+                MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "stopDecoding: Failed to park the decoder: ", ex);
+            }
+        }
+
+        if (decoder != null && !isDecoderParked) {
             try {
                 if (wasDecoderStarted) {
                     decoder.flush();
@@ -298,9 +649,25 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
             }
         }
         m_decoder = null;
+        m_surface = null;
 
         m_decoderStarted = false;
 
+        if (callbackThread != null) {
+            callbackThread.quit();
+            try {
+                callbackThread.join();
+            } catch (InterruptedException ex) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "stopDecoding: Exception raised while trying to join the callback thread: ", ex);
+            }
+        }
+        m_callbackThread = null;
+        m_callbackHandler = null;
+        m_freeInputSlots.clear();
+        m_pendingInputFrames.clear();
+        m_pendingInputFrameCount.set(0);
+        m_spareFrameCopies.clear();
+
         if (notification != null) {
             if (!result) {
                 notification.onDecodingStopFailed();
@@ -318,31 +685,326 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
         m_inputBuffers = null;
         m_numKeyFrameInput = 0;
         m_numFrameInput = 0;
+        m_numFormatChanges = 0;
+        m_numFlushRecoveries = 0;
+        m_numResetRecoveries = 0;
+        m_numInputBytesCopied.set(0);
+        m_decodeLatency.clear();
+        m_accessUnitAssembler.clear();
+        m_parameterSets.clear();
+        m_lastKeyFrame.resize(0);
+        m_lastKeyFrame.reset();
         m_configFrameBits.resize(0);
         m_configFrameBits.reset();
     }
 
     @Override
     public boolean decodeImage(DataBuffer frameBits) {
-        int h264FrameType = H264Utils.getFrameType(frameBits);
+        // The buffers received from the SDK are re-framed into config units and access units,
+        // which are passed to decodeUnit()
+        long numCopiedBefore = m_accessUnitAssembler.getCopiedByteCount();
+        boolean result = m_accessUnitAssembler.push(frameBits);
+        m_numInputBytesCopied.addAndGet(m_accessUnitAssembler.getCopiedByteCount() - numCopiedBefore);
+        return result;
+    }
+
+    /**
+     * Decodes a unit produced by the {@link H264AccessUnitAssembler}.
+     *
+     * @param frameBits Config unit or complete access unit
+     * @param flags     {@link MediaCodec} buffer flags of the unit
+     */
+    private boolean decodeUnit(DataBuffer frameBits, int flags) {
+        // Recover a failed or stalled codec before feeding it
+        if (m_decoder != null && isRecoveryDue()) {
+            recoverDecoder();
+        }
 
-        // Store the configuration SPS and PPS data
-        if (H264Utils.isConfigFrame(h264FrameType)) {
-            m_configFrameBits.addBytes(frameBits.getData(), frameBits.getPos(), frameBits.getSize());
+        // Store the latest configuration SPS and PPS data
+        boolean isConfigFrame = (flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+        if (isConfigFrame && m_parameterSets.update(frameBits)) {
+            m_parameterSets.writeTo(m_configFrameBits);
+            onParameterSetsChanged();
         }
 
         // Count the number of frames and key-frames (for debugging)
-        boolean isKeyFrame = H264Utils.isKeyFrame(h264FrameType);
+        boolean isKeyFrame = (flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
         if (isKeyFrame) {
             if(m_numKeyFrameInput == 0) {
                 MCSLogger.log("Received first key frame.");
             }
             ++m_numKeyFrameInput;
+
+            // Keep the key-frame to reprime the codec after a recovery
+            m_lastKeyFrame.resize(0);
+            m_lastKeyFrame.reset();
+            m_lastKeyFrame.addBytes(frameBits.getData(), frameBits.getPos(), frameBits.getSize());
+            m_numInputBytesCopied.addAndGet(frameBits.getSize());
         }
         ++m_numFrameInput;
+        if (!isConfigFrame) {
+            m_watchdog.onInput();
+        }
 
         // Decode the raw video data
-        return decodeFrame(frameBits);
+        boolean result = submitUnit(frameBits, flags);
+        if (!result && m_decoder != null && m_isRecoveryRequested) {
+            // The codec stalled while the unit waited for an input buffer. The unit is dropped,
+            // the recovery reprimes the codec with the latest key-frame.
+            recoverDecoder();
+            result = m_decoder != null && m_recoveryLevel < RECOVERY_FAILED;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if a recovery was requested, or if the codec stopped producing output after
+     *         it produced some
+     */
+    private boolean isRecoveryDue() {
+        MediaCodecCandidate candidate = H264_CODEC_CANDIDATE;
+        boolean isCodecWorking = candidate != null && candidate.isWorking;
+        return m_isRecoveryRequested || (isCodecWorking && m_watchdog.isStalled(System.currentTimeMillis()));
+    }
+
+    private boolean submitUnit(DataBuffer frameBits, int flags) {
+        if (m_isAsyncMode) {
+            return decodeFrameAsync(frameBits, flags);
+        }
+        return decodeFrame(frameBits, flags);
+    }
+
+    /**
+     * Handles a failure of the codec. A codec that has never produced output is reported right
+     * away, so that the next session tries another candidate. For a working codec, a recovery is
+     * requested instead; it runs on the SDK thread before the next frame is submitted.
+     */
+    private void onDecodingFailure() {
+        MediaCodecCandidate candidate = H264_CODEC_CANDIDATE;
+        if (candidate == null || !candidate.isWorking || m_recoveryLevel >= RECOVERY_FAILED) {
+            notifyDecodingError();
+            return;
+        }
+        MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Codec failure, requesting a recovery");
+        m_isRecoveryRequested = true;
+    }
+
+    /**
+     * Takes the next recovery step: flush, then reset, then give up. Each attempt that does not
+     * bring back the output escalates to the next step.
+     */
+    private void recoverDecoder() {
+        m_isRecoveryRequested = false;
+        if (m_recoveryLevel >= RECOVERY_FAILED) {
+            return;
+        }
+
+        m_recoveryLevel++;
+        if (m_recoveryLevel == RECOVERY_FLUSH) {
+            if (flushAndReprime()) {
+                ++m_numFlushRecoveries;
+                return;
+            }
+            m_recoveryLevel = RECOVERY_RESET;
+        }
+        if (m_recoveryLevel == RECOVERY_RESET) {
+            if (resetAndReprime()) {
+                ++m_numResetRecoveries;
+                return;
+            }
+            m_recoveryLevel = RECOVERY_FAILED;
+        }
+
+        MCSLogger.log(MCSLogger.ELogType.eError, TAG, "recoverDecoder: The codec did not recover, switching to another candidate");
+        MediaCodecCandidate candidate = H264_CODEC_CANDIDATE;
+        if (candidate != null) {
+            candidate.isWorking = false;
+        }
+        notifyDecodingError();
+    }
+
+    private boolean flushAndReprime() {
+        MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "flushAndReprime: Flushing the codec");
+        stopFrameDecodeThread();
+        try {
+            m_decoder.flush();
+            clearCodecBuffers();
+            if (m_isAsyncMode) {
+                // A flushed codec in asynchronous mode must be resumed
+                m_decoder.start();
+            }
+            startFrameDecodeThread();
+            return reprimeDecoder();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.eError, TAG, "flushAndReprime: Exception was raised!");
+            MCSLogger.printStackTrace(TAG, e);
+            return false;
+        }
+    }
+
+    private boolean resetAndReprime() {
+        MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "resetAndReprime: Resetting the codec");
+        stopFrameDecodeThread();
+        try {
+            m_decoder.reset();
+            clearCodecBuffers();
+            if (m_isAsyncMode) {
+                m_decoder.setCallback(new DecoderCallback(), m_callbackHandler);
+            }
+            configureDecoder(m_width, m_height, m_surface.getSurface());
+            m_decoder.start();
+            startFrameDecodeThread();
+            return reprimeDecoder();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.eError, TAG, "resetAndReprime: Exception was raised!");
+            MCSLogger.printStackTrace(TAG, e);
+            return false;
+        }
+    }
+
+    /**
+     * Resubmits the latest SPS/PPS and key-frame, so the codec can decode the frames that follow
+     * without waiting for the host to send the next key-frame.
+     */
+    private boolean reprimeDecoder() {
+        m_isRecoveryRequested = false;
+        m_waitForKeyFrame = false;
+        m_watchdog.restart(System.currentTimeMillis());
+        boolean result = true;
+        if (m_configFrameBits.getSize() > 0) {
+            result = submitUnit(m_configFrameBits, MediaCodec.BUFFER_FLAG_CODEC_CONFIG);
+        }
+        if (result && m_lastKeyFrame.getSize() > 0) {
+            result = submitUnit(m_lastKeyFrame, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+        }
+        return result && !m_isRecoveryRequested;
+    }
+
+    /**
+     * Forgets the input and output buffers handed out by the codec before a flush, stop or reset.
+     */
+    private void clearCodecBuffers() {
+        if (m_renderScheduler != null) {
+            m_renderScheduler.clear();
+        }
+        m_freeInputSlots.clear();
+        m_pendingInputFrames.clear();
+        m_pendingInputFrameCount.set(0);
+    }
+
+    private void stopFrameDecodeThread() {
+        FrameDecodeThread frameDecodeThread = m_frameDecodeThread;
+        if (frameDecodeThread != null && frameDecodeThread.isAlive()) {
+            frameDecodeThread.interrupt();
+            try {
+                frameDecodeThread.join();
+            } catch (InterruptedException ex) {
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG, "stopFrameDecodeThread: Exception raised while trying to join the decoder thread: ", ex);
+            }
+        }
+        m_frameDecodeThread = null;
+    }
+
+    /**
+     * Restarts the output thread after the codec was reconfigured or recovered. Nothing to do in
+     * asynchronous mode.
+     */
+    private void startFrameDecodeThread() {
+        if (!m_isAsyncMode) {
+            m_inputBuffers = getInputBufferArray(m_decoder);
+            m_frameDecodeThread = new FrameDecodeThread(false);
+            m_frameDecodeThread.start();
+        }
+    }
+
+    /**
+     * Called when a config frame brings a new SPS or PPS. If the resolution of the stream no
+     * longer matches the one the codec is configured for, the codec is reconfigured before the
+     * config frame is submitted.
+     */
+    private void onParameterSetsChanged() {
+        int width = m_parameterSets.getWidth();
+        int height = m_parameterSets.getHeight();
+        MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "New parameter sets: profile %d, level %d, %dx%d",
+                m_parameterSets.getProfileIdc(), m_parameterSets.getLevelIdc(), width, height);
+        if (m_decoder != null && m_decoderStarted && width > 0 && height > 0
+                && (width != m_width || height != m_height)) {
+            reconfigureDecoder(width, height);
+        }
+    }
+
+    /**
+     * Reconfigures the running codec for a new stream resolution. Unlike a full restart, the codec
+     * instance, the candidate selection and the callback thread are kept; only the output thread
+     * is restarted in blocking mode.
+     */
+    private void reconfigureDecoder(int width, int height) {
+        MCSLogger.log(MCSLogger.ELogType.eInfo, TAG, "Stream resolution changed from %dx%d to %dx%d, reconfiguring the codec",
+                m_width, m_height, width, height);
+
+        stopFrameDecodeThread();
+        try {
+            m_decoder.stop();
+            // Buffers of the old configuration are no longer valid
+            clearCodecBuffers();
+
+            configureDecoder(width, height, m_surface.getSurface());
+            m_decoder.start();
+            m_width = width;
+            m_height = height;
+            ++m_numFormatChanges;
+            m_watchdog.restart(System.currentTimeMillis());
+
+            startFrameDecodeThread();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.eError, TAG, "reconfigureDecoder: Exception was raised!");
+            MCSLogger.printStackTrace(TAG, e);
+            notifyDecodingError();
+        }
+    }
+
+    /**
+     * Configures the codec, with the low latency profile if it is enabled. A codec that rejects
+     * the profile is configured again without it.
+     */
+    private void configureDecoder(int width, int height, Surface surface) {
+        m_acceptedLowLatencyKeys = Collections.emptyList();
+        if (m_isLowLatencyProfile) {
+            MediaFormat fmt = createVideoFormat(width, height);
+            LowLatencyProfile.apply(fmt, m_codecName);
+            try {
+                m_decoder.configure(fmt, surface, null, 0);
+                m_acceptedLowLatencyKeys = LowLatencyProfile.getAcceptedKeys(m_decoder, m_codecName);
+                MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "configureDecoder: Accepted low latency keys: %s",
+                        TextUtils.join(", ", m_acceptedLowLatencyKeys));
+                return;
+            } catch (Exception e) {
+                MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "configureDecoder: The codec rejected the low latency profile, configuring without it: ", e);
+                m_decoder.reset();
+                if (m_isAsyncMode) {
+                    m_decoder.setCallback(new DecoderCallback(), m_callbackHandler);
+                }
+            }
+        }
+        m_decoder.configure(createVideoFormat(width, height), surface, null, 0);
+    }
+
+    /**
+     * Creates the format the codec is configured with.
+     */
+    private static MediaFormat createVideoFormat(int width, int height) {
+        MediaFormat fmt;
+        if (VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            fmt = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, width, height);
+        } else {
+            fmt = MediaFormat.createVideoFormat(VIDEO_FORMAT, width, height);
+        }
+
+        CodecInfo codecInfo = WLCompatibilityUtils_Custom.getCodecInfo();
+        if (codecInfo.getInputBufferSize() != null) {
+            fmt.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, codecInfo.getInputBufferSize().intValue());
+        }
+        return fmt;
     }
 
     @Override
@@ -372,19 +1034,190 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
         return m_numKeyFrameInput;
     }
 
+    /**
+     * Return the median time between submitting a frame to the codec and releasing the decoded
+     * frame to the output surface.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Median decode latency in milliseconds, or -1 if no frame was decoded yet
+     */
+    public long getDecodeLatencyP50() {
+        return m_decodeLatency.getPercentileMs(50);
+    }
+
+    /**
+     * Return the 95th percentile of the decode latency.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return 95th percentile decode latency in milliseconds, or -1 if no frame was decoded yet
+     */
+    public long getDecodeLatencyP95() {
+        return m_decodeLatency.getPercentileMs(95);
+    }
+
+    /**
+     * Return the 99th percentile of the decode latency.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return 99th percentile decode latency in milliseconds, or -1 if no frame was decoded yet
+     */
+    public long getDecodeLatencyP99() {
+        return m_decodeLatency.getPercentileMs(99);
+    }
+
+    /**
+     * Return the average number of bytes copied per frame on the way from the SDK to the codec.
+     * A value equal to the average frame size means every frame was copied exactly once. The
+     * re-framing of access units split across buffers and the key frames kept for a recovery add
+     * to the count.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Average copied bytes per frame, or -1 if no frame was received yet
+     */
+    public long getInputBytesCopiedPerFrame() {
+        long frameCount = m_numFrameInput;
+        if (frameCount == 0) {
+            return -1;
+        }
+        return m_numInputBytesCopied.get() / frameCount;
+    }
+
+    /**
+     * Return the low latency keys accepted by the codec.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Comma separated keys, or null if the low latency profile is not used
+     */
+    public String getAcceptedLowLatencyKeys() {
+        if (!m_isLowLatencyProfile) {
+            return null;
+        }
+        return TextUtils.join(", ", m_acceptedLowLatencyKeys);
+    }
+
+    /**
+     * Return the median decode latency of the last session decoded without the low latency
+     * profile, to compare it with the current one.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Median decode latency in milliseconds, or -1 if unknown
+     */
+    public long getBaselineDecodeLatencyP50() {
+        return ms_baselineLatencyP50;
+    }
+
+    /**
+     * Return the number of codec recoveries done by flushing the codec.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Number of flush recoveries in the current session
+     */
+    public long getFlushRecoveryCount() {
+        return m_numFlushRecoveries;
+    }
+
+    /**
+     * Return the number of codec recoveries done by resetting the codec.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Number of reset recoveries in the current session
+     */
+    public long getResetRecoveryCount() {
+        return m_numResetRecoveries;
+    }
 
-    private boolean decodeFrame(DataBuffer frameBits) {
+    /**
+     * Return the number of times the codec was reconfigured because the stream resolution changed.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Number of codec reconfigurations in the current session
+     */
+    public long getFormatChangeCount() {
+        return m_numFormatChanges;
+    }
+
+    /**
+     * Return the time it took to get the codec of the current session running.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Codec startup time in milliseconds, or -1 if no codec was started
+     */
+    public long getCodecStartupTimeMs() {
+        return m_codecStartupTimeMs;
+    }
+
+    /**
+     * Return the time saved by reusing the warm codec instead of creating a new one.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Saved time in milliseconds, or -1 if the codec of the current session was not reused
+     */
+    public long getCodecStartupSavingMs() {
+        long coldStartupTime = ms_coldCodecStartupTimeMs;
+        if (!m_isCodecReused || coldStartupTime < 0) {
+            return -1;
+        }
+        return Math.max(0, coldStartupTime - m_codecStartupTimeMs);
+    }
+
+    /**
+     * Return the number of decoded frames dropped by the output pacing.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Number of dropped frames, or -1 if output pacing is disabled
+     */
+    public long getDroppedFrameCount() {
+        OutputRenderScheduler scheduler = m_renderScheduler;
+        return scheduler != null ? scheduler.getDroppedFrameCount() : -1;
+    }
+
+    /**
+     * Return the number of decoded frames that missed their output frame slot.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return Number of late frames, or -1 if output pacing is disabled
+     */
+    public long getLateFrameCount() {
+        OutputRenderScheduler scheduler = m_renderScheduler;
+        return scheduler != null ? scheduler.getLateFrameCount() : -1;
+    }
+
+    /**
+     * Returns the monotonic time used as presentation timestamp of the submitted frames. The
+     * codec passes it through unchanged, so it identifies the input of each output buffer.
+     */
+    private static long getSubmitTimestampUs() {
+        return System.nanoTime() / 1000;
+    }
+
+
+    private boolean decodeFrame(DataBuffer frameBits, int flags) {
         boolean result = false;
         try {
-            while (!result && m_decoder != null) {
+            // Waits for an input buffer until the codec fails or stalls, the watchdog is checked
+            // on each dequeue timeout
+            while (!result && m_decoder != null && !m_hasDecodingError) {
                 int inputBufferIndex = m_decoder.dequeueInputBuffer(m_dequeInputBufferTimeoutUs);
                 if (inputBufferIndex >= 0) {
-                    ByteBuffer buffer = m_inputBuffers[inputBufferIndex];
-                    int        size   = frameBits.getSize();
-                    buffer.clear();
-                    buffer.put(frameBits.getData(), frameBits.getPos(), size);
-                    m_decoder.queueInputBuffer(inputBufferIndex, 0, size, 0, 0);
+                    queueInputFrame(m_decoder, inputBufferIndex, frameBits, flags);
                     result = true;
+                } else if (isRecoveryDue()) {
+                    MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "decodeFrame: No input buffer, the codec is stalled");
+                    m_isRecoveryRequested = true;
+                    break;
                 }
             }
         } catch(Exception e) {
@@ -393,12 +1226,309 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
 
             // Do not notify of error if we already killed the decoder
             if(m_decoder != null) {
-                m_notification.onDecodingError();
+                onDecodingFailure();
             }
         }
         return result;
     }
 
+    /**
+     * Submits a frame in asynchronous mode. The frame is queued directly if an input buffer is
+     * available, otherwise a copy is kept until {@link DecoderCallback#onInputBufferAvailable}
+     * provides one. This method never blocks the caller.
+     */
+    private boolean decodeFrameAsync(DataBuffer frameBits, int flags) {
+        MediaCodec decoder = m_decoder;
+        if (decoder == null) {
+            return false;
+        }
+
+        boolean isResyncPoint = (flags & (MediaCodec.BUFFER_FLAG_KEY_FRAME | MediaCodec.BUFFER_FLAG_CODEC_CONFIG)) != 0;
+        if (m_waitForKeyFrame) {
+            if (!isResyncPoint) {
+                return true;
+            }
+            m_waitForKeyFrame = false;
+        }
+
+        try {
+            // Fast path: nothing is waiting and there is a free input buffer, submit without a copy
+            boolean queued = false;
+            if (m_pendingInputFrameCount.get() == 0 && m_isFeedingInput.compareAndSet(false, true)) {
+                try {
+                    if (m_pendingInputFrameCount.get() == 0) {
+                        Integer inputBufferIndex = m_freeInputSlots.poll();
+                        if (inputBufferIndex != null) {
+                            queueInputFrame(decoder, inputBufferIndex, frameBits, flags);
+                            queued = true;
+                        }
+                    }
+                } finally {
+                    m_isFeedingInput.set(false);
+                }
+            }
+
+            if (!queued) {
+                if (m_pendingInputFrameCount.get() >= MAX_PENDING_ASYNC_FRAMES) {
+                    int dropped = 0;
+                    while (m_pendingInputFrames.poll() != null) {
+                        m_pendingInputFrameCount.decrementAndGet();
+                        ++dropped;
+                    }
+                    MCSLogger.log(MCSLogger.ELogType.eWarning, TAG,
+                            "decodeFrameAsync: Codec stalled, dropped %d frames. Waiting for a key-frame.", dropped);
+                    if (!isResyncPoint) {
+                        m_waitForKeyFrame = true;
+                        return true;
+                    }
+                }
+                m_pendingInputFrameCount.incrementAndGet();
+                m_pendingInputFrames.offer(copyFrame(frameBits, flags));
+            }
+
+            feedPendingInput(decoder);
+        } catch(Exception e) {
+            MCSLogger.log(MCSLogger.eDebug, TAG, "decodeFrameAsync: Failed with exception!");
+            MCSLogger.printStackTrace(TAG, e);
+
+            // Do not notify of error if we already killed the decoder
+            if(m_decoder != null) {
+                onDecodingFailure();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pairs pending frames with free input buffers. Called from both the SDK thread and the
+     * callback thread; only one of them feeds the codec at a time, and the one leaving re-checks
+     * the queues so that an entry added in the meantime is not missed.
+     */
+    private void feedPendingInput(MediaCodec decoder) {
+        while (m_pendingInputFrameCount.get() > 0 && !m_freeInputSlots.isEmpty()) {
+            if (!m_isFeedingInput.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                while (m_pendingInputFrameCount.get() > 0) {
+                    Integer inputBufferIndex = m_freeInputSlots.poll();
+                    if (inputBufferIndex == null) {
+                        break;
+                    }
+                    PendingFrame frame = m_pendingInputFrames.poll();
+                    if (frame == null) {
+                        m_freeInputSlots.offer(inputBufferIndex);
+                        break;
+                    }
+                    m_pendingInputFrameCount.decrementAndGet();
+                    queueInputFrame(decoder, inputBufferIndex, frame.data, frame.flags);
+                    m_spareFrameCopies.offer(frame);
+                }
+            } finally {
+                m_isFeedingInput.set(false);
+            }
+        }
+    }
+
+    /**
+     * Copies the frame straight from the SDK buffer into the codec input buffer. This is the only
+     * copy made for frames that find a free input buffer.
+     */
+    private void queueInputFrame(MediaCodec decoder, int inputBufferIndex, DataBuffer frameBits, int flags) {
+        ByteBuffer buffer;
+        if (VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            buffer = decoder.getInputBuffer(inputBufferIndex);
+        } else {
+            buffer = m_inputBuffers[inputBufferIndex];
+            buffer.clear();
+        }
+        int size = frameBits.getSize();
+        buffer.put(frameBits.getData(), frameBits.getPos(), size);
+        m_numInputBytesCopied.addAndGet(size);
+        long presentationTimeUs = getSubmitTimestampUs();
+        if ((flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+            m_newestInputTimeUs = presentationTimeUs;
+        }
+        decoder.queueInputBuffer(inputBufferIndex, 0, size, presentationTimeUs, flags);
+    }
+
+    /**
+     * Keeps a copy of a frame that has to wait for an input buffer. The copies are recycled, so
+     * the steady state does not allocate.
+     */
+    private PendingFrame copyFrame(DataBuffer frameBits, int flags) {
+        PendingFrame copy = m_spareFrameCopies.poll();
+        if (copy == null) {
+            copy = new PendingFrame();
+        }
+        copy.data.resize(0);
+        copy.data.reset();
+        copy.data.addBytes(frameBits.getData(), frameBits.getPos(), frameBits.getSize());
+        copy.flags = flags;
+        m_numInputBytesCopied.addAndGet(frameBits.getSize());
+        return copy;
+    }
+
+    /**
+     * Returns the input buffer array on platforms that lack {@link MediaCodec#getInputBuffer(int)},
+     * null otherwise.
+     */
+    @SuppressWarnings("deprecation")
+    private static ByteBuffer[] getInputBufferArray(MediaCodec decoder) {
+        if (VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return null;
+        }
+        return decoder.getInputBuffers();
+    }
+
+    /**
+     * Book-keeping done after a decoded frame has been released to the output surface.
+     *
+     * @param startTimestamp Time (in milliseconds) at which decoding was started
+     * @param presentationTimeUs Presentation timestamp of the released buffer
+     */
+    private void onOutputFrameRendered(long startTimestamp, long presentationTimeUs) {
+        if (presentationTimeUs > 0) {
+            m_decodeLatency.record(getSubmitTimestampUs() - presentationTimeUs);
+        }
+        m_watchdog.onOutput(System.currentTimeMillis());
+        if (m_recoveryLevel != RECOVERY_NONE) {
+            MCSLogger.log(MCSLogger.ELogType.eInfo, TAG, "The codec recovered");
+            m_recoveryLevel = RECOVERY_NONE;
+        }
+        if(!H264_CODEC_CANDIDATE.isWorking) {
+            H264_CODEC_CANDIDATE.isWorking = true;
+            long timeToFirstFrame = System.currentTimeMillis() - startTimestamp;
+            MCSLogger.log(MCSLogger.ELogType.eDebug, TAG,
+                    String.format("Codec produced output in {%s} milliseconds. Chosen as current codec.",
+                            timeToFirstFrame));
+            CodecScoreboard scoreboard = ms_codecScoreboard;
+            if (scoreboard != null) {
+                scoreboard.recordFirstOutput(H264_CODEC_CANDIDATE.name, timeToFirstFrame);
+                scoreboard.saveInBackground();
+            }
+        }
+        if (m_numKeyFrameInput >= KEY_FRAME_DELAY) {
+            m_isVideoOutGenerated = true;
+        }
+    }
+
+    /**
+     * Records the error of the current codec in the scoreboard and notifies the SDK.
+     */
+    private void notifyDecodingError() {
+        m_hasDecodingError = true;
+        CodecScoreboard scoreboard = ms_codecScoreboard;
+        MediaCodecCandidate candidate = H264_CODEC_CANDIDATE;
+        if (scoreboard != null && candidate != null) {
+            scoreboard.recordError(candidate.name);
+            scoreboard.saveInBackground();
+        }
+        m_notification.onDecodingError();
+    }
+
+    /**
+     * Releases the output buffer held back by the {@link OutputRenderScheduler} once it is due.
+     * Only used in asynchronous mode, where it runs on the callback thread.
+     */
+    private final Runnable m_releasePacedOutput = new Runnable() {
+        @Override
+        public void run() {
+            MediaCodec decoder = m_decoder;
+            OutputRenderScheduler scheduler = m_renderScheduler;
+            if (decoder == null || scheduler == null) {
+                return;
+            }
+            try {
+                long now = System.nanoTime();
+                long presentationTimeUs = scheduler.releaseDue(decoder, now);
+                if (presentationTimeUs != OutputRenderScheduler.NOTHING_RELEASED) {
+                    onOutputFrameRendered(m_startTimestamp, presentationTimeUs);
+                }
+                long waitNs = scheduler.getTimeUntilReleaseNs(now);
+                if (waitNs >= 0) {
+                    m_callbackHandler.removeCallbacks(this);
+                    m_callbackHandler.postDelayed(this, (waitNs + 999999) / 1000000);
+                }
+            } catch (Exception e) {
+                MCSLogger.log(MCSLogger.eError, TAG, "Failed to release paced output buffer!");
+                MCSLogger.printStackTrace(TAG, e);
+            }
+        }
+    };
+
+    /**
+     * Asynchronous mode counterpart of the first output check done in {@link FrameDecodeThread}.
+     */
+    private final Runnable m_firstOutputTimeoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            if (!H264_CODEC_CANDIDATE.isWorking && m_decoder != null) {
+                // The codec failed to produce any output in the provided amount of time
+                // so we deduce that it has failed silently -> notify of error and restart
+                // with another codec candidate
+                MCSLogger.log(MCSLogger.ELogType.eError, TAG,
+                        String.format("Codec failed to produce output in {%s} milliseconds. Resetting.",
+                                GENERATE_FIRST_OUTPUT_TIMEOUT));
+                notifyDecodingError();
+            }
+        }
+    };
+
+    /**
+     * Receives the codec events in asynchronous mode. All methods are called on the
+     * FrameDecodeCallbackThread.
+     */
+    private class DecoderCallback extends MediaCodec.Callback {
+
+        @Override
+        public void onInputBufferAvailable(MediaCodec codec, int index) {
+            m_freeInputSlots.offer(index);
+            try {
+                feedPendingInput(codec);
+            } catch (Exception e) {
+                MCSLogger.log(MCSLogger.eError, TAG, "onInputBufferAvailable: Failed to queue frame!");
+                MCSLogger.printStackTrace(TAG, e);
+                if (m_decoder != null) {
+                    onDecodingFailure();
+                }
+            }
+        }
+
+        @Override
+        public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
+            OutputRenderScheduler scheduler = m_renderScheduler;
+            try {
+                if (scheduler != null) {
+                    scheduler.submit(codec, index, info.presentationTimeUs, m_newestInputTimeUs, System.nanoTime());
+                    m_releasePacedOutput.run();
+                    return;
+                }
+                codec.releaseOutputBuffer(index, true);
+            } catch (Exception e) {
+                MCSLogger.log(MCSLogger.eError, TAG, "onOutputBufferAvailable: Failed to release output buffer!");
+                MCSLogger.printStackTrace(TAG, e);
+                return;
+            }
+            onOutputFrameRendered(m_startTimestamp, info.presentationTimeUs);
+        }
+
+        @Override
+        public void onError(MediaCodec codec, MediaCodec.CodecException e) {
+            MCSLogger.log(MCSLogger.eError, TAG, "Failed to decode frame!");
+            MCSLogger.printStackTrace(TAG, e);
+            if (m_decoder != null) {
+                onDecodingFailure();
+            }
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
+            MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "onOutputFormatChanged: " + format);
+        }
+    }
+
     @Override
     public int getType() {
         return WLTypes.FRAME_ENCODING_H264;
@@ -430,34 +1560,49 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
     private class FrameDecodeThread extends Thread {
 
         private long m_startTimestamp; // in milliseconds
-        private long m_generateFirstOutputTimeout = 2500; // in milliseconds
+        private long m_generateFirstOutputTimeout = GENERATE_FIRST_OUTPUT_TIMEOUT; // in milliseconds
+        private final boolean m_notifyStarted;
 
-        public FrameDecodeThread() {
+        /**
+         * @param notifyStarted true to report onDecodingStarted(), false when the thread is only
+         *                      restarted after a codec reconfiguration
+         */
+        public FrameDecodeThread(boolean notifyStarted) {
             setName("FrameDecodeThread");
+            m_notifyStarted = notifyStarted;
         }
 
         @Override
         public void run() {
             MCSLogger.log(MCSLogger.eInfo, TAG, "FrameDecodeThread: START!");
-            if(m_notification != null) {
+            if(m_notifyStarted && m_notification != null) {
                 m_notification.onDecodingStarted();
             }
             m_startTimestamp = System.currentTimeMillis();
             MediaCodec decoder;
             MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+            OutputRenderScheduler scheduler = m_renderScheduler;
             while (!isInterrupted()) {
                 synchronized (FrameDecoder_H264_Custom.this) {
                     decoder = m_decoder;
                 }
                 if (decoder != null) {
                     int outputBufferIndex;
+                    long dequeueTimeoutUs = m_dequeInputBufferTimeoutUs;
+                    if (scheduler != null) {
+                        // Wake up in time to release the frame that is held back
+                        long waitNs = scheduler.getTimeUntilReleaseNs(System.nanoTime());
+                        if (waitNs >= 0) {
+                            dequeueTimeoutUs = Math.min(dequeueTimeoutUs, waitNs / 1000);
+                        }
+                    }
                     try {
-                        outputBufferIndex = decoder.dequeueOutputBuffer(bufferInfo, m_dequeInputBufferTimeoutUs);
+                        outputBufferIndex = decoder.dequeueOutputBuffer(bufferInfo, dequeueTimeoutUs);
                     } catch (Exception e) {
                         MCSLogger.log(MCSLogger.eError, TAG, "Failed to decode frame!");
                         MCSLogger.printStackTrace(e);
                         if(!interrupted()) {
-                            m_notification.onDecodingError();
+                            onDecodingFailure();
                         }
                         break;
                     }
@@ -468,19 +1613,22 @@ public class FrameDecoder_H264_Custom implements IFrameDecoder {
                         MCSLogger.log(MCSLogger.ELogType.eError, TAG,
                                 String.format("Codec failed to produce output in {%s} milliseconds. Resetting.",
                                         m_generateFirstOutputTimeout));
-                        m_notification.onDecodingError();
+                        notifyDecodingError();
                         break;
                     }
-                    if (outputBufferIndex > 0 && !isInterrupted()) {
-                        decoder.releaseOutputBuffer(outputBufferIndex, true);
-                        if(!H264_CODEC_CANDIDATE.isWorking) {
-                            H264_CODEC_CANDIDATE.isWorking = true;
-                            MCSLogger.log(MCSLogger.ELogType.eDebug, TAG,
-                                    String.format("Codec produced output in {%s} milliseconds. Chosen as current codec.",
-                                            System.currentTimeMillis() - m_startTimestamp));
+                    if (outputBufferIndex >= 0 && !isInterrupted()) {
+                        if (scheduler != null) {
+                            scheduler.submit(decoder, outputBufferIndex, bufferInfo.presentationTimeUs, m_newestInputTimeUs,
+                                    System.nanoTime());
+                        } else {
+                            decoder.releaseOutputBuffer(outputBufferIndex, true);
+                            onOutputFrameRendered(m_startTimestamp, bufferInfo.presentationTimeUs);
                         }
-                        if (m_numKeyFrameInput >= KEY_FRAME_DELAY) {
-                            m_isVideoOutGenerated = true;
+                    }
+                    if (scheduler != null && !isInterrupted()) {
+                        long presentationTimeUs = scheduler.releaseDue(decoder, System.nanoTime());
+                        if (presentationTimeUs != OutputRenderScheduler.NOTHING_RELEASED) {
+                            onOutputFrameRendered(m_startTimestamp, presentationTimeUs);
                         }
                     }
                 }
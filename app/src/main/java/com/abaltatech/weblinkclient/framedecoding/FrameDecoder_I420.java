@@ -29,24 +29,63 @@
 package com.abaltatech.weblinkclient.framedecoding;
 
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Rect;
 import android.view.Surface;
 
 import com.abaltatech.weblink.core.DataBuffer;
 import com.abaltatech.weblink.core.WLTypes;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Decodes video stream using I420+LZ4
  */
 public class FrameDecoder_I420 implements IFrameDecoder {
     
+    /** Frames are rendered at their encoded size and scaled by the consumer of the surface */
+    public static final int SCALING_DISABLED        = -1;
+    /** Frames are scaled to the surface by the decoder, nearest neighbour */
+    public static final int SCALING_FILTER_NONE     = 0;
+    /** Frames are scaled to the surface by the decoder, bilinear interpolation */
+    public static final int SCALING_FILTER_BILINEAR = 1;
+    /** Frames are scaled to the surface by the decoder, box filter for the best downscaling */
+    public static final int SCALING_FILTER_BOX      = 2;
+
     private static final String TAG = "FrameDecoder_I420";
 
+    // Frames from 640x480 up are converted by multiple threads by default
+    private static final int DEFAULT_STRIPED_CONVERSION_MIN_PIXELS = 640 * 480;
+
+    /**
+     * Minimum number of pixels of a frame converted by multiple threads, 0 when disabled.
+     */
+    private static volatile int ms_stripedConversionMinPixels = DEFAULT_STRIPED_CONVERSION_MIN_PIXELS;
+
+    /**
+     * When set, the checksum of the frames that carry one is verified.
+     */
+    private static volatile boolean ms_checksumVerificationEnabled = true;
+
+    /**
+     * Filter of the native scaling to the surface size, SCALING_DISABLED when disabled.
+     */
+    private static volatile int ms_scalingFilter = SCALING_DISABLED;
 
-    private Surface m_surface;
-    private Bitmap  m_frameBuffer;
+    // Results of decodeFrame(), see DecoderContext.h
+    private static final int FRAME_DECODED = 0;
+    private static final int FRAME_CORRUPT = 1;
+
+
+    // Built from the last decoded frame on demand, frames are rendered without them
+    private final BitmapSwapChain m_screenshots = new BitmapSwapChain();
+    private long    m_numDecodedFrames = 0;
+    // Value of m_numDecodedFrames when the front screenshot was built
+    private long    m_screenshotFrame = -1;
     private int     m_frameIndex;
+    // Native buffers reused across the frames of a session
+    private long    m_nativeContext = 0;
+    // Set after a dropped frame until the next decoded one, so the error is reported once
+    private boolean m_isResyncPending = false;
+    private final AtomicLong m_numCorruptFrames = new AtomicLong(0);
     private IFrameDecoderNotification m_notification;
     
     static {
@@ -64,25 +103,36 @@ public class FrameDecoder_I420 implements IFrameDecoder {
         boolean result = false;
         
         if (surface != null && width > 0 && height > 0) {
-            m_frameIndex   = 0;   
-            m_surface      = surface.getSurface();
-            surface.getSurfaceTexture().setDefaultBufferSize(width, height);
+            m_frameIndex   = 0;
+            if (m_nativeContext == 0) {
+                m_nativeContext = createContext(ms_stripedConversionMinPixels);
+            }
+            int scalingFilter = ms_scalingFilter;
+            // When scaling, the surface keeps the size of the view, which is the output size
+            if (scalingFilter == SCALING_DISABLED && surface.getSurfaceTexture() != null) {
+                surface.getSurfaceTexture().setDefaultBufferSize(width, height);
+            }
+            setSurface(m_nativeContext, surface.getSurface());
+            setScaling(m_nativeContext, scalingFilter);
+            setFrameLimits(m_nativeContext, width, height, ms_checksumVerificationEnabled);
+            m_isResyncPending = false;
             m_notification = notification;
             notification.onDecodingStarted();
             result = true;
+        } else {
+            notification.onDecodingStartFailed();
         }
-        notification.onDecodingStartFailed();
         return result;
     }
 
     @Override
     synchronized public void stopDecoding() {
-        m_surface          = null; 
-        if (m_frameBuffer != null) {
-            m_frameBuffer.recycle();
-            m_frameBuffer = null;
+        if (m_nativeContext != 0) {
+            releaseContext(m_nativeContext);
+            m_nativeContext = 0;
             m_notification.onDecodingStopped();
         }
+        m_screenshots.clear();
         reset();
     }
     
@@ -92,20 +142,24 @@ public class FrameDecoder_I420 implements IFrameDecoder {
     }
     
     @Override
-    public boolean decodeImage(DataBuffer frameBits) {
-        Bitmap frame = decodeFrame(m_frameBuffer, frameBits.getData(), frameBits.getPos(), frameBits.getSize());
-        if (frame != null) {
-            m_frameBuffer = frame;
+    synchronized public boolean decodeImage(DataBuffer frameBits) {
+        if (m_nativeContext == 0) {
+            return false;
+        }
+        int status = decodeFrame(m_nativeContext, frameBits.getData(), frameBits.getPos(), frameBits.getSize());
+        if (status == FRAME_DECODED) {
             m_frameIndex++;
-            Canvas canvas = m_surface.lockCanvas(null);
-            if (canvas != null) {
-                canvas.drawBitmap(m_frameBuffer, 
-                        new Rect(0, 0, m_frameBuffer.getWidth() - 1, m_frameBuffer.getHeight() - 1), 
-                        new Rect(0, 0, canvas.getWidth() - 1, canvas.getHeight() - 1), null);
-                m_surface.unlockCanvasAndPost(canvas);
-            }
+            m_numDecodedFrames++;
+            m_isResyncPending = false;
         } else {
-            m_notification.onDecodingError();
+            if (status == FRAME_CORRUPT) {
+                m_numCorruptFrames.incrementAndGet();
+            }
+            // Deltas are dropped until the next key frame, the error asks the host for one
+            if (!m_isResyncPending) {
+                m_isResyncPending = true;
+                m_notification.onDecodingError();
+            }
         }
         return true;
     }
@@ -115,13 +169,25 @@ public class FrameDecoder_I420 implements IFrameDecoder {
         return WLTypes.FRAME_ENCODING_I420;    
     }
     
+    /**
+     * Returns the last decoded frame.
+     * <p></p>
+     * The bitmap is not modified until two newer screenshots were taken and is never recycled
+     * by the decoder. Use {@link #acquireScreenshot()} to hold a frame for longer.
+     */
     @Override
     synchronized public Bitmap getScreenshot() {
-        Bitmap result = null;
-        if (m_frameIndex > 0) {
-            return m_frameBuffer;
-        }
-        return result;
+        return updateScreenshot() ? m_screenshots.getFront() : null;
+    }
+
+    /**
+     * Acquires the last decoded frame. The frame is not modified until the returned
+     * screenshot is released.
+     *
+     * @return The screenshot, or null if no frame was decoded
+     */
+    synchronized public Screenshot acquireScreenshot() {
+        return updateScreenshot() ? m_screenshots.acquireFront() : null;
     }
     
     @Override
@@ -146,11 +212,101 @@ public class FrameDecoder_I420 implements IFrameDecoder {
     public static boolean isSupported() {
         return true;
     }
+
+    /**
+     * Return the number of frames dropped because they were truncated or corrupt.
+     * <p></p>
+     * Used for debugging purposes.
+     * <p></p>
+     * @return The number of corrupt frames
+     */
+    public long getCorruptFrameCount() {
+        return m_numCorruptFrames.get();
+    }
+
+    /**
+     * Enables the verification of the frame checksums for decoders started after this call.
+     * <p></p>
+     * Hosts may append an Adler-32 checksum of the LZ4 data to a frame and flag it in the frame
+     * header. Frames without a checksum are always accepted. The header and the LZ4 data are
+     * validated regardless of this setting.
+     *
+     * @param enabled true to drop the frames whose checksum does not match
+     */
+    public static void setChecksumVerificationEnabled(boolean enabled) {
+        ms_checksumVerificationEnabled = enabled;
+    }
+
+    /**
+     * Selects the native scaling of the frames for decoders started after this call.
+     * <p></p>
+     * By default the frames are rendered at their encoded size and the consumer of the surface
+     * scales them to the view. With a scaling filter the decoder scales the Y, U and V planes to
+     * the size of the surface and converts them at that size, so that e.g. a 1280x720 stream
+     * on an 800x480 panel is converted and composited at 800x480. Screenshots keep the encoded
+     * size.
+     *
+     * @param filter SCALING_DISABLED, SCALING_FILTER_NONE, SCALING_FILTER_BILINEAR or
+     *               SCALING_FILTER_BOX
+     */
+    public static void setScalingFilter(int filter) {
+        ms_scalingFilter = Math.max(SCALING_DISABLED, Math.min(SCALING_FILTER_BOX, filter));
+    }
+
+    /**
+     * Sets the frame size from which the colour conversion is split into horizontal stripes.
+     * <p></p>
+     * The stripes are converted by a pool of native threads sized to the big cores of the
+     * device, together with the decoding thread. Smaller frames are converted on the decoding
+     * thread only, where the synchronisation would cost more than it saves. Applies to the
+     * decoding sessions started after this call.
+     *
+     * @param minPixels Minimum number of pixels (width * height) of a striped frame, or 0 to
+     *                  always convert on the decoding thread
+     */
+    public static void setStripedConversionMinPixels(int minPixels) {
+        ms_stripedConversionMinPixels = Math.max(0, minPixels);
+    }
     
-    private static native Bitmap decodeFrame(
-       Bitmap   frameBuffer, 
-       byte[]   encFrame, 
-       int      startPos, 
+    /**
+     * Builds a new front screenshot if a frame was decoded since the last one.
+     *
+     * @return true if there is a screenshot to return
+     */
+    private boolean updateScreenshot() {
+        if (m_frameIndex == 0 || m_nativeContext == 0) {
+            return false;
+        }
+        if (m_screenshotFrame != m_numDecodedFrames || !m_screenshots.hasFront()) {
+            int back = m_screenshots.findBackBuffer();
+            // When all buffers are in use, the current front is returned instead
+            if (back >= 0) {
+                Bitmap bitmap = createScreenshot(m_nativeContext, m_screenshots.getBitmap(back));
+                if (bitmap != null) {
+                    m_screenshots.present(back, bitmap);
+                    m_screenshotFrame = m_numDecodedFrames;
+                }
+            }
+        }
+        return m_screenshots.hasFront();
+    }
+
+    private static native long createContext(int minStripedPixels);
+
+    private static native void releaseContext(long context);
+
+    private static native void setSurface(long context, Surface surface);
+
+    private static native void setScaling(long context, int filterMode);
+
+    private static native void setFrameLimits(long context, int maxWidth, int maxHeight, boolean verifyChecksum);
+
+    private static native int decodeFrame(
+       long     context,
+       byte[]   encFrame,
+       int      startPos,
        int      size
        );
+
+    private static native Bitmap createScreenshot(long context, Bitmap frameBuffer);
 };
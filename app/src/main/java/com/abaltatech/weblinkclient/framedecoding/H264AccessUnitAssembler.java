@@ -0,0 +1,419 @@
+/****************************************************************************
+ *
+ * @file H264AccessUnitAssembler.java
+ * @brief
+ *
+ * Contains the H264AccessUnitAssembler class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.media.MediaCodec;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+import com.abaltatech.weblink.core.DataBuffer;
+
+/**
+ * Re-frames an Annex-B H264 stream into units the codec can consume.
+ * <p></p>
+ * The incoming buffers are scanned for 00 00 01 start codes and split into NAL units. SPS and PPS
+ * NAL units are collected into a separate unit flagged with
+ * {@link MediaCodec#BUFFER_FLAG_CODEC_CONFIG}. All other NAL units are grouped into access units
+ * using the first-slice detection of ITU-T H.264, 7.4.1.2.3, and access units with an IDR slice are
+ * flagged with {@link MediaCodec#BUFFER_FLAG_KEY_FRAME}. A buffer that carries SPS+PPS+IDR
+ * therefore produces a config unit followed by a key frame.
+ * <p></p>
+ * As long as the buffers are frame aligned, an access unit is emitted at the end of the buffer
+ * that completes it, so no latency is added. When a buffer that does not start with a start code
+ * is seen, the host splits NAL units across buffers. From then on, access units are emitted only
+ * when the first NAL unit of the next one arrives.
+ * <p></p>
+ * In that frame aligned mode, an access unit that lies in a single buffer is emitted as a view of
+ * that buffer, so the frame is only copied once, into the codec. Config units and access units
+ * that span buffers are assembled in scratch buffers that only grow, so the steady state does not
+ * allocate. The class is not thread-safe.
+ */
+class H264AccessUnitAssembler {
+
+    private static final String TAG = "H264AccessUnitAssembler";
+
+    private static final byte[] START_CODE = { 0, 0, 0, 1 };
+
+    private static final int NAL_TYPE_MASK = 0x1F;
+    private static final int NAL_SLICE = 1;
+    private static final int NAL_IDR_SLICE = 5;
+    private static final int NAL_SEI = 6;
+    private static final int NAL_AUD = 9;
+    private static final int NAL_FILLER = 12;
+
+    /**
+     * Receives the assembled units.
+     */
+    interface Listener {
+        /**
+         * @param unit  Annex-B formatted unit, only valid during the call
+         * @param flags {@link MediaCodec} buffer flags of the unit
+         * @return false if the unit could not be decoded
+         */
+        boolean onUnit(DataBuffer unit, int flags);
+    }
+
+    /**
+     * Grow-only byte array exposed as a {@link DataBuffer} without copying.
+     */
+    private static class ScratchBuffer {
+        private byte[] m_data = new byte[64 * 1024];
+        private int m_size = 0;
+        private DataBuffer m_view = new DataBuffer(m_data, 0, m_data.length);
+
+        void append(byte[] data, int offset, int size) {
+            if (m_size + size > m_data.length) {
+                byte[] newData = new byte[Math.max(m_data.length * 2, m_size + size)];
+                System.arraycopy(m_data, 0, newData, 0, m_size);
+                m_data = newData;
+                m_view = new DataBuffer(m_data, 0, m_data.length);
+            }
+            System.arraycopy(data, offset, m_data, m_size, size);
+            m_size += size;
+        }
+
+        DataBuffer asDataBuffer() {
+            m_view.reset();
+            m_view.resize(m_size);
+            return m_view;
+        }
+
+        int getSize() {
+            return m_size;
+        }
+
+        void clear() {
+            m_size = 0;
+        }
+
+        void trimTrailingZeros() {
+            while (m_size > 0 && m_data[m_size - 1] == 0) {
+                --m_size;
+            }
+        }
+    }
+
+    /**
+     * {@link DataBuffer} that can be pointed at a range of another array without allocating.
+     */
+    private static class DataBufferView extends DataBuffer {
+        void set(byte[] data, int pos, int size) {
+            m_data = data;
+            m_initialPos = pos;
+            m_startPos = pos;
+            m_endPos = pos + size;
+            m_capacity = size;
+        }
+    }
+
+    private final Listener m_listener;
+    private final ScratchBuffer m_config = new ScratchBuffer();
+    private final ScratchBuffer m_accessUnit = new ScratchBuffer();
+    private boolean m_hasVcl = false;
+    private boolean m_hasIdr = false;
+    // Where the last NAL unit went, so that its continuation in the next buffer can follow it
+    private ScratchBuffer m_lastNalTarget = null;
+    private boolean m_isFrameAligned = true;
+    // Number of zero bytes the data pushed so far ends with, the start of a split start code
+    private int m_numTrailingZeros = 0;
+    private long m_numDroppedFragments = 0;
+    // Number of bytes copied into the scratch buffers
+    private long m_numBytesCopied = 0;
+
+    // The pending access unit as a range of the buffer being pushed, while it has not been copied
+    // to m_accessUnit (m_viewData is null otherwise)
+    private byte[] m_viewData = null;
+    private int m_bufferStart = 0;
+    private int m_viewStart = 0;
+    private int m_viewEnd = 0;
+    private final DataBufferView m_view = new DataBufferView();
+
+    H264AccessUnitAssembler(Listener listener) {
+        m_listener = listener;
+    }
+
+    /**
+     * Scans a buffer received from the SDK and emits the units it completes.
+     *
+     * @param frameBits Annex-B data
+     * @return false if the listener failed to decode any of the emitted units
+     */
+    boolean push(DataBuffer frameBits) {
+        byte[] data = frameBits.getData();
+        int pos = frameBits.getPos();
+        int end = pos + frameBits.getSize();
+        boolean result = true;
+        m_bufferStart = pos;
+
+        int nalStart = findNalStart(data, pos, end);
+        int leadingEnd = nalStart < 0 ? end : nalStart - 3;
+        int splitNalStart = findSplitNalStart(data, pos, end);
+        if (splitNalStart >= 0) {
+            nalStart = splitNalStart;
+            leadingEnd = pos;
+        }
+        if (leadingEnd > pos && !isAllZero(data, pos, leadingEnd)) {
+            // The buffer continues the last NAL unit of the previous one
+            if (m_lastNalTarget != null) {
+                int fragmentEnd = leadingEnd;
+                if (nalStart >= 0) {
+                    // Trailing zero bytes belong to the next (4-byte) start code
+                    while (data[fragmentEnd - 1] == 0) {
+                        --fragmentEnd;
+                    }
+                }
+                m_lastNalTarget.append(data, pos, fragmentEnd - pos);
+                m_numBytesCopied += fragmentEnd - pos;
+            } else {
+                ++m_numDroppedFragments;
+            }
+            if (m_isFrameAligned) {
+                MCSLogger.log(MCSLogger.ELogType.eInfo, TAG, "NAL units are split across buffers, emitting access units on the next access unit boundary");
+                m_isFrameAligned = false;
+            }
+        } else if (nalStart >= 0 && m_lastNalTarget != null) {
+            // The last NAL unit ended with the previous buffer, which may also hold the first
+            // zero bytes of the start code
+            m_lastNalTarget.trimTrailingZeros();
+        }
+
+        while (nalStart >= 0) {
+            int nextNalStart = findNalStart(data, nalStart, end);
+            int nalEnd = nextNalStart < 0 ? end : nextNalStart - 3;
+            if (nextNalStart >= 0) {
+                // Trailing zero bytes belong to the next (4-byte) start code
+                while (nalEnd > nalStart && data[nalEnd - 1] == 0) {
+                    --nalEnd;
+                }
+            }
+            if (nalEnd > nalStart) {
+                result &= addNal(data, nalStart, nalEnd - nalStart);
+            }
+            nalStart = nextNalStart;
+        }
+
+        if (m_isFrameAligned) {
+            if (m_hasVcl) {
+                result &= emitAccessUnit();
+            } else if (m_config.getSize() > 0) {
+                result &= emitConfig();
+            }
+        }
+        // The buffer is only valid during the call
+        copyView();
+
+        int numZeros = 0;
+        while (numZeros < end - pos && data[end - 1 - numZeros] == 0) {
+            ++numZeros;
+        }
+        m_numTrailingZeros = numZeros == end - pos ? m_numTrailingZeros + numZeros : numZeros;
+        return result;
+    }
+
+    /**
+     * Drops everything that has not been emitted yet. The next buffers are assumed to be frame
+     * aligned again, e.g. from a new host.
+     */
+    void clear() {
+        m_config.clear();
+        m_accessUnit.clear();
+        m_hasVcl = false;
+        m_hasIdr = false;
+        m_lastNalTarget = null;
+        m_isFrameAligned = true;
+        m_numTrailingZeros = 0;
+        m_viewData = null;
+    }
+
+    /**
+     * @return Number of NAL unit fragments dropped because the unit they belong to had already
+     * been emitted
+     */
+    long getDroppedFragmentCount() {
+        return m_numDroppedFragments;
+    }
+
+    /**
+     * @return Number of bytes copied to assemble the units, start codes included
+     */
+    long getCopiedByteCount() {
+        return m_numBytesCopied;
+    }
+
+    private boolean addNal(byte[] data, int offset, int size) {
+        boolean result = true;
+        int nalType = data[offset] & NAL_TYPE_MASK;
+
+        if (nalType == H264Utils.SPS_FRAME || nalType == H264Utils.PPS_FRAME) {
+            if (m_hasVcl) {
+                result = emitAccessUnit();
+            }
+            append(m_config, data, offset, size);
+        } else if (nalType >= NAL_SLICE && nalType <= NAL_IDR_SLICE) {
+            // first_mb_in_slice is ue(v) coded, so it is 0 exactly when the first bit is set
+            boolean isFirstSlice = size < 2 || (data[offset + 1] & 0x80) != 0;
+            if (m_hasVcl && isFirstSlice) {
+                result = emitAccessUnit();
+            }
+            if (m_config.getSize() > 0) {
+                result &= emitConfig();
+            }
+            appendToAccessUnit(data, offset, size);
+            m_hasVcl = true;
+            m_hasIdr |= nalType == NAL_IDR_SLICE;
+        } else if (nalType == NAL_FILLER) {
+            m_lastNalTarget = null;
+        } else {
+            if (m_hasVcl && (nalType == NAL_SEI || nalType == NAL_AUD || (nalType >= 14 && nalType <= 18))) {
+                result = emitAccessUnit();
+            }
+            appendToAccessUnit(data, offset, size);
+        }
+        return result;
+    }
+
+    private void append(ScratchBuffer target, byte[] data, int offset, int size) {
+        target.append(START_CODE, 0, START_CODE.length);
+        target.append(data, offset, size);
+        m_numBytesCopied += START_CODE.length + size;
+        m_lastNalTarget = target;
+    }
+
+    /**
+     * Adds a NAL unit to the pending access unit. In frame aligned mode, the NAL units that follow
+     * each other in the buffer only extend the view of the buffer, together with the start codes
+     * between them.
+     */
+    private void appendToAccessUnit(byte[] data, int offset, int size) {
+        if (m_isFrameAligned && m_accessUnit.getSize() == 0) {
+            if (m_viewData == null) {
+                m_viewData = data;
+                m_viewStart = offset - 3;
+                if (m_viewStart > m_bufferStart && data[m_viewStart - 1] == 0) {
+                    --m_viewStart; // Keep a 4-byte start code
+                }
+                m_viewEnd = offset + size;
+                m_lastNalTarget = m_accessUnit;
+                return;
+            }
+            if (m_viewData == data && isStartCode(data, m_viewEnd, offset)) {
+                m_viewEnd = offset + size;
+                m_lastNalTarget = m_accessUnit;
+                return;
+            }
+            // Another NAL unit lies in between, the access unit has to be assembled
+            copyView();
+        }
+        append(m_accessUnit, data, offset, size);
+    }
+
+    /**
+     * Copies the viewed access unit into m_accessUnit, if any.
+     */
+    private void copyView() {
+        if (m_viewData != null) {
+            m_accessUnit.append(m_viewData, m_viewStart, m_viewEnd - m_viewStart);
+            m_numBytesCopied += m_viewEnd - m_viewStart;
+            m_viewData = null;
+        }
+    }
+
+    private boolean emitAccessUnit() {
+        int flags = m_hasIdr ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+        DataBuffer unit;
+        if (m_viewData != null) {
+            m_view.set(m_viewData, m_viewStart, m_viewEnd - m_viewStart);
+            unit = m_view;
+            m_viewData = null;
+        } else {
+            unit = m_accessUnit.asDataBuffer();
+        }
+        boolean result = m_listener.onUnit(unit, flags);
+        m_accessUnit.clear();
+        m_hasVcl = false;
+        m_hasIdr = false;
+        if (m_lastNalTarget == m_accessUnit) {
+            m_lastNalTarget = null;
+        }
+        return result;
+    }
+
+    private boolean emitConfig() {
+        boolean result = m_listener.onUnit(m_config.asDataBuffer(), MediaCodec.BUFFER_FLAG_CODEC_CONFIG);
+        m_config.clear();
+        if (m_lastNalTarget == m_config) {
+            m_lastNalTarget = null;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position right after the next 00 00 01 start code, or -1 if there is none.
+     */
+    static int findNalStart(byte[] data, int from, int end) {
+        for (int i = from; i + 2 < end; ++i) {
+            if ((data[i + 2] & 0xFF) > 1) {
+                // Neither of the three bytes can end a start code
+                i += 2;
+            } else if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position right after a start code that begins in the previous buffer and ends
+     * at the start of this one, or -1 if there is none.
+     */
+    private int findSplitNalStart(byte[] data, int pos, int end) {
+        if (pos < end && data[pos] == 1 && m_numTrailingZeros >= 2) {
+            return pos + 1;
+        }
+        if (pos + 1 < end && data[pos] == 0 && data[pos + 1] == 1 && m_numTrailingZeros >= 1) {
+            return pos + 2;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the range only holds a start code, zero bytes followed by a 01 byte.
+     */
+    private static boolean isStartCode(byte[] data, int from, int end) {
+        return end - from >= 3 && data[end - 1] == 1 && isAllZero(data, from, end - 1);
+    }
+
+    private static boolean isAllZero(byte[] data, int from, int end) {
+        for (int i = from; i < end; ++i) {
+            if (data[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,376 @@
+/****************************************************************************
+ *
+ * @file H264ParameterSets.java
+ * @brief
+ *
+ * Contains the H264ParameterSets class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+import com.abaltatech.weblink.core.DataBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest H264 sequence and picture parameter sets (SPS/PPS) of the stream.
+ * <p></p>
+ * Config frames are scanned for SPS and PPS NAL units. Identical parameter sets are ignored, so
+ * the stored configuration does not grow over a long session. The SPS is parsed to get the
+ * profile, level and the cropped picture size of the stream, which lets the decoder detect
+ * resolution changes.
+ */
+class H264ParameterSets {
+
+    private static final String TAG = "H264ParameterSets";
+
+    private static final byte[] START_CODE = { 0, 0, 0, 1 };
+
+    private static final int NAL_TYPE_MASK = 0x1F;
+
+    private byte[] m_sps = new byte[64];
+    private int m_spsSize = 0;
+    private byte[] m_pps = new byte[64];
+    private int m_ppsSize = 0;
+
+    private int m_profileIdc = -1;
+    private int m_levelIdc = -1;
+    private int m_width = -1;
+    private int m_height = -1;
+
+    private final BitReader m_reader = new BitReader();
+
+    /**
+     * Extracts the SPS and PPS from a config frame.
+     *
+     * @param frameBits Annex-B formatted frame
+     * @return true if the SPS or the PPS differ from the stored ones, false otherwise
+     */
+    boolean update(DataBuffer frameBits) {
+        byte[] data = frameBits.getData();
+        int end = frameBits.getPos() + frameBits.getSize();
+        boolean changed = false;
+
+        int nalStart = H264AccessUnitAssembler.findNalStart(data, frameBits.getPos(), end);
+        while (nalStart >= 0 && nalStart < end) {
+            int nextNalStart = H264AccessUnitAssembler.findNalStart(data, nalStart, end);
+            int nalEnd = nextNalStart < 0 ? end : nextNalStart - 3;
+            // Trailing zero bytes belong to the next (4-byte) start code
+            while (nalEnd > nalStart && data[nalEnd - 1] == 0) {
+                --nalEnd;
+            }
+            int nalSize = nalEnd - nalStart;
+            if (nalSize > 0) {
+                int nalType = data[nalStart] & NAL_TYPE_MASK;
+                if (nalType == H264Utils.SPS_FRAME) {
+                    if (!isSame(m_sps, m_spsSize, data, nalStart, nalSize)) {
+                        m_sps = store(m_sps, data, nalStart, nalSize);
+                        m_spsSize = nalSize;
+                        if (!parseSps(data, nalStart, nalSize)) {
+                            MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Failed to parse the SPS");
+                        }
+                        changed = true;
+                    }
+                } else if (nalType == H264Utils.PPS_FRAME) {
+                    if (!isSame(m_pps, m_ppsSize, data, nalStart, nalSize)) {
+                        m_pps = store(m_pps, data, nalStart, nalSize);
+                        m_ppsSize = nalSize;
+                        changed = true;
+                    }
+                }
+            }
+            nalStart = nextNalStart;
+        }
+        return changed;
+    }
+
+    /**
+     * Replaces the contents of the buffer with the stored SPS and PPS in Annex-B format.
+     *
+     * @param out The output buffer
+     */
+    void writeTo(DataBuffer out) {
+        out.resize(0);
+        out.reset();
+        if (m_spsSize > 0) {
+            out.addBytes(START_CODE, 0, START_CODE.length);
+            out.addBytes(m_sps, 0, m_spsSize);
+        }
+        if (m_ppsSize > 0) {
+            out.addBytes(START_CODE, 0, START_CODE.length);
+            out.addBytes(m_pps, 0, m_ppsSize);
+        }
+    }
+
+    /**
+     * Forgets the stored parameter sets.
+     */
+    void clear() {
+        m_spsSize = 0;
+        m_ppsSize = 0;
+        m_profileIdc = -1;
+        m_levelIdc = -1;
+        m_width = -1;
+        m_height = -1;
+    }
+
+    /**
+     * @return The profile_idc of the current SPS, or -1 if unknown
+     */
+    int getProfileIdc() {
+        return m_profileIdc;
+    }
+
+    /**
+     * @return The level_idc of the current SPS, or -1 if unknown
+     */
+    int getLevelIdc() {
+        return m_levelIdc;
+    }
+
+    /**
+     * @return The cropped picture width of the current SPS, or -1 if unknown
+     */
+    int getWidth() {
+        return m_width;
+    }
+
+    /**
+     * @return The cropped picture height of the current SPS, or -1 if unknown
+     */
+    int getHeight() {
+        return m_height;
+    }
+
+    private static boolean isSame(byte[] stored, int storedSize, byte[] data, int offset, int size) {
+        if (storedSize != size) {
+            return false;
+        }
+        for (int i = 0; i < size; ++i) {
+            if (stored[i] != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] store(byte[] target, byte[] data, int offset, int size) {
+        if (target.length < size) {
+            target = Arrays.copyOf(target, size);
+        }
+        System.arraycopy(data, offset, target, 0, size);
+        return target;
+    }
+
+    /**
+     * Parses the fields of the SPS up to the frame cropping (ITU-T H.264, 7.3.2.1.1).
+     */
+    private boolean parseSps(byte[] data, int offset, int size) {
+        BitReader reader = m_reader;
+        reader.reset(data, offset + 1, offset + size); // Skip the NAL header
+
+        int profileIdc = reader.readBits(8);
+        reader.readBits(8); // constraint_set flags and reserved_zero_2bits
+        int levelIdc = reader.readBits(8);
+        reader.readUE(); // seq_parameter_set_id
+
+        int chromaFormatIdc = 1;
+        boolean separateColourPlane = false;
+        if (profileIdc == 100 || profileIdc == 110 || profileIdc == 122 || profileIdc == 244
+                || profileIdc == 44 || profileIdc == 83 || profileIdc == 86 || profileIdc == 118
+                || profileIdc == 128 || profileIdc == 138 || profileIdc == 139 || profileIdc == 134
+                || profileIdc == 135) {
+            chromaFormatIdc = reader.readUE();
+            if (chromaFormatIdc == 3) {
+                separateColourPlane = reader.readBit() == 1;
+            }
+            reader.readUE(); // bit_depth_luma_minus8
+            reader.readUE(); // bit_depth_chroma_minus8
+            reader.readBit(); // qpprime_y_zero_transform_bypass_flag
+            if (reader.readBit() == 1) { // seq_scaling_matrix_present_flag
+                int count = chromaFormatIdc != 3 ? 8 : 12;
+                for (int i = 0; i < count; ++i) {
+                    if (reader.readBit() == 1) {
+                        skipScalingList(reader, i < 6 ? 16 : 64);
+                    }
+                }
+            }
+        }
+
+        reader.readUE(); // log2_max_frame_num_minus4
+        int picOrderCntType = reader.readUE();
+        if (picOrderCntType == 0) {
+            reader.readUE(); // log2_max_pic_order_cnt_lsb_minus4
+        } else if (picOrderCntType == 1) {
+            reader.readBit(); // delta_pic_order_always_zero_flag
+            reader.readSE(); // offset_for_non_ref_pic
+            reader.readSE(); // offset_for_top_to_bottom_field
+            int numRefFramesInCycle = reader.readUE();
+            for (int i = 0; i < numRefFramesInCycle && !reader.isOverrun(); ++i) {
+                reader.readSE();
+            }
+        }
+        reader.readUE(); // max_num_ref_frames
+        reader.readBit(); // gaps_in_frame_num_value_allowed_flag
+
+        int picWidthInMbs = reader.readUE() + 1;
+        int picHeightInMapUnits = reader.readUE() + 1;
+        int frameMbsOnly = reader.readBit();
+        if (frameMbsOnly == 0) {
+            reader.readBit(); // mb_adaptive_frame_field_flag
+        }
+        reader.readBit(); // direct_8x8_inference_flag
+
+        int cropLeft = 0, cropRight = 0, cropTop = 0, cropBottom = 0;
+        if (reader.readBit() == 1) { // frame_cropping_flag
+            cropLeft = reader.readUE();
+            cropRight = reader.readUE();
+            cropTop = reader.readUE();
+            cropBottom = reader.readUE();
+        }
+
+        if (reader.isOverrun()) {
+            return false;
+        }
+
+        int cropUnitX;
+        int cropUnitY;
+        if (chromaFormatIdc == 0 || separateColourPlane) {
+            cropUnitX = 1;
+            cropUnitY = 2 - frameMbsOnly;
+        } else {
+            int subWidthC = chromaFormatIdc == 3 ? 1 : 2;
+            int subHeightC = chromaFormatIdc == 1 ? 2 : 1;
+            cropUnitX = subWidthC;
+            cropUnitY = subHeightC * (2 - frameMbsOnly);
+        }
+
+        m_profileIdc = profileIdc;
+        m_levelIdc = levelIdc;
+        m_width = picWidthInMbs * 16 - cropUnitX * (cropLeft + cropRight);
+        m_height = (2 - frameMbsOnly) * picHeightInMapUnits * 16 - cropUnitY * (cropTop + cropBottom);
+        return true;
+    }
+
+    private static void skipScalingList(BitReader reader, int size) {
+        int lastScale = 8;
+        int nextScale = 8;
+        for (int i = 0; i < size && !reader.isOverrun(); ++i) {
+            if (nextScale != 0) {
+                int deltaScale = reader.readSE();
+                nextScale = (lastScale + deltaScale + 256) % 256;
+            }
+            lastScale = nextScale == 0 ? lastScale : nextScale;
+        }
+    }
+
+    /**
+     * Reads bits and exp-Golomb codes from a NAL unit payload, skipping the emulation prevention
+     * bytes (00 00 03) on the fly.
+     */
+    static class BitReader {
+        private byte[] m_data;
+        private int m_pos;
+        private int m_end;
+        private int m_zeroCount;
+        private int m_currentByte;
+        private int m_bitsLeft;
+        private boolean m_isOverrun;
+
+        void reset(byte[] data, int start, int end) {
+            m_data = data;
+            m_pos = start;
+            m_end = end;
+            m_zeroCount = 0;
+            m_currentByte = 0;
+            m_bitsLeft = 0;
+            m_isOverrun = false;
+        }
+
+        /**
+         * @return true if more bits were requested than available
+         */
+        boolean isOverrun() {
+            return m_isOverrun;
+        }
+
+        int readBit() {
+            if (m_bitsLeft == 0) {
+                m_currentByte = nextByte();
+                m_bitsLeft = 8;
+            }
+            --m_bitsLeft;
+            return (m_currentByte >> m_bitsLeft) & 1;
+        }
+
+        int readBits(int count) {
+            int result = 0;
+            for (int i = 0; i < count; ++i) {
+                result = (result << 1) | readBit();
+            }
+            return result;
+        }
+
+        /**
+         * Reads an unsigned exp-Golomb code, ue(v).
+         */
+        int readUE() {
+            int leadingZeros = 0;
+            while (readBit() == 0) {
+                if (m_isOverrun || ++leadingZeros > 31) {
+                    m_isOverrun = true;
+                    return 0;
+                }
+            }
+            return (int) ((1L << leadingZeros) - 1 + readBits(leadingZeros));
+        }
+
+        /**
+         * Reads a signed exp-Golomb code, se(v).
+         */
+        int readSE() {
+            int codeNum = readUE();
+            return (codeNum & 1) == 1 ? (codeNum + 1) / 2 : -(codeNum / 2);
+        }
+
+        private int nextByte() {
+            if (m_pos >= m_end) {
+                m_isOverrun = true;
+                return 0;
+            }
+            int value = m_data[m_pos++] & 0xFF;
+            if (m_zeroCount >= 2 && value == 3) {
+                // Emulation prevention byte
+                m_zeroCount = 0;
+                if (m_pos >= m_end) {
+                    m_isOverrun = true;
+                    return 0;
+                }
+                value = m_data[m_pos++] & 0xFF;
+            }
+            m_zeroCount = value == 0 ? m_zeroCount + 1 : 0;
+            return value;
+        }
+    }
+}
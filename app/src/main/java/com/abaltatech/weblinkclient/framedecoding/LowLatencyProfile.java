@@ -0,0 +1,160 @@
+/****************************************************************************
+ *
+ * @file LowLatencyProfile.java
+ * @brief
+ *
+ * Contains the LowLatencyProfile class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder configuration that trades power for latency, used for the interactive projection.
+ * <p></p>
+ * By default many hardware decoders hold back several frames before the first output, e.g. to
+ * reorder B-frames that the WebLink host never sends. The profile asks the codec to output every
+ * frame as soon as it is decoded: {@link MediaFormat#KEY_LOW_LATENCY} (API 30), real-time
+ * {@link MediaFormat#KEY_PRIORITY}, the highest {@link MediaFormat#KEY_OPERATING_RATE}, and the
+ * vendor specific low latency keys of the codec families listed in {@link #VENDOR_KEYS}.
+ * <p></p>
+ * Codecs silently ignore the keys they do not know. After configuration, the keys found in the
+ * input format of the codec are reported as accepted.
+ */
+class LowLatencyProfile {
+
+    private static final String TAG = "LowLatencyProfile";
+
+    /**
+     * Vendor key applied to the codecs whose name starts with a prefix
+     */
+    private static class VendorKey {
+        final String codecPrefix;
+        final String key;
+        final int value;
+
+        VendorKey(String codecPrefix, String key, int value) {
+            this.codecPrefix = codecPrefix;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Vendor low latency keys, keyed by codec name prefix. Integrators may extend the table for
+     * the decoders of their platform.
+     */
+    private static final VendorKey[] VENDOR_KEYS = {
+            new VendorKey("OMX.qcom.", "vendor.qti-ext-dec-low-latency.enable", 1),
+            new VendorKey("OMX.qcom.", "vendor.qti-ext-dec-picture-order.enable", 1),
+            new VendorKey("c2.qti.", "vendor.qti-ext-dec-low-latency.enable", 1),
+            new VendorKey("c2.qti.", "vendor.qti-ext-dec-picture-order.enable", 1),
+            new VendorKey("OMX.hisi.", "vendor.hisi-ext-low-latency-video-dec.video-scene-for-low-latency-req", 1),
+            new VendorKey("OMX.hisi.", "vendor.hisi-ext-low-latency-video-dec.video-scene-for-low-latency-rdy", -1),
+            new VendorKey("OMX.Exynos.", "vendor.rtc-ext-dec-low-latency.enable", 1),
+            new VendorKey("c2.exynos.", "vendor.rtc-ext-dec-low-latency.enable", 1),
+            new VendorKey("OMX.amlogic.", "vendor.low-latency.enable", 1),
+            new VendorKey("c2.amlogic.", "vendor.low-latency.enable", 1),
+    };
+
+    private LowLatencyProfile() {
+    }
+
+    /**
+     * Adds the low latency keys for a codec to a format.
+     *
+     * @param format    Format the codec will be configured with
+     * @param codecName Name of the codec
+     */
+    static void apply(MediaFormat format, String codecName) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            format.setInteger(MediaFormat.KEY_LOW_LATENCY, 1);
+        }
+        // 0 = real-time priority
+        format.setInteger(MediaFormat.KEY_PRIORITY, 0);
+        // Decode as fast as possible instead of at the nominal frame rate
+        format.setInteger(MediaFormat.KEY_OPERATING_RATE, Short.MAX_VALUE);
+        for (VendorKey vendorKey : VENDOR_KEYS) {
+            if (codecName.startsWith(vendorKey.codecPrefix)) {
+                format.setInteger(vendorKey.key, vendorKey.value);
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of the profile that the configured codec reports in its input format.
+     * {@link MediaFormat#KEY_LOW_LATENCY} is also reported if the codec advertises the low
+     * latency feature.
+     *
+     * @param codec     A configured codec
+     * @param codecName Name of the codec
+     * @return The accepted keys
+     */
+    static List<String> getAcceptedKeys(MediaCodec codec, String codecName) {
+        List<String> result = new ArrayList<String>();
+        MediaFormat inputFormat;
+        try {
+            inputFormat = codec.getInputFormat();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Failed to get the input format of the codec: ", e);
+            return result;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            if (inputFormat.containsKey(MediaFormat.KEY_LOW_LATENCY) || isLowLatencyFeatureSupported(codec)) {
+                result.add(MediaFormat.KEY_LOW_LATENCY);
+            }
+        }
+        if (inputFormat.containsKey(MediaFormat.KEY_PRIORITY)) {
+            result.add(MediaFormat.KEY_PRIORITY);
+        }
+        if (inputFormat.containsKey(MediaFormat.KEY_OPERATING_RATE)) {
+            result.add(MediaFormat.KEY_OPERATING_RATE);
+        }
+        for (VendorKey vendorKey : VENDOR_KEYS) {
+            if (codecName.startsWith(vendorKey.codecPrefix) && inputFormat.containsKey(vendorKey.key)) {
+                result.add(vendorKey.key);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isLowLatencyFeatureSupported(MediaCodec codec) {
+        try {
+            MediaCodecInfo.CodecCapabilities capabilities =
+                    codec.getCodecInfo().getCapabilitiesForType(MediaFormat.MIMETYPE_VIDEO_AVC);
+            return capabilities.isFeatureSupported(MediaCodecInfo.CodecCapabilities.FEATURE_LowLatency);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/****************************************************************************
+ *
+ * @file OutputRenderScheduler.java
+ * @brief
+ *
+ * Contains the OutputRenderScheduler class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.media.MediaCodec;
+
+/**
+ * Paces the decoded output buffers to a fixed frame interval.
+ * <p></p>
+ * Every output buffer gets a render deadline one frame interval after the previous one (or
+ * "now" if the stream has fallen behind) and is released with
+ * {@link MediaCodec#releaseOutputBuffer(int, long)} at most one interval ahead of that deadline.
+ * At most one buffer is held back; if a newer one arrives while a buffer is still waiting, the
+ * older one is dropped. This turns bursts that follow a network hiccup into evenly spaced frames
+ * instead of showing them all at once.
+ * <p></p>
+ * A buffer that comes out more than one interval after its frame slot, although its frame was
+ * submitted to the codec before the slot, is late: it is dropped and its slot is skipped. The
+ * presentation timestamps are the submit times on the {@link System#nanoTime()} clock, so the
+ * first frame after the host paused, submitted after the slot, is rendered. A late buffer is
+ * only dropped if a newer frame was already submitted, so the last frame before a static
+ * screen is always shown.
+ * <p></p>
+ * The decisions are taken by {@link #schedule(int, long, long, long)}, {@link #isDue(long)} and
+ * {@link #onReleased()}, which do not need the codec.
+ * <p></p>
+ * The scheduler is not thread-safe. It must be used from the thread that consumes the codec
+ * output; only the counters may be read from other threads.
+ */
+class OutputRenderScheduler {
+
+    /**
+     * Returned by {@link #releaseDue(MediaCodec, long)} when no buffer was released.
+     */
+    static final long NOTHING_RELEASED = -1;
+
+    private final long m_frameIntervalNs;
+
+    private int  m_pendingIndex = -1;
+    private long m_pendingPresentationTimeUs;
+    private long m_pendingDeadlineNs;
+    private long m_nextDeadlineNs = 0;
+
+    private volatile long m_numDroppedFrames = 0;
+    private volatile long m_numLateFrames = 0;
+
+    /**
+     * @param frameRate Target output frame rate in frames per second
+     */
+    OutputRenderScheduler(int frameRate) {
+        m_frameIntervalNs = 1000000000L / Math.max(frameRate, 1);
+    }
+
+    /**
+     * Schedules a decoded output buffer. A buffer that is still waiting, or the new buffer if it
+     * is late, is released without rendering.
+     *
+     * @param codec              The codec that produced the buffer
+     * @param index              Output buffer index
+     * @param presentationTimeUs Presentation timestamp of the buffer
+     * @param newestInputTimeUs  Presentation timestamp of the newest frame submitted to the codec
+     * @param nowNs              Current {@link System#nanoTime()}
+     */
+    void submit(MediaCodec codec, int index, long presentationTimeUs, long newestInputTimeUs, long nowNs) {
+        int droppedIndex = schedule(index, presentationTimeUs, newestInputTimeUs, nowNs);
+        if (droppedIndex >= 0) {
+            codec.releaseOutputBuffer(droppedIndex, false);
+        }
+    }
+
+    /**
+     * Releases the waiting buffer to the surface if its deadline is less than one frame
+     * interval away.
+     *
+     * @param codec The codec that produced the buffer
+     * @param nowNs Current {@link System#nanoTime()}
+     * @return Presentation timestamp of the released buffer, or {@link #NOTHING_RELEASED}
+     */
+    long releaseDue(MediaCodec codec, long nowNs) {
+        if (!isDue(nowNs)) {
+            return NOTHING_RELEASED;
+        }
+        codec.releaseOutputBuffer(m_pendingIndex, m_pendingDeadlineNs);
+        return onReleased();
+    }
+
+    /**
+     * Takes a new output buffer: it replaces the waiting buffer, or it is dropped if it is late,
+     * or it waits for its deadline.
+     *
+     * @param index              Output buffer index
+     * @param presentationTimeUs Presentation timestamp of the buffer
+     * @param newestInputTimeUs  Presentation timestamp of the newest frame submitted to the codec
+     * @param nowNs              Current {@link System#nanoTime()}
+     * @return Index of the buffer to release without rendering, or -1
+     */
+    int schedule(int index, long presentationTimeUs, long newestInputTimeUs, long nowNs) {
+        if (m_pendingIndex >= 0) {
+            // The new buffer takes the slot of the waiting one
+            int droppedIndex = m_pendingIndex;
+            ++m_numDroppedFrames;
+            m_nextDeadlineNs = m_pendingDeadlineNs;
+            setPending(index, presentationTimeUs, Math.max(m_pendingDeadlineNs, nowNs));
+            return droppedIndex;
+        }
+
+        long deadlineNs = m_nextDeadlineNs;
+        if (deadlineNs != 0 && nowNs - deadlineNs > m_frameIntervalNs
+                && presentationTimeUs * 1000 <= deadlineNs && presentationTimeUs < newestInputTimeUs) {
+            // Missed its slot by more than a frame although it was submitted in time: the codec
+            // fell behind. The slot is skipped, the newer frame catches up.
+            ++m_numLateFrames;
+            ++m_numDroppedFrames;
+            m_nextDeadlineNs = deadlineNs + m_frameIntervalNs;
+            return index;
+        }
+
+        setPending(index, presentationTimeUs, Math.max(deadlineNs, nowNs));
+        return -1;
+    }
+
+    /**
+     * @param nowNs Current {@link System#nanoTime()}
+     * @return true if the waiting buffer is to be released to the surface now
+     */
+    boolean isDue(long nowNs) {
+        return m_pendingIndex >= 0 && m_pendingDeadlineNs - nowNs <= m_frameIntervalNs;
+    }
+
+    /**
+     * @return Render deadline of the waiting buffer, in {@link System#nanoTime()} units
+     */
+    long getPendingDeadlineNs() {
+        return m_pendingDeadlineNs;
+    }
+
+    /**
+     * Moves to the next frame slot once the waiting buffer was released to the surface.
+     *
+     * @return Presentation timestamp of the released buffer
+     */
+    long onReleased() {
+        m_nextDeadlineNs = m_pendingDeadlineNs + m_frameIntervalNs;
+        m_pendingIndex = -1;
+        return m_pendingPresentationTimeUs;
+    }
+
+    /**
+     * @param nowNs Current {@link System#nanoTime()}
+     * @return Time in nanoseconds until the waiting buffer can be released, 0 if it is already
+     * due, or -1 if no buffer is waiting
+     */
+    long getTimeUntilReleaseNs(long nowNs) {
+        if (m_pendingIndex < 0) {
+            return -1;
+        }
+        return Math.max(0, m_pendingDeadlineNs - m_frameIntervalNs - nowNs);
+    }
+
+    /**
+     * Forgets the waiting buffer without releasing it. Used when the codec is flushed or stopped,
+     * which returns all output buffers to the codec anyway.
+     */
+    void clear() {
+        m_pendingIndex = -1;
+        m_nextDeadlineNs = 0;
+    }
+
+    /**
+     * @return Number of decoded frames that were dropped, because a newer frame replaced them
+     *         or because they were late
+     */
+    long getDroppedFrameCount() {
+        return m_numDroppedFrames;
+    }
+
+    /**
+     * @return Number of decoded frames dropped because they came out after their frame slot
+     */
+    long getLateFrameCount() {
+        return m_numLateFrames;
+    }
+
+    private void setPending(int index, long presentationTimeUs, long deadlineNs) {
+        m_pendingIndex = index;
+        m_pendingPresentationTimeUs = presentationTimeUs;
+        m_pendingDeadlineNs = deadlineNs;
+    }
+}
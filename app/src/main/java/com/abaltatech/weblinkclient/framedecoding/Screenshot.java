@@ -0,0 +1,66 @@
+/****************************************************************************
+ *
+ * @file Screenshot.java
+ * @brief
+ *
+ * Contains the Screenshot class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.graphics.Bitmap;
+
+/**
+ * Reference to a decoded frame held by a software decoder.
+ * <p></p>
+ * The bitmap is neither modified nor recycled by the decoder until the reference is released,
+ * so it can be read from any thread. Every acquired screenshot has to be released exactly once.
+ */
+public final class Screenshot {
+
+    private final BitmapSwapChain m_swapChain;
+    private final Bitmap m_bitmap;
+    private boolean m_isReleased = false;
+
+    Screenshot(BitmapSwapChain swapChain, Bitmap bitmap) {
+        m_swapChain = swapChain;
+        m_bitmap = bitmap;
+    }
+
+    /**
+     * @return The frame, valid until {@link #release()} is called
+     */
+    public Bitmap getBitmap() {
+        return m_bitmap;
+    }
+
+    /**
+     * Returns the bitmap to the decoder.
+     */
+    public synchronized void release() {
+        if (!m_isReleased) {
+            m_isReleased = true;
+            m_swapChain.release(m_bitmap);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/****************************************************************************
+ *
+ * @file WarmCodecHolder.java
+ * @brief
+ *
+ * Contains the WarmCodecHolder class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.media.MediaCodec;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Surface;
+
+import com.abaltatech.mcs.logger.MCSLogger;
+
+/**
+ * Keeps a flushed, configured and started {@link MediaCodec} alive between two decoding sessions.
+ * <p></p>
+ * Creating and configuring a codec by name takes 100-400 ms on some platforms. When a session is
+ * stopped only because of an application switch or a surface recreation, the codec is parked here
+ * and handed out again to the next session with the same codec and resolution, after redirecting
+ * its output to the new surface with {@link MediaCodec#setOutputSurface(Surface)}.
+ * <p></p>
+ * A codec that is not taken within {@link #IDLE_TIMEOUT_MS} is released, so that a session which
+ * does not come back does not hold the hardware decoder.
+ */
+class WarmCodecHolder {
+
+    private static final String TAG = "WarmCodecHolder";
+    // Time a parked codec is kept before it is released, in milliseconds
+    static final long IDLE_TIMEOUT_MS = 10000;
+
+    private final Handler m_handler = new Handler(Looper.getMainLooper());
+    private final Runnable m_idleTimeout = new Runnable() {
+        @Override
+        public void run() {
+            MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Parked codec was not reused, releasing it");
+            release();
+        }
+    };
+
+    private MediaCodec m_codec;
+    private String m_codecName;
+    private int m_width;
+    private int m_height;
+
+    /**
+     * Parks a codec. Any codec parked before is released. The codec is released if it is not
+     * taken within {@link #IDLE_TIMEOUT_MS}.
+     *
+     * @param codec     A flushed codec in the executing state
+     * @param codecName Name of the codec
+     * @param width     Configured width
+     * @param height    Configured height
+     */
+    synchronized void park(MediaCodec codec, String codecName, int width, int height) {
+        if (m_codec != null && m_codec != codec) {
+            releaseCodec(m_codec);
+        }
+        m_codec = codec;
+        m_codecName = codecName;
+        m_width = width;
+        m_height = height;
+        m_handler.removeCallbacks(m_idleTimeout);
+        m_handler.postDelayed(m_idleTimeout, IDLE_TIMEOUT_MS);
+        MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Parked codec %s (%dx%d)", codecName, width, height);
+    }
+
+    /**
+     * Takes the parked codec if it matches the requested configuration. A parked codec that does
+     * not match, or cannot be attached to the new surface, is released.
+     *
+     * @param codecName Name of the requested codec
+     * @param width     Requested width
+     * @param height    Requested height
+     * @param surface   Output surface of the new session
+     * @return The started codec rendering to the new surface, or null if a new one must be created
+     */
+    synchronized MediaCodec take(String codecName, int width, int height, Surface surface) {
+        MediaCodec codec = m_codec;
+        m_codec = null;
+        m_handler.removeCallbacks(m_idleTimeout);
+        if (codec == null) {
+            return null;
+        }
+
+        if (!codecName.equals(m_codecName) || width != m_width || height != m_height
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Parked codec %s (%dx%d) does not match, releasing it",
+                    m_codecName, m_width, m_height);
+            releaseCodec(codec);
+            return null;
+        }
+
+        try {
+            codec.setOutputSurface(surface);
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Failed to switch the output surface of the parked codec: ", e);
+            releaseCodec(codec);
+            return null;
+        }
+        return codec;
+    }
+
+    /**
+     * Releases the parked codec, if any.
+     */
+    synchronized void release() {
+        m_handler.removeCallbacks(m_idleTimeout);
+        if (m_codec != null) {
+            releaseCodec(m_codec);
+            m_codec = null;
+        }
+    }
+
+    private static void releaseCodec(MediaCodec codec) {
+        try {
+            codec.stop();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Exception raised while trying to stop the parked codec: ", e);
+        }
+        try {
+            codec.release();
+        } catch (Exception e) {
+            MCSLogger.log(MCSLogger.ELogType.eWarning, TAG, "Exception raised while trying to release the parked codec: ", e);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import android.content.Context;
 import com.abaltatech.mcs.logger.MCSLogger;
 import com.abaltatech.mcs.logger.android.LoggerAndroid;
 import com.abaltatech.weblinkclient.WebLinkClientCore;
+import com.abaltatech.weblinkclient.audio.AudioOutput;
 
 public class App extends Application {
     static final String TAG = "WLClientApp";
@@ -49,6 +50,8 @@ public class App extends Application {
             AudioDecoderFactory.instance()
                     .registerDecoder(IAudioDecoder.CODEC_ID_AAC, AudioDecoder.class);
         }*/
+        // The audio channels are set up by the constructor of the client
+        applyAudioPreferences(new PreferenceHelper(this));
         m_wlClient = new WebLinkClient(this);
 
         //register MCSLogger. used for internal logs.
@@ -56,6 +59,15 @@ public class App extends Application {
         MCSLogger.setLogLevel(MCSLogger.eAll);
     }
 
+    /**
+     * Applies the audio preferences to the audio channels set up after this call.
+     */
+    static void applyAudioPreferences(PreferenceHelper preferences) {
+        WebLinkClient.setAudioMixingEnabled(preferences.isAudioMixingEnabled());
+        AudioOutput.setOutputSampleRate(preferences.getAudioOutputSampleRate());
+        AudioOutput.setResamplerQuality(preferences.getResamplerQuality());
+    }
+
     /**
      * Get the Application instance.
      */
@@ -408,13 +408,19 @@ public class HomeActivity extends AppCompatActivity {
         if (videoDecoder.equals(PreferenceHelper.VALUE_I420_DECODER)) {
             MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Chosen decoder: Software I420");
             decoderClass = FrameDecoder_I420.class;
+            FrameDecoder_I420.setScalingFilter(m_sharedPref.getScalingFilter());
         }
         else if (videoDecoder.equals(PreferenceHelper.VALUE_YUV_DECODER)) {
             MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Chosen decoder: Software YUV");
             decoderClass = FrameDecoder_YUV.class;
+            FrameDecoder_YUV.setScalingFilter(m_sharedPref.getScalingFilter());
         } else if (videoDecoder.equals(PreferenceHelper.VALUE_H264_CUSTOM_DECODER)){
             MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Chosen decoder: Custom Hardware H264");
             decoderClass = FrameDecoder_H264_Custom.class;
+            FrameDecoder_H264_Custom.setAsyncModeEnabled(m_sharedPref.isAsyncDecodingEnabled());
+            FrameDecoder_H264_Custom.setRenderPacing(m_sharedPref.isPacedOutputEnabled() ? m_sharedPref.getFrameRate() : 0);
+            FrameDecoder_H264_Custom.setWarmCodecReuseEnabled(m_sharedPref.isCodecReuseEnabled());
+            FrameDecoder_H264_Custom.setLowLatencyProfileEnabled(m_sharedPref.isLowLatencyDecodingEnabled());
         } else {
             MCSLogger.log(MCSLogger.ELogType.eDebug, TAG, "Chosen decoder: Hardware H264");
             decoderClass = FrameDecoder_H264.class;
@@ -473,12 +479,20 @@ public class HomeActivity extends AppCompatActivity {
     void OnPreferencesFragmentClosed() {
         boolean reinitWLClientDisplay = false;
         boolean clientSDKConfigurationChanged = false;
+        boolean audioConfigurationChanged = false;
+        boolean audioChannelsChanged = false;
 
         // If the type of surface used by the Decoder has been changed or the Decoder resolution
         // was changed, we need to reinitialize the client
         if (m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_DECODER_SURFACE)
                 || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_VIDEO_RESOLUTION)
                 || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_VIDEO_DECODER)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_SCALING_FILTER)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_ASYNC_DECODING)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_PACED_OUTPUT)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_REUSE_CODEC)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_LOW_LATENCY_DECODING)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_FRAME_RATE)
                 || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_KEYFRAME_INTERVAL)
                 || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_BITRATE)) {
             reinitWLClientDisplay = true;
@@ -490,6 +504,17 @@ public class HomeActivity extends AppCompatActivity {
             clientSDKConfigurationChanged = true;
         }
 
+        // Changes to the audio outputs. The mixer runs at the output sample rate, so the audio
+        // channels are recreated when either changes.
+        if (m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_AUDIO_MIXING)
+                || m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_AUDIO_OUTPUT_RATE)) {
+            audioConfigurationChanged = true;
+            audioChannelsChanged = true;
+        }
+        if (m_sharedPref.hasPreferenceChanged(PreferenceHelper.KEY_RESAMPLER_QUALITY)) {
+            audioConfigurationChanged = true;
+        }
+
         if (reinitWLClientDisplay) {
             // Note this is only done for this sample app. For production you will have the
             // desired decoder surface and settings hardcoded, and initialized once. The
@@ -505,6 +530,13 @@ public class HomeActivity extends AppCompatActivity {
             wlClient.setFrameSkipping(frameSkipping);
             wlClient.setAppSwitchTimeout(appSwitchTimeout);
         }
+
+        if (audioConfigurationChanged) {
+            App.applyAudioPreferences(m_sharedPref);
+        }
+        if (audioChannelsChanged) {
+            App.instance().getWLClient().setupAudio();
+        }
     }
 
 
@@ -733,6 +765,7 @@ public class HomeActivity extends AppCompatActivity {
     protected void onDestroy() {
         WebLinkClientCore wlClient = App.instance().getWLClientCore();
         wlClient.terminate();
+        FrameDecoder_H264_Custom.releaseWarmCodec();
         super.onDestroy();
     }
 
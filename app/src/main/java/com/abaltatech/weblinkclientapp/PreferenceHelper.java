@@ -35,6 +35,8 @@ import android.preference.PreferenceManager;
 
 import com.abaltatech.mcs.logger.MCSLogger;
 import com.abaltatech.weblink.core.WLTypes;
+import com.abaltatech.weblinkclient.audio.PolyphaseResampler;
+import com.abaltatech.weblinkclient.framedecoding.FrameDecoder_I420;
 import com.testabalta.R;
 
 import java.util.ArrayList;
@@ -64,6 +66,14 @@ public class PreferenceHelper {
     public static final String KEY_AUTO_START_PROXY = getPreferenceString(R.string.key_auto_start_proxy);
     public static final String KEY_ENABLE_FPS_MANAGER = getPreferenceString(R.string.key_enable_fps_manager);
     public static final String KEY_CONNECTION_MODE = getPreferenceString(R.string.key_connect_mode);
+    public static final String KEY_ASYNC_DECODING = getPreferenceString(R.string.key_async_decoding);
+    public static final String KEY_PACED_OUTPUT = getPreferenceString(R.string.key_paced_output);
+    public static final String KEY_REUSE_CODEC = getPreferenceString(R.string.key_reuse_codec);
+    public static final String KEY_LOW_LATENCY_DECODING = getPreferenceString(R.string.key_low_latency_decoding);
+    public static final String KEY_SCALING_FILTER = getPreferenceString(R.string.key_scaling_filter);
+    public static final String KEY_AUDIO_MIXING = getPreferenceString(R.string.key_audio_mixing);
+    public static final String KEY_AUDIO_OUTPUT_RATE = getPreferenceString(R.string.key_audio_output_rate);
+    public static final String KEY_RESAMPLER_QUALITY = getPreferenceString(R.string.key_resampler_quality);
 
     public static final String VALUE_I420_DECODER = getPreferenceString(R.string.value_i420_decoder);
     public static final String VALUE_YUV_DECODER = getPreferenceString(R.string.value_yuv_decoder);
@@ -82,6 +92,11 @@ public class PreferenceHelper {
     private static final boolean DEFAULT_SHOW_CMD_BAR = false;
     private static final boolean DEFAULT_AUTO_START_PROXY = false;
     private static final boolean DEFAULT_ENABLE_FPS_MANAGER = false;
+    private static final boolean DEFAULT_ASYNC_DECODING = false;
+    private static final boolean DEFAULT_PACED_OUTPUT = false;
+    private static final boolean DEFAULT_REUSE_CODEC = true;
+    private static final boolean DEFAULT_LOW_LATENCY_DECODING = false;
+    private static final boolean DEFAULT_AUDIO_MIXING = false;
 
     private static final int DEFAULT_DECODER_WIDTH      = 800;
     private static final int DEFAULT_DECODER_HEIGHT     = 480;
@@ -89,6 +104,9 @@ public class PreferenceHelper {
     private static final int DEFAULT_KEYFRAME_INTERVAL  = 30; // 1 key-frame every 30 frames
     private static final int DEFAULT_BITRATE            = 2000000; // 2 MBPS
     private static final int DEFAULT_APP_SWITCH_TIMEOUT = 5; // 5 seconds
+    private static final int DEFAULT_SCALING_FILTER     = FrameDecoder_I420.SCALING_DISABLED;
+    private static final int DEFAULT_AUDIO_OUTPUT_RATE  = 0; // The sample rate of the host
+    private static final int DEFAULT_RESAMPLER_QUALITY  = PolyphaseResampler.QUALITY_MEDIUM;
 
     private static final String DEFAULT_VIDEO_DECODER   = VALUE_H264_CUSTOM_DECODER;
     private static final String DEFAULT_CONNECTION_MODE = VALUE_USB;
@@ -190,6 +208,22 @@ public class PreferenceHelper {
         return DEFAULT_APP_SWITCH_TIMEOUT;
     }
 
+    /**
+     * Returns the configured scaling filter of the software decoders.
+     * @return One of the SCALING_ constants of FrameDecoder_I420 and FrameDecoder_YUV
+     */
+    public int getScalingFilter() {
+        String scalingFilter = m_sharedPreferences.getString(KEY_SCALING_FILTER, "");
+        if (!scalingFilter.isEmpty()) {
+            try {
+                return Integer.parseInt(scalingFilter);
+            } catch (NumberFormatException e) {
+                MCSLogger.log(MCSLogger.eWarning, "Invalid scaling filter configured!");
+            }
+        }
+        return DEFAULT_SCALING_FILTER;
+    }
+
     /**
      * Returns the name of the configured video decoder.
      * @return Video decoder
@@ -298,6 +332,78 @@ public class PreferenceHelper {
         return m_sharedPreferences.getBoolean(KEY_ENABLE_FPS_MANAGER, DEFAULT_ENABLE_FPS_MANAGER);
     }
 
+    /**
+     * Checks if the custom H264 decoder should be driven by MediaCodec callbacks.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isAsyncDecodingEnabled() {
+        return m_sharedPreferences.getBoolean(KEY_ASYNC_DECODING, DEFAULT_ASYNC_DECODING);
+    }
+
+    /**
+     * Checks if the decoded H264 frames should be paced to the configured frame rate.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isPacedOutputEnabled() {
+        return m_sharedPreferences.getBoolean(KEY_PACED_OUTPUT, DEFAULT_PACED_OUTPUT);
+    }
+
+    /**
+     * Checks if the H264 codec should be kept alive between decoding sessions.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isCodecReuseEnabled() {
+        return m_sharedPreferences.getBoolean(KEY_REUSE_CODEC, DEFAULT_REUSE_CODEC);
+    }
+
+    /**
+     * Checks if the H264 codec should be configured with the low latency profile.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isLowLatencyDecodingEnabled() {
+        return m_sharedPreferences.getBoolean(KEY_LOW_LATENCY_DECODING, DEFAULT_LOW_LATENCY_DECODING);
+    }
+
+    /**
+     * Checks if the audio channels should be mixed into a single track.
+     * @return true if enabled, false otherwise
+     */
+    public boolean isAudioMixingEnabled() {
+        return m_sharedPreferences.getBoolean(KEY_AUDIO_MIXING, DEFAULT_AUDIO_MIXING);
+    }
+
+    /**
+     * Returns the configured sample rate of the audio output.
+     * @return Sample rate in Hz, 0 to play at the sample rate of the host
+     */
+    public int getAudioOutputSampleRate() {
+        String sampleRate = m_sharedPreferences.getString(KEY_AUDIO_OUTPUT_RATE, "");
+        if (!sampleRate.isEmpty()) {
+            try {
+                return Integer.parseInt(sampleRate);
+            } catch (NumberFormatException e) {
+                MCSLogger.log(MCSLogger.eWarning, "Invalid audio output sample rate configured!");
+            }
+        }
+        return DEFAULT_AUDIO_OUTPUT_RATE;
+    }
+
+    /**
+     * Returns the configured quality of the audio sample rate conversion.
+     * @return One of the QUALITY_ constants of PolyphaseResampler
+     */
+    public int getResamplerQuality() {
+        String quality = m_sharedPreferences.getString(KEY_RESAMPLER_QUALITY, "");
+        if (!quality.isEmpty()) {
+            try {
+                return Integer.parseInt(quality);
+            } catch (NumberFormatException e) {
+                MCSLogger.log(MCSLogger.eWarning, "Invalid resampler quality configured!");
+            }
+        }
+        return DEFAULT_RESAMPLER_QUALITY;
+    }
+
     /**
      * Helper method to check if a preference was changed by the user.
      * @param preference Preference to check
@@ -55,9 +55,12 @@ import com.abaltatech.weblinkclient.IClientNotification;
 import com.abaltatech.weblinkclient.WebLinkClientCore;
 import com.abaltatech.weblinkclient.appcatalog.WLAppCatalogManager;
 import com.abaltatech.weblinkclient.audiodecoding.AudioDecoder_MediaCodec;
-import com.abaltatech.weblinkclient.audiodecoding.AudioOutput;
+import com.abaltatech.weblinkclient.audio.AudioMixer;
+import com.abaltatech.weblinkclient.audio.AudioOutput;
 import com.abaltatech.weblinkclient.audiodecoding.IAudioDecoder;
 import com.abaltatech.weblinkclient.audiodecoding.IAudioOutput;
+import com.abaltatech.weblinkclient.framedecoding.CodecScoreboard;
+import com.abaltatech.weblinkclient.framedecoding.FrameDecoder_H264_Custom;
 import com.abaltatech.weblinkclient.hid.EHIDCapability;
 import com.abaltatech.weblinkclient.hid.HIDController_AOA;
 import com.abaltatech.weblinkclient.hid.HIDController_TCPIP;
@@ -71,6 +74,7 @@ import com.abaltatech.weblinkclientapp.services.ServiceClient;
 import com.abaltatech.weblinkclientapp.services.Services;
 import com.testabalta.R;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -88,6 +92,7 @@ public class WebLinkClient implements IClientNotification {
     private static final String DEFAULT_APP_NAME_LANGUAGE = "en";
     private static final short DEFAULT_APP_IMAGE_WIDTH = 96;
     private static final short DEFAULT_APP_IMAGE_HEIGHT = 96;
+    private static final String CODEC_SCOREBOARD_FILE = "codec_scoreboard.txt";
 
     /**
      * Predefined consumer controls in the order they are defined in the HID Report Descriptor.
@@ -107,6 +112,11 @@ public class WebLinkClient implements IClientNotification {
         HIDRequestProperties.CU_Power_Lock, //final bit
     };
 
+    /**
+     * When set, the audio channels are mixed into a single AudioTrack.
+     */
+    private static volatile boolean ms_isAudioMixingEnabled = false;
+
     private final Context m_context;
     private ConnectionManager m_connManager = null;
     private WebLinkClientCore m_client;
@@ -125,6 +135,9 @@ public class WebLinkClient implements IClientNotification {
     private final List<IConnectionStatusNotification> m_connListeners = new ArrayList<IConnectionStatusNotification>();
     private final List<IServerUpdateNotification> m_serverListeners = new ArrayList<IServerUpdateNotification>();
     private IPingHandler m_pingHandler;
+    private AudioMixer m_audioMixer;
+    // IDs of the audio channels added by setupAudio()
+    private final List<Integer> m_audioChannelIDs = new ArrayList<Integer>();
 
     /**
      * Setup the client wrapper, which acts as the main receiver for WebLinkClientCore notifications.
@@ -182,6 +195,8 @@ public class WebLinkClient implements IClientNotification {
         //
         m_inputManager.registerHIDController(m_tcpController); //this is demo only.
 
+        AndroidFileManager fileManager = new AndroidFileManager(context);
+
         // Create and initialize the WebLink Application Catalog Manager
         WLAppCatalogManager appCatalogManager = new WLAppCatalogManager();
         appCatalogManager.init(context.getFilesDir().getAbsolutePath(),
@@ -189,7 +204,11 @@ public class WebLinkClient implements IClientNotification {
                 DEFAULT_APP_IMAGE_HEIGHT,
                 DEFAULT_APP_NAME_LANGUAGE,
                 true,
-                new AndroidFileManager(context));
+                fileManager);
+
+        // Remember which H264 codec works on this hardware to skip probing on the next start
+        FrameDecoder_H264_Custom.setCodecScoreboard(new CodecScoreboard(fileManager,
+                new File(context.getFilesDir(), CODEC_SCOREBOARD_FILE).getAbsolutePath()));
 
         //create the client core
         m_client = new WebLinkClientCore(context, this, myIdentity, appCatalogManager, m_connManager, m_inputManager){
@@ -231,6 +250,10 @@ public class WebLinkClient implements IClientNotification {
         setupAudio();
     }
 
+    /**
+     * Adds the audio channels of AudioChannelsConfig.ini to the client, replacing the channels
+     * of a previous call, e.g. after the audio mixing was enabled.
+     */
     public void setupAudio() {
         AudioConfigFileParser parser = null;
         InputStream is;
@@ -245,11 +268,18 @@ public class WebLinkClient implements IClientNotification {
         try {
             if (parser != null) {
                 parser.parse();
+                for (Integer channelID : m_audioChannelIDs) {
+                    m_client.removeAudioChannel(channelID);
+                }
+                m_audioChannelIDs.clear();
+                m_audioMixer = null;
                 for (WLAudioChannelMapping mapping : parser.m_channels) {
                     IAudioDecoder decoder = new AudioDecoder_MediaCodec();
-                    IAudioOutput output = new AudioOutput();
+                    IAudioOutput output = createAudioOutput(mapping);
                     decoder.setAudioOutput(output);
-                    m_client.addAudioChannel(mapping, decoder);
+                    if (m_client.addAudioChannel(mapping, decoder)) {
+                        m_audioChannelIDs.add(mapping.getChannelID());
+                    }
                 }
             }
         } catch (Exception e) {
@@ -257,6 +287,38 @@ public class WebLinkClient implements IClientNotification {
         }
     }
 
+    /**
+     * Creates the audio output of a channel: a channel of the mixer when mixing is enabled, its
+     * own AudioTrack otherwise.
+     */
+    private IAudioOutput createAudioOutput(WLAudioChannelMapping mapping) {
+        if (ms_isAudioMixingEnabled && mapping.getAudioFormat() != null) {
+            if (m_audioMixer == null) {
+                int sampleRate = AudioOutput.getOutputSampleRate();
+                m_audioMixer = new AudioMixer(sampleRate > 0 ? sampleRate : mapping.getAudioFormat().getSampleRate());
+            }
+            return m_audioMixer.createChannel(mapping.getChannelID(),
+                    AudioMixer.getPriority(mapping.getAudioTypes()));
+        }
+        return new AudioOutput();
+    }
+
+    /**
+     * Enables the mixing of the audio channels set up after this call, see {@link #setupAudio()}.
+     * <p></p>
+     * By default each audio channel of AudioChannelsConfig.ini plays through its own AudioTrack.
+     * When mixing is enabled, the channels are summed by an {@link AudioMixer} into a single
+     * low-latency track, and the channels of a lower priority are ducked while a navigation
+     * prompt or a phone call channel is started. The mixer runs at the output sample rate of
+     * AudioOutput, or else at the sample rate of the first channel, and the channels of another
+     * rate are resampled.
+     *
+     * @param enabled true to mix the audio channels
+     */
+    public static void setAudioMixingEnabled(boolean enabled) {
+        ms_isAudioMixingEnabled = enabled;
+    }
+
     void startAudio() {
         m_client.startAudio(0);
     }
@@ -602,6 +664,8 @@ public class WebLinkClient implements IClientNotification {
             }
         }
         stopAudio();
+        // The next connection may not use the same codec or resolution
+        FrameDecoder_H264_Custom.releaseWarmCodec();
     }
 
     @Override
@@ -675,6 +739,9 @@ public class WebLinkClient implements IClientNotification {
 
     @Override
     public void onAudioChannelStarted(final int channelID) {
+        if (m_audioMixer != null) {
+            m_audioMixer.onAudioChannelStarted(channelID);
+        }
         if (m_listener != null) {
             m_listener.onAudioChannelStarted(channelID);
         }
@@ -682,6 +749,9 @@ public class WebLinkClient implements IClientNotification {
 
     @Override
     public void onAudioChannelStopped(final int channelID) {
+        if (m_audioMixer != null) {
+            m_audioMixer.onAudioChannelStopped(channelID);
+        }
         if (m_listener != null) {
             m_listener.onAudioChannelStopped(channelID);
         }
@@ -62,6 +62,8 @@ import com.abaltatech.weblinkclient.WebLinkClientCore;
 import com.abaltatech.weblinkclient.commandhandling.TouchCommand;
 import com.abaltatech.weblinkclient.framedecoding.FrameDecoder_H264;
 import com.abaltatech.weblinkclient.framedecoding.FrameDecoder_H264_Custom;
+import com.abaltatech.weblinkclient.framedecoding.FrameDecoder_I420;
+import com.abaltatech.weblinkclient.framedecoding.FrameDecoder_YUV;
 import com.abaltatech.weblinkclient.framedecoding.IFrameDecoder;
 import com.abaltatech.wlappservices.WLServicesHTTPProxy;
 import com.testabalta.R;
@@ -757,6 +759,19 @@ public abstract class WebLinkFragment
 
                 long frameCount = -1;
                 long keyFrameCount = -1;
+                long latencyP50 = -1;
+                long latencyP95 = -1;
+                long latencyP99 = -1;
+                long droppedFrameCount = -1;
+                long lateFrameCount = -1;
+                long codecStartupTime = -1;
+                long codecStartupSaving = -1;
+                long inputBytesCopied = -1;
+                String lowLatencyKeys = null;
+                long baselineLatencyP50 = -1;
+                long flushRecoveryCount = -1;
+                long resetRecoveryCount = -1;
+                long corruptFrameCount = -1;
                 IFrameDecoder decoder = m_wlClient.getFrameDecoder();
                 if (decoder != null) {
                     if (decoder instanceof FrameDecoder_H264) {
@@ -766,6 +781,24 @@ public abstract class WebLinkFragment
                     if (decoder instanceof FrameDecoder_H264_Custom) {
                         frameCount = ((FrameDecoder_H264_Custom) decoder).getFrameInputCount();
                         keyFrameCount = ((FrameDecoder_H264_Custom) decoder).getKeyFrameInputCount();
+                        latencyP50 = ((FrameDecoder_H264_Custom) decoder).getDecodeLatencyP50();
+                        latencyP95 = ((FrameDecoder_H264_Custom) decoder).getDecodeLatencyP95();
+                        latencyP99 = ((FrameDecoder_H264_Custom) decoder).getDecodeLatencyP99();
+                        droppedFrameCount = ((FrameDecoder_H264_Custom) decoder).getDroppedFrameCount();
+                        lateFrameCount = ((FrameDecoder_H264_Custom) decoder).getLateFrameCount();
+                        codecStartupTime = ((FrameDecoder_H264_Custom) decoder).getCodecStartupTimeMs();
+                        codecStartupSaving = ((FrameDecoder_H264_Custom) decoder).getCodecStartupSavingMs();
+                        inputBytesCopied = ((FrameDecoder_H264_Custom) decoder).getInputBytesCopiedPerFrame();
+                        lowLatencyKeys = ((FrameDecoder_H264_Custom) decoder).getAcceptedLowLatencyKeys();
+                        baselineLatencyP50 = ((FrameDecoder_H264_Custom) decoder).getBaselineDecodeLatencyP50();
+                        flushRecoveryCount = ((FrameDecoder_H264_Custom) decoder).getFlushRecoveryCount();
+                        resetRecoveryCount = ((FrameDecoder_H264_Custom) decoder).getResetRecoveryCount();
+                    }
+                    if (decoder instanceof FrameDecoder_I420) {
+                        corruptFrameCount = ((FrameDecoder_I420) decoder).getCorruptFrameCount();
+                    }
+                    if (decoder instanceof FrameDecoder_YUV) {
+                        corruptFrameCount = ((FrameDecoder_YUV) decoder).getCorruptFrameCount();
                     }
                 }
 
@@ -799,6 +832,68 @@ public abstract class WebLinkFragment
                     sb.append(String.format("KeyFrame #: %d", keyFrameCount));
                     count++;
                 }
+                if (latencyP50 != -1) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Decode latency (p50/p95/p99): %d/%d/%dms", latencyP50, latencyP95, latencyP99));
+                    count++;
+                }
+                if (droppedFrameCount != -1) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Dropped/Late frames: %d/%d", droppedFrameCount, lateFrameCount));
+                    count++;
+                }
+                if (codecStartupTime != -1) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Codec start: %dms", codecStartupTime));
+                    if (codecStartupSaving != -1) {
+                        sb.append(String.format(" (warm, saved %dms)", codecStartupSaving));
+                    }
+                    count++;
+                }
+                if (inputBytesCopied != -1) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Input copied: %d bytes/frame", inputBytesCopied));
+                    count++;
+                }
+                if (lowLatencyKeys != null) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Low latency keys: %s", lowLatencyKeys.isEmpty() ? "none" : lowLatencyKeys));
+                    if (baselineLatencyP50 != -1) {
+                        sb.append(String.format(" (p50 %dms without)", baselineLatencyP50));
+                    }
+                    count++;
+                }
+                if (flushRecoveryCount > 0 || resetRecoveryCount > 0) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Codec recoveries (flush/reset): %d/%d", flushRecoveryCount, resetRecoveryCount));
+                    count++;
+                }
+                if (corruptFrameCount != -1) {
+                    if (count > 0) {
+                        sb.append("\n");
+                        count--;
+                    }
+                    sb.append(String.format("Corrupt frames: %d", corruptFrameCount));
+                    count++;
+                }
                 if (!m_activeAudioChannels.isEmpty()) {
                     sb.append("\n");
                     for (int activeAudioChannel : m_activeAudioChannels) {
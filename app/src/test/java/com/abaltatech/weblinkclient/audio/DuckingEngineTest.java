@@ -0,0 +1,149 @@
+/****************************************************************************
+ *
+ * @file DuckingEngineTest.java
+ * @brief
+ *
+ * Contains the DuckingEngineTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives a {@link DuckingEngine} with synthetic PCM, block by block like the mixer thread.
+ * <p></p>
+ * At 1000 Hz a 10 ms ramp lasts 10 frames, so the ducking gain of 0.25 is reached in steps of
+ * 0.075 per frame.
+ */
+public class DuckingEngineTest {
+
+    private static final int SAMPLE_RATE = 1000;
+    private static final int RAMP_MS = 10;
+    private static final int RAMP_FRAMES = 10;
+    private static final float DUCKING_GAIN = 0.25f;
+    private static final float STEP = (1f - DUCKING_GAIN) / RAMP_FRAMES;
+    private static final int BLOCK_FRAMES = 4;
+    private static final int SAMPLE = 1000;
+    private static final float EPSILON = 1e-5f;
+    // The gains accumulate float steps and the gained samples are truncated
+    private static final float SAMPLE_EPSILON = 1.5f;
+
+    private DuckingEngine m_engine;
+    private DuckingEngine.Channel m_music;
+    private DuckingEngine.Channel m_prompt;
+
+    @Before
+    public void setUp() {
+        m_engine = new DuckingEngine(SAMPLE_RATE);
+        m_engine.setRampDuration(RAMP_MS);
+        m_engine.setDuckingGain(DUCKING_GAIN);
+        m_music = m_engine.addChannel(AudioMixer.PRIORITY_DEFAULT);
+        m_prompt = m_engine.addChannel(AudioMixer.PRIORITY_GUIDANCE);
+    }
+
+    @Test
+    public void rampsDownAndBackUpAcrossBlocks() {
+        m_prompt.setActive(true);
+        int[] down = applyBlocks(m_music, 4);
+        for (int i = 0; i < down.length / 2; i++) {
+            float gain = i < RAMP_FRAMES ? 1f - STEP * i : DUCKING_GAIN;
+            assertFrame(down, i, gain);
+        }
+
+        m_prompt.setActive(false);
+        int[] up = applyBlocks(m_music, 4);
+        for (int i = 0; i < up.length / 2; i++) {
+            float gain = i < RAMP_FRAMES ? DUCKING_GAIN + STEP * i : 1f;
+            assertFrame(up, i, gain);
+        }
+    }
+
+    @Test
+    public void doesNotDuckTheActiveChannel() {
+        m_prompt.setActive(true);
+        int[] samples = applyBlocks(m_prompt, 4);
+        for (int i = 0; i < samples.length / 2; i++) {
+            assertFrame(samples, i, 1f);
+        }
+    }
+
+    @Test
+    public void skipFollowsTheRamp() {
+        m_prompt.setActive(true);
+        m_engine.update();
+        m_music.skip(5);
+        assertEquals(1f - STEP * 5, m_music.nextGain(), EPSILON);
+        assertEquals(1f - STEP * 6, m_music.nextGain(), EPSILON);
+
+        // Past the end of the ramp
+        m_music.skip(RAMP_FRAMES);
+        assertEquals(DUCKING_GAIN, m_music.getGain(), EPSILON);
+        assertEquals(DUCKING_GAIN, m_music.nextGain(), EPSILON);
+
+        m_prompt.setActive(false);
+        m_engine.update();
+        m_music.skip(5);
+        assertEquals(DUCKING_GAIN + STEP * 5, m_music.nextGain(), EPSILON);
+    }
+
+    @Test
+    public void zeroLengthRampSwitchesAtOnce() {
+        m_engine.setRampDuration(0);
+        m_prompt.setActive(true);
+        m_engine.update();
+        assertEquals(DUCKING_GAIN, m_music.nextGain(), EPSILON);
+        assertEquals(DUCKING_GAIN, m_music.nextGain(), EPSILON);
+
+        m_prompt.setActive(false);
+        m_engine.update();
+        assertEquals(1f, m_music.nextGain(), EPSILON);
+    }
+
+    /**
+     * Applies the gains of a channel to stereo blocks of a constant sample, with an update of
+     * the engine before each block.
+     *
+     * @return The interleaved samples of all the blocks
+     */
+    private int[] applyBlocks(DuckingEngine.Channel channel, int numBlocks) {
+        int[] samples = new int[numBlocks * BLOCK_FRAMES * 2];
+        Arrays.fill(samples, SAMPLE);
+        for (int block = 0; block < numBlocks; block++) {
+            m_engine.update();
+            channel.apply(samples, block * BLOCK_FRAMES * 2, BLOCK_FRAMES, 2);
+        }
+        return samples;
+    }
+
+    private static void assertFrame(int[] samples, int frame, float gain) {
+        String message = "Frame " + frame;
+        assertEquals(message, SAMPLE * gain, samples[frame * 2], SAMPLE_EPSILON);
+        assertEquals(message, SAMPLE * gain, samples[frame * 2 + 1], SAMPLE_EPSILON);
+    }
+}
@@ -0,0 +1,253 @@
+/****************************************************************************
+ *
+ * @file JitterBufferTest.java
+ * @brief
+ *
+ * Contains the JitterBufferTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a {@link JitterBuffer} with synthetic packet arrivals and queue depths.
+ * <p></p>
+ * The channel runs at 48 kHz with 10 ms packets and a 20 ms track buffer, within a floor of
+ * 20 ms and a ceiling of 300 ms. Without jitter the target covers the track buffer and one
+ * packet, 30 ms, and the depth may drift 10 ms around it before it is corrected.
+ */
+public class JitterBufferTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FLOOR_MS = 20;
+    private static final int CEILING_MS = 300;
+    private static final int TRACK_MS = 20;
+    private static final int PACKET_MS = 10;
+    private static final int TARGET_MS = TRACK_MS + PACKET_MS;
+    private static final long START_MS = 1000;
+
+    private JitterBuffer m_buffer;
+    private long m_nowMs;
+
+    @Before
+    public void setUp() {
+        m_buffer = new JitterBuffer(SAMPLE_RATE, FLOOR_MS, CEILING_MS, frames(TRACK_MS));
+        m_nowMs = START_MS;
+    }
+
+    @Test
+    public void targetsTheTrackBufferAndAPacketWithoutJitter() {
+        assertEquals(FLOOR_MS, m_buffer.getTargetMs());
+        receivePackets(100, PACKET_MS);
+        assertEquals(TARGET_MS, m_buffer.getTargetMs());
+    }
+
+    @Test
+    public void raisesTheTargetAtOnceAndLowersItSlowly() {
+        receivePackets(100, PACKET_MS);
+
+        // A packet 100 ms late, the jitter estimate takes half of the deviation
+        receivePackets(1, PACKET_MS + 100);
+        assertEquals(TARGET_MS + 2 * 50, m_buffer.getTargetMs());
+
+        // It decays by 1/256 per packet on time
+        receivePackets(1, PACKET_MS);
+        int target = m_buffer.getTargetMs();
+        assertTrue("Target " + target, target >= TARGET_MS + 2 * 49 && target < TARGET_MS + 2 * 50);
+        receivePackets(100, PACKET_MS);
+        target = m_buffer.getTargetMs();
+        assertTrue("Target " + target, target > TARGET_MS + 50 && target < TARGET_MS + 2 * 40);
+
+        // Back to the target without jitter after 20 seconds
+        receivePackets(2000, PACKET_MS);
+        assertEquals(TARGET_MS, m_buffer.getTargetMs());
+    }
+
+    @Test
+    public void measuresEarlyPacketsAsJitter() {
+        receivePackets(100, PACKET_MS);
+        // A packet of a burst, arriving together with the one before, 10 ms early
+        receivePackets(1, 0);
+        assertEquals(TARGET_MS + 2 * 5, m_buffer.getTargetMs());
+    }
+
+    @Test
+    public void limitsTheTargetToTheCeiling() {
+        receivePackets(10, PACKET_MS);
+        receivePackets(1, 1000);
+        assertEquals(CEILING_MS, m_buffer.getTargetMs());
+    }
+
+    @Test
+    public void raisesTheCeilingToTheTrackBuffer() {
+        JitterBuffer buffer = new JitterBuffer(SAMPLE_RATE, 10, 20, frames(50));
+        assertEquals(50, buffer.getTargetMs());
+        buffer.onPacket(0, frames(PACKET_MS));
+        assertEquals(50, buffer.getTargetMs());
+    }
+
+    @Test
+    public void holdsUntilTheTargetIsQueued() {
+        receivePackets(10, PACKET_MS);
+        assertEquals(JitterBuffer.HOLD, play(TARGET_MS - 1, TARGET_MS - 1));
+        assertEquals(JitterBuffer.HOLD, play(TARGET_MS - 1, TARGET_MS - 1));
+        assertEquals(0, play(TARGET_MS, TARGET_MS));
+        assertEquals(0, play(TARGET_MS - 5, TARGET_MS - 5));
+    }
+
+    @Test
+    public void holdsAgainAfterAnUnderrun() {
+        startPlaying();
+        assertEquals(JitterBuffer.HOLD, play(0, 0));
+        assertEquals(1, m_buffer.getUnderrunCount());
+        assertEquals(JitterBuffer.HOLD, play(TARGET_MS / 2, TARGET_MS / 2));
+        assertEquals(0, play(TARGET_MS, TARGET_MS));
+        assertEquals(1, m_buffer.getUnderrunCount());
+    }
+
+    @Test
+    public void dropsAFrameWhenTheDepthStaysAboveTheTarget() {
+        startPlaying();
+
+        // 60 ms queued, the smoothed depth passes 40 ms after about 26 ms
+        int correctionMs = playUntilCorrected(60, 40, -1);
+        assertTrue("Dropped after " + correctionMs + " ms", correctionMs >= 20 && correctionMs <= 30);
+
+        // One frame at most every 10 ms
+        for (int i = 1; i < JitterBuffer.CORRECTION_INTERVAL_MS; i++) {
+            assertEquals(0, play(1, 60, 40));
+        }
+        assertEquals(-1, play(1, 60, 40));
+        assertEquals(0, m_buffer.getOverrunCount());
+    }
+
+    @Test
+    public void repeatsAFrameWhenTheDepthStaysBelowTheTarget() {
+        startPlaying();
+
+        // 15 ms queued, the smoothed depth falls under 20 ms after about 70 ms
+        int correctionMs = playUntilCorrected(15, 5, 1);
+        assertTrue("Repeated after " + correctionMs + " ms", correctionMs >= 60 && correctionMs <= 80);
+    }
+
+    @Test
+    public void doesNotCorrectWithinTheTolerance() {
+        startPlaying();
+        assertEquals(-1, playUntilCorrected(TARGET_MS + 9, TARGET_MS, -1));
+        assertEquals(-1, playUntilCorrected(TARGET_MS - 9, TARGET_MS - 20, 1));
+    }
+
+    @Test
+    public void doesNotCorrectWithAnEmptyRing() {
+        startPlaying();
+        // All the audio is in the track, there is nothing to drop or repeat
+        assertEquals(-1, playUntilCorrected(60, 0, -1));
+        assertEquals(-1, playUntilCorrected(15, 0, 1));
+    }
+
+    @Test
+    public void cutsABurstAboveTheCeilingAtOnce() {
+        startPlaying();
+
+        // A burst after a stall, cut back to the target
+        int result = play(1, 400, 380);
+        assertEquals(-(frames(400) - frames(TARGET_MS)), result);
+        assertEquals(1, m_buffer.getOverrunCount());
+
+        // Never more than the ring holds
+        assertEquals(-frames(100), play(1, 400, 100));
+        assertEquals(2, m_buffer.getOverrunCount());
+
+        // Below the ceiling, the depth drifts back instead
+        assertEquals(0, play(1, 250, 230));
+        assertEquals(2, m_buffer.getOverrunCount());
+    }
+
+    @Test
+    public void countsTheRingBufferOverruns() {
+        m_buffer.onOverrun();
+        m_buffer.onOverrun();
+        assertEquals(2, m_buffer.getOverrunCount());
+        assertEquals(0, m_buffer.getUnderrunCount());
+    }
+
+    /**
+     * Receives packets of 10 ms, the first one after intervalMs and the others each 10 ms later.
+     */
+    private void receivePackets(int count, int intervalMs) {
+        for (int i = 0; i < count; i++) {
+            m_nowMs += i == 0 ? intervalMs : PACKET_MS;
+            m_buffer.onPacket(ns(m_nowMs), frames(PACKET_MS));
+        }
+    }
+
+    /**
+     * Starts the playback at the target depth without jitter.
+     */
+    private void startPlaying() {
+        receivePackets(10, PACKET_MS);
+        assertEquals(0, play(TARGET_MS, TARGET_MS));
+    }
+
+    /**
+     * Asks for the next decision, at the current time.
+     */
+    private int play(int queuedMs, int ringMs) {
+        return play(0, queuedMs, ringMs);
+    }
+
+    private int play(int elapsedMs, int queuedMs, int ringMs) {
+        m_nowMs += elapsedMs;
+        return m_buffer.onPlayback(ns(m_nowMs), frames(queuedMs), frames(ringMs));
+    }
+
+    /**
+     * Plays with a constant depth, asking every millisecond for up to one second.
+     *
+     * @param correction The expected correction, -1 to drop or 1 to repeat a frame
+     * @return The time until the first correction, in milliseconds, -1 if there was none
+     */
+    private int playUntilCorrected(int queuedMs, int ringMs, int correction) {
+        for (int ms = 1; ms <= 1000; ms++) {
+            int result = play(1, queuedMs, ringMs);
+            if (result != 0) {
+                assertEquals(correction, result);
+                return ms;
+            }
+        }
+        return -1;
+    }
+
+    private static int frames(int ms) {
+        return SAMPLE_RATE / 1000 * ms;
+    }
+
+    private static long ns(long ms) {
+        return ms * 1000000;
+    }
+}
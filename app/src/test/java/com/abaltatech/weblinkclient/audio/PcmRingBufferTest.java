@@ -0,0 +1,222 @@
+/****************************************************************************
+ *
+ * @file PcmRingBufferTest.java
+ * @brief
+ *
+ * Contains the PcmRingBufferTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the {@link PcmRingBuffer} on one thread, through the wraparound and the full and empty
+ * states, and with a producer and a consumer thread.
+ */
+public class PcmRingBufferTest {
+
+    private static final int CAPACITY = 64;
+
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(64, new PcmRingBuffer(1).getCapacity());
+        assertEquals(128, new PcmRingBuffer(100).getCapacity());
+        assertEquals(128, new PcmRingBuffer(128).getCapacity());
+        assertEquals(256, new PcmRingBuffer(129).getCapacity());
+    }
+
+    @Test
+    public void stopsWritingWhenFull() {
+        PcmRingBuffer ring = new PcmRingBuffer(CAPACITY);
+        assertEquals(0, ring.getAvailable());
+        assertEquals(CAPACITY, ring.getFree());
+        assertEquals(0, ring.peek(CAPACITY, 1).remaining());
+
+        byte[] data = sequence(0, CAPACITY + 10);
+        assertEquals(CAPACITY, ring.write(data, 0, data.length));
+        assertEquals(CAPACITY, ring.getAvailable());
+        assertEquals(0, ring.getFree());
+        assertEquals(0, ring.write(data, 0, 1));
+
+        // Reading frees the space again
+        assertArrayEquals(sequence(0, CAPACITY), read(ring, CAPACITY));
+        assertEquals(0, ring.getAvailable());
+        assertEquals(CAPACITY, ring.getFree());
+    }
+
+    @Test
+    public void readsAndWritesPartially() {
+        PcmRingBuffer ring = new PcmRingBuffer(CAPACITY);
+        assertEquals(40, ring.write(sequence(0, 50), 5, 40));
+
+        // The peek does not consume
+        assertEquals(16, ring.peek(16, 1).remaining());
+        assertEquals(16, ring.peek(16, 1).remaining());
+        assertEquals(40, ring.getAvailable());
+
+        assertArrayEquals(sequence(5, 16), read(ring, 16));
+        assertEquals(24, ring.getAvailable());
+        assertEquals(CAPACITY - 24, ring.getFree());
+
+        // Only the free space is written
+        assertEquals(CAPACITY - 24, ring.write(sequence(45, CAPACITY), 0, CAPACITY));
+        assertArrayEquals(sequence(21, CAPACITY), read(ring, CAPACITY));
+    }
+
+    @Test
+    public void peekReturnsWholeFrames() {
+        PcmRingBuffer ring = new PcmRingBuffer(CAPACITY);
+        ring.write(sequence(0, 10), 0, 10);
+        assertEquals(8, ring.peek(CAPACITY, 4).remaining());
+        assertEquals(4, ring.peek(7, 4).remaining());
+        assertEquals(0, ring.peek(3, 4).remaining());
+    }
+
+    @Test
+    public void wrapsAround() {
+        PcmRingBuffer ring = new PcmRingBuffer(CAPACITY);
+        ring.write(sequence(0, 48), 0, 48);
+        read(ring, 48);
+
+        // 16 bytes fit before the end, the other 24 go to the start
+        assertEquals(40, ring.write(sequence(48, 40), 0, 40));
+        assertEquals(40, ring.getAvailable());
+        ByteBuffer view = ring.peek(CAPACITY, 1);
+        assertEquals(48, view.position());
+        assertEquals(16, view.remaining());
+        ring.skip(16);
+        view = ring.peek(CAPACITY, 1);
+        assertEquals(0, view.position());
+        assertEquals(24, view.remaining());
+        assertArrayEquals(sequence(64, 24), read(ring, 24));
+        assertEquals(0, ring.getAvailable());
+    }
+
+    @Test
+    public void peekAlignsAtTheEndOfTheBuffer() {
+        PcmRingBuffer ring = new PcmRingBuffer(CAPACITY);
+        ring.write(sequence(0, 58), 0, 58);
+        read(ring, 58);
+        ring.write(sequence(58, 20), 0, 20);
+
+        // 6 bytes are left before the end, one whole frame of 4
+        assertEquals(4, ring.peek(CAPACITY, 4).remaining());
+        assertArrayEquals(sequence(58, 20), read(ring, 20));
+    }
+
+    @Test
+    public void keepsTheOrderBetweenTwoThreads() throws InterruptedException {
+        final PcmRingBuffer ring = new PcmRingBuffer(CAPACITY);
+        final int total = 1 << 20;
+        final AtomicReference<String> error = new AtomicReference<String>();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(1);
+                int written = 0;
+                while (written < total && error.get() == null) {
+                    int size = Math.min(1 + random.nextInt(CAPACITY + 16), total - written);
+                    byte[] chunk = sequence(written, size);
+                    int offset = 0;
+                    while (offset < size && error.get() == null) {
+                        int count = ring.write(chunk, offset, size - offset);
+                        if (count == 0) {
+                            Thread.yield();
+                        }
+                        offset += count;
+                    }
+                    written += size;
+                }
+            }
+        });
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(2);
+                int read = 0;
+                while (read < total && error.get() == null) {
+                    ByteBuffer view = ring.peek(1 + random.nextInt(CAPACITY), 1);
+                    int size = view.remaining();
+                    if (size == 0) {
+                        Thread.yield();
+                    }
+                    for (int i = 0; i < size; i++) {
+                        byte value = view.get();
+                        if (value != (byte) (read + i)) {
+                            error.set("Byte " + (read + i) + " is " + value);
+                            return;
+                        }
+                    }
+                    ring.skip(size);
+                    read += size;
+                }
+            }
+        });
+        producer.start();
+        consumer.start();
+        consumer.join();
+        producer.join();
+
+        assertNull(error.get());
+        assertEquals(0, ring.getAvailable());
+    }
+
+    /**
+     * Reads bytes with peek and skip, as the audio thread does.
+     */
+    private static byte[] read(PcmRingBuffer ring, int size) {
+        byte[] data = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            ByteBuffer view = ring.peek(size - offset, 1);
+            int count = view.remaining();
+            assertTrue(count > 0);
+            view.get(data, offset, count);
+            ring.skip(count);
+            offset += count;
+        }
+        return data;
+    }
+
+    /**
+     * @return Bytes counting up from first, modulo 256
+     */
+    private static byte[] sequence(int first, int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (first + i);
+        }
+        return data;
+    }
+}
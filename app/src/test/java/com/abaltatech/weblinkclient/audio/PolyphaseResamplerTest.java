@@ -0,0 +1,235 @@
+/****************************************************************************
+ *
+ * @file PolyphaseResamplerTest.java
+ * @brief
+ *
+ * Contains the PolyphaseResamplerTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.audio;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the output length, the stop band and the cost of the {@link PolyphaseResampler} with
+ * synthetic tones.
+ * <p></p>
+ * The stop band is measured with a tone above the lower Nyquist: the level of its alias or
+ * image in the output, relative to the tone, must be below the attenuation documented for the
+ * quality from the start of its stop band on.
+ */
+public class PolyphaseResamplerTest {
+
+    private static final int[] QUALITIES = {
+            PolyphaseResampler.QUALITY_LOW, PolyphaseResampler.QUALITY_MEDIUM, PolyphaseResampler.QUALITY_HIGH
+    };
+    // Per quality: start of the stop band relative to the lower Nyquist, and the attenuation
+    // checked from there on, in dB
+    private static final double[] STOP_BAND_START = { 1.3, 1.2, 1.15 };
+    private static final double[] STOP_BAND_ATTENUATION = { 50, 70, 85 };
+
+    private static final double AMPLITUDE = 30000;
+
+    @Test
+    public void outputLengthFollowsTheRatio() {
+        int[][] rates = {
+                { 44100, 48000 }, { 48000, 44100 }, { 16000, 48000 }, { 96000, 8000 }, { 8000, 48000 }, { 48000, 16000 }
+        };
+        for (int[] rate : rates) {
+            for (int quality : QUALITIES) {
+                int inputFrames = rate[0] / 2 + 7;
+                byte[] input = createTone(rate[0], inputFrames, 2, 1000);
+                byte[] output = resample(rate[0], rate[1], 2, quality, input, input.length);
+                long expectedFrames = ((long) inputFrames * rate[1] + rate[0] - 1) / rate[0];
+                assertEquals(rate[0] + " -> " + rate[1] + " Hz, quality " + quality,
+                        expectedFrames * 4, output.length);
+            }
+        }
+    }
+
+    @Test
+    public void outputDoesNotDependOnTheChunks() {
+        byte[] input = createTone(44100, 44100, 2, 1000);
+        for (int quality : QUALITIES) {
+            byte[] whole = resample(44100, 48000, 2, quality, input, input.length);
+            // Chunks shorter and longer than a block, of odd sizes
+            int[] chunkFrames = { 1, 37, PolyphaseResampler.BLOCK_FRAMES, 601 };
+            for (int frames : chunkFrames) {
+                byte[] chunked = resample(44100, 48000, 2, quality, input, frames * 4);
+                assertArrayEquals("Chunks of " + frames + " frames, quality " + quality, whole, chunked);
+            }
+        }
+    }
+
+    @Test
+    public void attenuatesAliasesWhenDownsampling() {
+        int[][] rates = { { 96000, 8000 }, { 48000, 16000 } };
+        for (int[] rate : rates) {
+            for (int quality : QUALITIES) {
+                double nyquist = rate[1] / 2.0;
+                for (double f = STOP_BAND_START[quality] * nyquist; f < rate[0] / 2.0 * 0.99; f += 0.05 * nyquist) {
+                    assertAttenuation(rate[0], rate[1], quality, f, STOP_BAND_ATTENUATION[quality]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void attenuatesAliasesFrom48To44Khz() {
+        // The band above 22.05 kHz ends at 1.09 times the Nyquist, within the transition band.
+        // It is still attenuated by the two times longer filter of the downsampling.
+        double[] attenuation = { 40, 60, 80 };
+        for (int quality : QUALITIES) {
+            assertAttenuation(48000, 44100, quality, 1.05 * 22050, attenuation[quality]);
+        }
+    }
+
+    @Test
+    public void attenuatesImagesWhenUpsampling() {
+        int[][] rates = { { 44100, 48000 }, { 8000, 48000 } };
+        for (int[] rate : rates) {
+            for (int quality : QUALITIES) {
+                double nyquist = rate[0] / 2.0;
+                // An input tone f has an image at the input rate - f
+                for (double image = STOP_BAND_START[quality] * nyquist; image < rate[1] / 2.0 * 0.99
+                        && image < rate[0]; image += 0.05 * nyquist) {
+                    double level = measureLevel(rate[0], rate[1], quality, rate[0] - image, image);
+                    assertTrue(rate[0] + " -> " + rate[1] + " Hz, quality " + quality + ", image at "
+                            + (int) image + " Hz: " + level + " dB", level < -STOP_BAND_ATTENUATION[quality]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsThePassBand() {
+        for (int quality : QUALITIES) {
+            double level = measureLevel(44100, 48000, quality, 5000, 5000);
+            assertEquals("Quality " + quality, 0, level, 0.1);
+        }
+    }
+
+    /**
+     * Prints the cost of a conversion from 44.1 kHz to 48 kHz in stereo, fed in 10 ms chunks.
+     * Reported only, the time depends on the machine. Runs only with -Dbenchmark=true.
+     */
+    @Test
+    public void benchmark() {
+        assumeTrue("Set -Dbenchmark=true to run the benchmark", Boolean.getBoolean("benchmark"));
+
+        int inputRate = 44100;
+        int chunkFrames = inputRate / 100;
+        byte[] input = createTone(inputRate, inputRate, 2, 1000);
+        for (int quality : QUALITIES) {
+            PolyphaseResampler resampler = new PolyphaseResampler(inputRate, 48000, 2, quality);
+            // Warm up, then 20 seconds of audio
+            long numSamples = 0;
+            long startNs = 0;
+            for (int pass = 0; pass < 25; pass++) {
+                if (pass == 5) {
+                    numSamples = 0;
+                    startNs = System.nanoTime();
+                }
+                for (int offset = 0; offset < input.length; offset += chunkFrames * 4) {
+                    numSamples += resampler.process(input, offset, Math.min(chunkFrames * 4, input.length - offset)) / 2;
+                }
+            }
+            double nsPerSample = (double) (System.nanoTime() - startNs) / numSamples;
+            System.out.println(String.format("PolyphaseResampler 44100 -> 48000 Hz stereo, quality %d, %d taps: %.1f ns per output sample",
+                    quality, resampler.getTapsPerPhase(), nsPerSample));
+        }
+    }
+
+    private static void assertAttenuation(int inputRate, int outputRate, int quality, double frequency, double attenuation) {
+        // The alias of the tone, folded into the output band
+        double alias = frequency % outputRate;
+        if (alias > outputRate / 2.0) {
+            alias = outputRate - alias;
+        }
+        double level = measureLevel(inputRate, outputRate, quality, frequency, alias);
+        assertTrue(inputRate + " -> " + outputRate + " Hz, quality " + quality + ", tone at " + (int) frequency
+                + " Hz: " + level + " dB", level < -attenuation);
+    }
+
+    /**
+     * Resamples one second of a mono tone and measures a frequency of the output.
+     *
+     * @return The level of the frequency relative to the tone, in dB
+     */
+    private static double measureLevel(int inputRate, int outputRate, int quality, double toneFrequency,
+                                       double measuredFrequency) {
+        byte[] input = createTone(inputRate, inputRate, 1, toneFrequency);
+        byte[] output = resample(inputRate, outputRate, 1, quality, input, 1000 * 2);
+
+        // Hann windowed Goertzel over the last three quarters, past the start of the filter
+        int numFrames = output.length / 2;
+        int first = numFrames / 4;
+        int count = numFrames - first;
+        double re = 0;
+        double im = 0;
+        for (int i = first; i < numFrames; i++) {
+            double sample = (short) ((output[2 * i] & 0xFF) | (output[2 * i + 1] << 8));
+            double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * (i - first) / (count - 1));
+            double phase = 2 * Math.PI * measuredFrequency * i / outputRate;
+            re += sample * window * Math.cos(phase);
+            im += sample * window * Math.sin(phase);
+        }
+        // The Hann window has a coherent gain of 0.5
+        double amplitude = 2 * Math.hypot(re, im) / (count * 0.5);
+        return 20 * Math.log10(Math.max(amplitude, 1e-3) / AMPLITUDE);
+    }
+
+    private static byte[] resample(int inputRate, int outputRate, int channelCount, int quality, byte[] input,
+                                   int chunkSize) {
+        PolyphaseResampler resampler = new PolyphaseResampler(inputRate, outputRate, channelCount, quality);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int offset = 0; offset < input.length; offset += chunkSize) {
+            int size = resampler.process(input, offset, Math.min(chunkSize, input.length - offset));
+            output.write(resampler.getOutput(), 0, size);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * @return A 16-bit little-endian sine tone, the same on all the channels
+     */
+    private static byte[] createTone(int sampleRate, int numFrames, int channelCount, double frequency) {
+        byte[] data = new byte[numFrames * channelCount * 2];
+        int index = 0;
+        for (int i = 0; i < numFrames; i++) {
+            int sample = (int) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+            for (int c = 0; c < channelCount; c++) {
+                data[index++] = (byte) sample;
+                data[index++] = (byte) (sample >> 8);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,394 @@
+/****************************************************************************
+ *
+ * @file H264AccessUnitAssemblerTest.java
+ * @brief
+ *
+ * Contains the H264AccessUnitAssemblerTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import android.media.MediaCodec;
+
+import com.abaltatech.weblink.core.DataBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Feeds synthetic Annex-B streams to the {@link H264AccessUnitAssembler} and checks the start code
+ * scan, the emitted units with their flags, and the bytes copied on the way.
+ * <p></p>
+ * The benchmark only runs with -Dbenchmark=true.
+ */
+public class H264AccessUnitAssemblerTest {
+
+    private static final byte[] START_CODE = { 0, 0, 0, 1 };
+
+    private static final int NAL_SPS = 0x67;
+    private static final int NAL_PPS = 0x68;
+    private static final int NAL_IDR = 0x65;
+    private static final int NAL_SLICE = 0x41;
+    private static final int NAL_SEI = 0x06;
+
+    /**
+     * A unit received by the listener, copied since the unit is only valid during the call.
+     */
+    private static class Unit {
+        final byte[] data;
+        final int flags;
+        final byte[] source;
+
+        Unit(DataBuffer unit, int flags) {
+            this.data = new byte[unit.getSize()];
+            System.arraycopy(unit.getData(), unit.getPos(), this.data, 0, this.data.length);
+            this.flags = flags;
+            this.source = unit.getData();
+        }
+    }
+
+    private final List<Unit> m_units = new ArrayList<Unit>();
+    private H264AccessUnitAssembler m_assembler;
+
+    @Before
+    public void setUp() {
+        m_assembler = new H264AccessUnitAssembler(new H264AccessUnitAssembler.Listener() {
+            @Override
+            public boolean onUnit(DataBuffer unit, int flags) {
+                m_units.add(new Unit(unit, flags));
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void findsStartCodes() {
+        byte[] data = bytes(0, 0, 1, 0x65, 0x88, 0, 0, 0, 1, 0x41, 0x9A, 0, 0, 1);
+        assertEquals(3, H264AccessUnitAssembler.findNalStart(data, 0, data.length));
+        // A 4-byte start code, found from within the previous NAL unit
+        assertEquals(9, H264AccessUnitAssembler.findNalStart(data, 3, data.length));
+        // A start code that ends at the end of the buffer
+        assertEquals(data.length, H264AccessUnitAssembler.findNalStart(data, 9, data.length));
+        // A start code cut by the end of the range
+        assertEquals(-1, H264AccessUnitAssembler.findNalStart(data, 9, data.length - 1));
+        assertEquals(-1, H264AccessUnitAssembler.findNalStart(data, 0, 2));
+        assertEquals(-1, H264AccessUnitAssembler.findNalStart(data, data.length, data.length));
+    }
+
+    @Test
+    public void findsStartCodesAfterSkippedBytes() {
+        // The scan skips three bytes when the third one cannot end a start code
+        assertEquals(6, H264AccessUnitAssembler.findNalStart(bytes(0, 0, 2, 0, 0, 1), 0, 6));
+        assertEquals(5, H264AccessUnitAssembler.findNalStart(bytes(0, 2, 0, 0, 1), 0, 5));
+        assertEquals(6, H264AccessUnitAssembler.findNalStart(bytes(9, 9, 9, 0, 0, 1), 0, 6));
+        assertEquals(-1, H264AccessUnitAssembler.findNalStart(bytes(0, 0, 3, 0, 0, 2, 1), 0, 7));
+
+        // Same result as a plain scan, on data full of zeros and ones
+        Random random = new Random(1);
+        byte[] data = new byte[4096];
+        int[] values = { 0, 0, 0, 1, 2, 3, 0xFF };
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) values[random.nextInt(values.length)];
+        }
+        for (int from = 0; from < data.length; ++from) {
+            int end = data.length - random.nextInt(4);
+            int expected = -1;
+            for (int i = from; i + 2 < end; ++i) {
+                if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+                    expected = i + 3;
+                    break;
+                }
+            }
+            assertEquals("From " + from + " to " + end, expected, H264AccessUnitAssembler.findNalStart(data, from, end));
+        }
+    }
+
+    @Test
+    public void splitsConfigFromKeyFrames() {
+        byte[] sps = nal(NAL_SPS, 20, 1);
+        byte[] pps = nal(NAL_PPS, 4, 2);
+        byte[] idr = nal(NAL_IDR, 500, 3);
+        byte[] slice = nal(NAL_SLICE, 300, 4);
+        push(annexB(sps, pps, idr));
+        push(annexB(slice));
+        // Parameter sets repeated without a frame
+        push(annexB(sps, pps));
+
+        assertEquals(4, m_units.size());
+        assertUnit(m_units.get(0), MediaCodec.BUFFER_FLAG_CODEC_CONFIG, annexB(sps, pps));
+        assertUnit(m_units.get(1), MediaCodec.BUFFER_FLAG_KEY_FRAME, annexB(idr));
+        assertUnit(m_units.get(2), 0, annexB(slice));
+        assertUnit(m_units.get(3), MediaCodec.BUFFER_FLAG_CODEC_CONFIG, annexB(sps, pps));
+    }
+
+    @Test
+    public void groupsSlicesIntoAccessUnits() {
+        byte[] idr1 = nal(NAL_IDR, 400, 1);
+        byte[] idr2 = nextSlice(nal(NAL_IDR, 400, 2));
+        byte[] slice1 = nal(NAL_SLICE, 300, 3);
+        byte[] slice2 = nextSlice(nal(NAL_SLICE, 300, 4));
+        byte[] sei = nal(NAL_SEI, 10, 5);
+        byte[] slice3 = nal(NAL_SLICE, 300, 6);
+        // Two frames of two slices, then a frame led by an SEI, all in one buffer
+        push(annexB(idr1, idr2, slice1, slice2, sei, slice3));
+
+        assertEquals(3, m_units.size());
+        assertUnit(m_units.get(0), MediaCodec.BUFFER_FLAG_KEY_FRAME, annexB(idr1, idr2));
+        assertUnit(m_units.get(1), 0, annexB(slice1, slice2));
+        assertUnit(m_units.get(2), 0, annexB(sei, slice3));
+    }
+
+    @Test
+    public void reassemblesSlicesSplitAcrossBuffers() {
+        byte[] sps = nal(NAL_SPS, 20, 1);
+        byte[] pps = nal(NAL_PPS, 4, 2);
+        byte[] idr1 = nal(NAL_IDR, 400, 3);
+        byte[] idr2 = nextSlice(nal(NAL_IDR, 400, 4));
+        byte[] slice = nal(NAL_SLICE, 300, 5);
+        byte[] keyFrame = annexB(sps, pps, idr1, idr2);
+        byte[] frame = annexB(slice);
+
+        // The split is detected with the second buffer, the first frame is emitted cut
+        byte[] detection = annexB(nal(NAL_SLICE, 300, 0));
+        push(detection, 0, 100);
+        push(detection, 100, detection.length - 100);
+        assertEquals(1, m_units.size());
+        assertEquals(1, m_assembler.getDroppedFragmentCount());
+        m_units.clear();
+
+        // Split within the SPS, within a slice and within the start codes, before the 01 byte and
+        // between the zero bytes
+        int idr2Start = 4 + sps.length + 4 + pps.length + 4 + idr1.length;
+        push(keyFrame, 0, 10);
+        push(keyFrame, 10, 200);
+        push(keyFrame, 210, idr2Start + 3 - 210);
+        push(keyFrame, idr2Start + 3, keyFrame.length - idr2Start - 3);
+        push(frame, 0, 2);
+        push(frame, 2, 98);
+        // The key frame is emitted when the next frame starts
+        assertEquals(2, m_units.size());
+        push(frame, 100, frame.length - 100);
+        push(annexB(nal(NAL_SLICE, 300, 6)));
+
+        assertEquals(3, m_units.size());
+        assertUnit(m_units.get(0), MediaCodec.BUFFER_FLAG_CODEC_CONFIG, annexB(sps, pps));
+        assertUnit(m_units.get(1), MediaCodec.BUFFER_FLAG_KEY_FRAME, annexB(idr1, idr2));
+        assertUnit(m_units.get(2), 0, frame);
+    }
+
+    @Test
+    public void clearReturnsToFrameAlignedMode() {
+        byte[] frame = annexB(nal(NAL_SLICE, 300, 1));
+        push(frame, 0, 100);
+        push(frame, 100, frame.length - 100);
+        m_units.clear();
+
+        m_assembler.clear();
+        push(frame);
+        // Emitted without waiting for the next frame
+        assertEquals(1, m_units.size());
+        assertUnit(m_units.get(0), 0, frame);
+    }
+
+    @Test
+    public void passesFrameAlignedAccessUnitsThrough() {
+        byte[] sps = nal(NAL_SPS, 20, 1);
+        byte[] pps = nal(NAL_PPS, 4, 2);
+        byte[] idr = nal(NAL_IDR, 5000, 3);
+        byte[] slice = nal(NAL_SLICE, 800, 4);
+
+        byte[] keyFrame = annexB(sps, pps, idr);
+        push(keyFrame);
+        byte[] frame = annexB(slice);
+        push(frame);
+
+        assertEquals(3, m_units.size());
+        assertArrayEquals("Config", annexB(sps, pps), m_units.get(0).data);
+        assertArrayEquals("Key frame", annexB(idr), m_units.get(1).data);
+        assertSame(keyFrame, m_units.get(1).source);
+        assertArrayEquals("Frame", frame, m_units.get(2).data);
+        assertSame(frame, m_units.get(2).source);
+        // Only the config unit was assembled
+        assertEquals(annexB(sps, pps).length, m_assembler.getCopiedByteCount());
+    }
+
+    @Test
+    public void copiesSplitAccessUnitsOnce() {
+        // The split is detected with the second part of the first frame
+        byte[] detection = annexB(nal(NAL_SLICE, 500, 0));
+        push(detection, 0, 200);
+        push(detection, 200, detection.length - 200);
+        m_units.clear();
+        long numCopiedBefore = m_assembler.getCopiedByteCount();
+
+        byte[] first = annexB(nal(NAL_SLICE, 800, 1));
+        byte[] second = annexB(nal(NAL_SLICE, 900, 2));
+        byte[] third = annexB(nal(NAL_SLICE, 10, 3));
+        push(first, 0, 300);
+        push(first, 300, first.length - 300);
+        push(second, 0, 300);
+        push(second, 300, second.length - 300);
+        // The last access unit is complete once the next one starts
+        push(third);
+
+        assertEquals(2, m_units.size());
+        assertArrayEquals("First frame", first, m_units.get(0).data);
+        assertArrayEquals("Second frame", second, m_units.get(1).data);
+        assertEquals(first.length + second.length + third.length, m_assembler.getCopiedByteCount() - numCopiedBefore);
+    }
+
+    /**
+     * Prints the bytes copied per frame from the SDK buffers to the codec input buffers, for
+     * frame aligned buffers, which are passed through, and for NAL units split across buffers,
+     * which are assembled as every access unit was before. The codec copy is simulated with a
+     * direct buffer.
+     */
+    @Test
+    public void benchmark() {
+        assumeTrue("Set -Dbenchmark=true to run the benchmark", Boolean.getBoolean("benchmark"));
+
+        // 2 seconds at 30 fps, one 120 KB key frame followed by 15 KB frames
+        List<byte[]> stream = new ArrayList<byte[]>();
+        stream.add(annexB(nal(NAL_SPS, 20, 0), nal(NAL_PPS, 4, 0), nal(NAL_IDR, 120 * 1024, 0)));
+        for (int i = 1; i < 60; ++i) {
+            stream.add(annexB(nal(NAL_SLICE, 15 * 1024, i)));
+        }
+        long streamSize = 0;
+        for (byte[] frame : stream) {
+            streamSize += frame.length;
+        }
+
+        final ByteBuffer codecBuffer = ByteBuffer.allocateDirect(256 * 1024);
+        final long[] numCopiedBytes = new long[1];
+        for (int split = 0; split < 2; ++split) {
+            H264AccessUnitAssembler assembler = new H264AccessUnitAssembler(new H264AccessUnitAssembler.Listener() {
+                @Override
+                public boolean onUnit(DataBuffer unit, int flags) {
+                    codecBuffer.clear();
+                    codecBuffer.put(unit.getData(), unit.getPos(), unit.getSize());
+                    numCopiedBytes[0] += unit.getSize();
+                    return true;
+                }
+            });
+            numCopiedBytes[0] = 0;
+            int numPasses = 200;
+            long startNs = 0;
+            for (int pass = 0; pass < numPasses + 20; ++pass) {
+                if (pass == 20) {
+                    // After the warm up
+                    startNs = System.nanoTime();
+                    numCopiedBytes[0] = 0;
+                }
+                long numCopiedBefore = assembler.getCopiedByteCount();
+                for (byte[] frame : stream) {
+                    if (split == 0) {
+                        assembler.push(new DataBuffer(frame, 0, frame.length));
+                    } else {
+                        int half = frame.length / 2;
+                        assembler.push(new DataBuffer(frame, 0, half));
+                        assembler.push(new DataBuffer(frame, half, frame.length - half));
+                    }
+                }
+                if (pass < 20) {
+                    continue;
+                }
+                numCopiedBytes[0] += assembler.getCopiedByteCount() - numCopiedBefore;
+            }
+            long elapsedNs = System.nanoTime() - startNs;
+            long numFrames = (long) numPasses * stream.size();
+            System.out.println(String.format(
+                    "H264AccessUnitAssembler, %s buffers: %d bytes per frame, %d bytes copied per frame, %.1f us per frame",
+                    split == 0 ? "frame aligned" : "split", streamSize / stream.size(), numCopiedBytes[0] / numFrames,
+                    elapsedNs / 1000.0 / numFrames));
+        }
+    }
+
+    private static void assertUnit(Unit unit, int flags, byte[] data) {
+        assertEquals("Flags", flags, unit.flags);
+        assertArrayEquals("Data", data, unit.data);
+    }
+
+    private void push(byte[] data) {
+        push(data, 0, data.length);
+    }
+
+    private void push(byte[] data, int offset, int size) {
+        assertEquals(true, m_assembler.push(new DataBuffer(data, offset, size)));
+    }
+
+    /**
+     * @return The slice with a first_mb_in_slice other than 0, so that it continues a picture
+     */
+    private static byte[] nextSlice(byte[] nal) {
+        nal[1] &= 0x7F;
+        return nal;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            data[i] = (byte) values[i];
+        }
+        return data;
+    }
+
+    /**
+     * @return The NAL units, each behind a 4-byte start code
+     */
+    private static byte[] annexB(byte[]... nals) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] nal : nals) {
+            out.write(START_CODE, 0, START_CODE.length);
+            out.write(nal, 0, nal.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return A NAL unit with the given header byte, whose slice header starts with
+     * first_mb_in_slice 0, followed by non-zero bytes that cannot form a start code
+     */
+    private static byte[] nal(int header, int size, int seed) {
+        byte[] data = new byte[size];
+        Random random = new Random(seed);
+        data[0] = (byte) header;
+        for (int i = 1; i < size; ++i) {
+            data[i] = (byte) (1 + random.nextInt(255));
+        }
+        if (size > 1) {
+            data[1] |= 0x80;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,164 @@
+/****************************************************************************
+ *
+ * @file H264ParameterSetsTest.java
+ * @brief
+ *
+ * Contains the H264ParameterSetsTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import com.abaltatech.weblink.core.DataBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds encoder-style config frames to {@link H264ParameterSets} and checks the parsed profile,
+ * level and cropped picture size.
+ */
+public class H264ParameterSetsTest {
+
+    // Baseline profile, level 3.1, 1280x720, with VUI timing info (x264 style)
+    private static final byte[] SPS_BASELINE_720P = bytes(
+            0x67, 0x42, 0xC0, 0x1F, 0xDA, 0x01, 0x40, 0x16, 0xE8, 0x40, 0x00, 0x00, 0x03, 0x00, 0x40, 0x00,
+            0x00, 0x0F, 0x03, 0xC2, 0x21, 0x1A, 0x80);
+    private static final byte[] PPS_BASELINE = bytes(0x68, 0xCE, 0x38, 0x80);
+
+    // High profile, level 4.0, 1920x1088 cropped by 8 lines to 1920x1080 (x264 style)
+    private static final byte[] SPS_HIGH_1080P = bytes(
+            0x67, 0x64, 0x00, 0x28, 0xAC, 0xD9, 0x40, 0x78, 0x02, 0x27, 0xE5, 0xC0, 0x44, 0x00, 0x00, 0x03,
+            0x00, 0x04, 0x00, 0x00, 0x03, 0x00, 0xC8, 0x3C, 0x60, 0xC6, 0x58);
+    private static final byte[] PPS_HIGH = bytes(0x68, 0xEB, 0xE3, 0xCB, 0x22, 0xC0);
+
+    // Baseline 1280x720 with pic_order_cnt_type 1 and an offset_for_non_ref_pic of 2^23, whose
+    // long exp-Golomb code puts two emulation prevention bytes before the picture size
+    private static final byte[] SPS_ESCAPED_720P = bytes(
+            0x67, 0x42, 0xC0, 0x1F, 0xD0, 0x00, 0x00, 0x03, 0x02, 0x00, 0x00, 0x03, 0x01, 0x45, 0x40, 0x28,
+            0x02, 0xDD, 0x08, 0x00, 0x00, 0x03, 0x00, 0x08, 0x00, 0x00, 0x03, 0x01, 0xE0, 0x78, 0x44, 0x23,
+            0x50);
+
+    private static final byte[] START_CODE = bytes(0, 0, 0, 1);
+
+    private H264ParameterSets m_parameterSets;
+
+    @Before
+    public void setUp() {
+        m_parameterSets = new H264ParameterSets();
+    }
+
+    @Test
+    public void parsesBaseline720p() {
+        assertTrue(m_parameterSets.update(configFrame(SPS_BASELINE_720P, PPS_BASELINE)));
+        assertEquals(66, m_parameterSets.getProfileIdc());
+        assertEquals(31, m_parameterSets.getLevelIdc());
+        assertEquals(1280, m_parameterSets.getWidth());
+        assertEquals(720, m_parameterSets.getHeight());
+    }
+
+    @Test
+    public void parsesHighProfileWithCropping() {
+        assertTrue(m_parameterSets.update(configFrame(SPS_HIGH_1080P, PPS_HIGH)));
+        assertEquals(100, m_parameterSets.getProfileIdc());
+        assertEquals(40, m_parameterSets.getLevelIdc());
+        assertEquals(1920, m_parameterSets.getWidth());
+        assertEquals(1080, m_parameterSets.getHeight());
+    }
+
+    @Test
+    public void skipsEmulationPreventionBytes() {
+        assertTrue(m_parameterSets.update(configFrame(SPS_ESCAPED_720P, PPS_BASELINE)));
+        assertEquals(66, m_parameterSets.getProfileIdc());
+        assertEquals(1280, m_parameterSets.getWidth());
+        assertEquals(720, m_parameterSets.getHeight());
+
+        H264ParameterSets.BitReader reader = new H264ParameterSets.BitReader();
+        byte[] data = bytes(0x00, 0x00, 0x03, 0x01, 0x00, 0x00, 0x03);
+        reader.reset(data, 0, data.length);
+        assertEquals(0x000001, reader.readBits(24));
+        assertFalse(reader.isOverrun());
+        assertEquals(0x0000, reader.readBits(16));
+        // The trailing 03 is an emulation prevention byte, not data
+        reader.readBit();
+        assertTrue(reader.isOverrun());
+    }
+
+    @Test
+    public void readsExpGolombCodes() {
+        // 1 | 010 | 011 | 00100 | 00101 | 1 padding: ue 0, 1, 2, 3 then se -2
+        byte[] data = bytes(0xA6, 0x42, 0x80);
+        H264ParameterSets.BitReader reader = new H264ParameterSets.BitReader();
+        reader.reset(data, 0, data.length);
+        assertEquals(0, reader.readUE());
+        assertEquals(1, reader.readUE());
+        assertEquals(2, reader.readUE());
+        assertEquals(3, reader.readUE());
+        assertEquals(-2, reader.readSE());
+        assertFalse(reader.isOverrun());
+    }
+
+    @Test
+    public void ignoresRepeatedParameterSets() {
+        assertTrue(m_parameterSets.update(configFrame(SPS_BASELINE_720P, PPS_BASELINE)));
+        assertFalse(m_parameterSets.update(configFrame(SPS_BASELINE_720P, PPS_BASELINE)));
+
+        DataBuffer out = new DataBuffer();
+        m_parameterSets.writeTo(out);
+        assertArrayEquals("Stored config", toArray(configFrame(SPS_BASELINE_720P, PPS_BASELINE)), toArray(out));
+
+        // A resolution change
+        assertTrue(m_parameterSets.update(configFrame(SPS_HIGH_1080P, PPS_HIGH)));
+        assertEquals(1080, m_parameterSets.getHeight());
+    }
+
+    /**
+     * @return The SPS and PPS, each behind a 4-byte start code
+     */
+    private static DataBuffer configFrame(byte[] sps, byte[] pps) {
+        DataBuffer frame = new DataBuffer();
+        frame.addBytes(START_CODE, 0, START_CODE.length);
+        frame.addBytes(sps, 0, sps.length);
+        frame.addBytes(START_CODE, 0, START_CODE.length);
+        frame.addBytes(pps, 0, pps.length);
+        return frame;
+    }
+
+    private static byte[] toArray(DataBuffer buffer) {
+        byte[] data = new byte[buffer.getSize()];
+        System.arraycopy(buffer.getData(), buffer.getPos(), data, 0, data.length);
+        return data;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            data[i] = (byte) values[i];
+        }
+        return data;
+    }
+}
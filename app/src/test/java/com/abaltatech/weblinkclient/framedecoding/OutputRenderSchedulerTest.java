@@ -0,0 +1,148 @@
+/****************************************************************************
+ *
+ * @file OutputRenderSchedulerTest.java
+ * @brief
+ *
+ * Contains the OutputRenderSchedulerTest class.
+ *
+ * @author Abalta Technologies, Inc.
+ * @date Oct, 2026
+ *
+ * @cond Copyright
+ *
+ * COPYRIGHT 2026 ABALTA TECHNOLOGIES ALL RIGHTS RESERVED.<br>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @endcond
+ *****************************************************************************/
+package com.abaltatech.weblinkclient.framedecoding;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the pacing decisions of the {@link OutputRenderScheduler} without a codec, at 25 frames
+ * per second (a 40 ms frame interval). The presentation timestamps are submit times, on the
+ * same clock as the current time.
+ */
+public class OutputRenderSchedulerTest {
+
+    private static final long INTERVAL_MS = 40;
+    private static final long START_MS = 1000000;
+
+    private OutputRenderScheduler m_scheduler;
+
+    @Before
+    public void setUp() {
+        m_scheduler = new OutputRenderScheduler(25);
+    }
+
+    @Test
+    public void rendersTheFirstFrameAtOnce() {
+        assertEquals(-1, m_scheduler.schedule(1, us(START_MS), us(START_MS), ns(START_MS + 20)));
+        assertTrue(m_scheduler.isDue(ns(START_MS + 20)));
+        assertEquals(ns(START_MS + 20), m_scheduler.getPendingDeadlineNs());
+        assertEquals(us(START_MS), m_scheduler.onReleased());
+    }
+
+    @Test
+    public void spacesAFrameThatComesEarly() {
+        render(1, START_MS, START_MS + 20);
+
+        // Next slot at +60, the buffer waits until one interval before it
+        assertEquals(-1, m_scheduler.schedule(2, us(START_MS + 5), us(START_MS + 5), ns(START_MS + 10)));
+        assertEquals(ns(START_MS + 20 + INTERVAL_MS), m_scheduler.getPendingDeadlineNs());
+        assertFalse(m_scheduler.isDue(ns(START_MS + 19)));
+        assertTrue(m_scheduler.isDue(ns(START_MS + 20)));
+    }
+
+    @Test
+    public void dropsTheWaitingFrameForANewerOne() {
+        render(1, START_MS, START_MS + 20);
+        assertEquals(-1, m_scheduler.schedule(2, us(START_MS + 5), us(START_MS + 10), ns(START_MS + 10)));
+        assertEquals(2, m_scheduler.schedule(3, us(START_MS + 10), us(START_MS + 10), ns(START_MS + 12)));
+
+        // The newer frame takes the slot of the dropped one
+        assertEquals(ns(START_MS + 20 + INTERVAL_MS), m_scheduler.getPendingDeadlineNs());
+        assertEquals(us(START_MS + 10), m_scheduler.onReleased());
+        assertEquals(1, m_scheduler.getDroppedFrameCount());
+        assertEquals(0, m_scheduler.getLateFrameCount());
+    }
+
+    @Test
+    public void dropsALateFrameWhenANewerOneIsDecoding() {
+        render(1, START_MS, START_MS + 20);
+
+        // Slot at +60, submitted at +30, out at +101: more than an interval late
+        long nowMs = START_MS + 20 + INTERVAL_MS + INTERVAL_MS + 1;
+        assertEquals(2, m_scheduler.schedule(2, us(START_MS + 30), us(START_MS + 70), ns(nowMs)));
+        assertEquals(1, m_scheduler.getLateFrameCount());
+        assertEquals(1, m_scheduler.getDroppedFrameCount());
+
+        // The slot was skipped, the newer frame is rendered at once
+        assertEquals(-1, m_scheduler.schedule(3, us(START_MS + 70), us(START_MS + 70), ns(nowMs)));
+        assertTrue(m_scheduler.isDue(ns(nowMs)));
+        assertEquals(ns(nowMs), m_scheduler.getPendingDeadlineNs());
+    }
+
+    @Test
+    public void rendersALateFrameWithoutNewerInput() {
+        render(1, START_MS, START_MS + 20);
+
+        long nowMs = START_MS + 20 + INTERVAL_MS + INTERVAL_MS + 1;
+        assertEquals(-1, m_scheduler.schedule(2, us(START_MS + 30), us(START_MS + 30), ns(nowMs)));
+        assertTrue(m_scheduler.isDue(ns(nowMs)));
+        assertEquals(0, m_scheduler.getLateFrameCount());
+    }
+
+    @Test
+    public void rendersTheFirstFrameAfterAPause() {
+        render(1, START_MS, START_MS + 20);
+
+        // The host sent nothing for a second, the frame was submitted long after its slot
+        long submitMs = START_MS + 1000;
+        assertEquals(-1, m_scheduler.schedule(2, us(submitMs), us(submitMs + 40), ns(submitMs + 20)));
+        assertTrue(m_scheduler.isDue(ns(submitMs + 20)));
+        assertEquals(ns(submitMs + 20), m_scheduler.getPendingDeadlineNs());
+        assertEquals(0, m_scheduler.getDroppedFrameCount());
+    }
+
+    @Test
+    public void doesNotDropAfterClear() {
+        render(1, START_MS, START_MS + 20);
+        m_scheduler.clear();
+
+        long nowMs = START_MS + 500;
+        assertEquals(-1, m_scheduler.schedule(2, us(START_MS + 30), us(START_MS + 70), ns(nowMs)));
+        assertEquals(0, m_scheduler.getLateFrameCount());
+    }
+
+    private void render(int index, long submitMs, long nowMs) {
+        assertEquals(-1, m_scheduler.schedule(index, us(submitMs), us(submitMs), ns(nowMs)));
+        assertTrue(m_scheduler.isDue(ns(nowMs)));
+        m_scheduler.onReleased();
+    }
+
+    private static long us(long ms) {
+        return ms * 1000;
+    }
+
+    private static long ns(long ms) {
+        return ms * 1000000;
+    }
+}